@@ -0,0 +1,101 @@
+package cs321.btree;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The AdaptiveCacheSizer class grows and shrinks a node cache between a floor and a ceiling by
+ * hill climbing on the observed hit ratio. After every window of node reads it compares the hit
+ * ratio of the window with the one before: while a step keeps paying for its memory (the ratio
+ * moved by at least MIN_GAIN in the step's favour) it takes another step the same way, and
+ * otherwise it turns around. When the heap is nearly full it shrinks regardless of the hit ratio.
+ * Nothing changes while the cache is still filling, since a cold cache says nothing about its size.
+ */
+class AdaptiveCacheSizer {
+    private static final double MIN_GAIN = 0.005; // hit ratio gain (or loss) that justifies a step
+    private static final double MEMORY_PRESSURE = 0.90; // heap usage above which the cache shrinks
+
+    private final Cache<?> cache;
+    private final BTreeStatistics statistics;
+    private final int minCapacity;
+    private final int maxCapacity;
+    private final int step;
+    private final long windowReads;
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile long windowStartHits;
+    private volatile long windowStartMisses;
+    private double lastHitRatio = -1;
+    private int direction = 1; // +1 while growing, -1 while shrinking
+
+    /**
+     * Constructs a new AdaptiveCacheSizer and starts the cache halfway between its floor and ceiling.
+     *
+     * @param cache       the cache to resize, built with the ceiling as its capacity
+     * @param statistics  the statistics counting the cache's hits and misses
+     * @param minCapacity the smallest capacity the cache is given
+     */
+    AdaptiveCacheSizer(Cache<?> cache, BTreeStatistics statistics, int minCapacity) {
+        this.cache = cache;
+        this.statistics = statistics;
+        this.maxCapacity = cache.getCapacity();
+        this.minCapacity = Math.min(minCapacity, maxCapacity);
+        this.step = Math.max(1, maxCapacity / 16);
+        this.windowReads = Math.max(4096, 2L * maxCapacity);
+        cache.setCapacity(this.minCapacity + (maxCapacity - this.minCapacity) / 2);
+        this.windowStartHits = statistics.getHits();
+        this.windowStartMisses = statistics.getMisses();
+    }
+
+    /**
+     * Called after a node read. Once a full window of reads has been seen, one caller re-evaluates
+     * the capacity while the others carry on.
+     */
+    void onRead() {
+        long hits = statistics.getHits() - windowStartHits;
+        long misses = statistics.getMisses() - windowStartMisses;
+        if (hits + misses < windowReads || !lock.tryLock()) {
+            if (hits < 0 || misses < 0) {
+                restartWindow(); // The statistics were reset
+            }
+            return;
+        }
+        try {
+            hits = statistics.getHits() - windowStartHits;
+            misses = statistics.getMisses() - windowStartMisses;
+            if (hits + misses < windowReads) {
+                return;
+            }
+            restartWindow();
+            if (cache.getSize() < cache.getCapacity()) {
+                return;
+            }
+
+            double hitRatio = (double) hits / (hits + misses);
+            Runtime runtime = Runtime.getRuntime();
+            double heapUsage = (double) (runtime.totalMemory() - runtime.freeMemory()) / runtime.maxMemory();
+            if (heapUsage > MEMORY_PRESSURE) {
+                direction = -1;
+            } else if (lastHitRatio >= 0) {
+                double change = hitRatio - lastHitRatio;
+                if (direction > 0 && change < MIN_GAIN) {
+                    direction = -1; // The last step up did not pay for its memory
+                } else if (direction < 0 && change < -MIN_GAIN) {
+                    direction = 1; // The last step down cost too many hits
+                }
+            }
+            lastHitRatio = hitRatio;
+
+            int capacity = cache.getCapacity() + direction * step;
+            cache.setCapacity(Math.max(minCapacity, Math.min(maxCapacity, capacity)));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Starts a new window at the current counter values.
+     */
+    private void restartWindow() {
+        windowStartHits = statistics.getHits();
+        windowStartMisses = statistics.getMisses();
+    }
+}
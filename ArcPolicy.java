@@ -0,0 +1,113 @@
+package cs321.btree;
+
+/**
+ * The ArcPolicy class implements Adaptive Replacement Cache (ARC). Resident keys are split between
+ * T1 (seen once recently) and T2 (seen at least twice), each backed by a ghost list (B1, B2) of keys
+ * it recently evicted. A miss that hits a ghost list shifts the target size p of T1 toward the list
+ * that would have kept the key, so the cache adapts between recency and frequency on its own.
+ * The four lists are lists of one LinkedKeyLists, so a hit or a ghost hit relinks a key without
+ * boxing it or allocating.
+ */
+public class ArcPolicy implements EvictionPolicy {
+    private static final int T1 = 0; // resident, seen once, LRU first
+    private static final int T2 = 1; // resident, seen twice or more
+    private static final int B1 = 2; // ghosts evicted from T1
+    private static final int B2 = 3; // ghosts evicted from T2
+
+    private final int capacity;
+    private final LinkedKeyLists lists;
+    private int p; // target size of T1
+    private long lastInserted;
+    private boolean lastFromB2;   // the newcomer was a B2 ghost hit
+    private boolean skipGhost;    // evict from T1 without remembering the key
+
+    /**
+     * Constructs a new ArcPolicy for a cache of the given capacity.
+     *
+     * @param capacity the number of keys the cache holds
+     */
+    public ArcPolicy(int capacity) {
+        this.capacity = capacity;
+        // The directory holds at most twice the capacity, plus the newcomer
+        this.lists = new LinkedKeyLists(4, 2 * capacity + 2);
+    }
+
+    @Override
+    public void recordAccess(long key) {
+        // Any hit makes the key frequent
+        int list = lists.listOf(key);
+        if (list == T1 || list == T2) {
+            lists.moveToLast(T2, key);
+        }
+    }
+
+    @Override
+    public void recordInsertion(long key) {
+        lastInserted = key;
+        lastFromB2 = false;
+        skipGhost = false;
+
+        int list = lists.listOf(key);
+        if (list == B1) {
+            // T1 was too small: grow its target
+            lists.moveToLast(T2, key);
+            p = Math.min(capacity, p + Math.max(lists.size(B2) / Math.max(1, lists.size(B1) + 1), 1));
+            return;
+        }
+        if (list == B2) {
+            // T2 was too small: shrink T1's target
+            lists.moveToLast(T2, key);
+            p = Math.max(0, p - Math.max(lists.size(B1) / Math.max(1, lists.size(B2) + 1), 1));
+            lastFromB2 = true;
+            return;
+        }
+
+        // A brand new key: keep the ghost directory within twice the capacity
+        int l1 = lists.size(T1) + lists.size(B1);
+        int total = l1 + lists.size(T2) + lists.size(B2);
+        if (l1 >= capacity) {
+            if (lists.size(T1) < capacity) {
+                lists.removeFirst(B1);
+            } else {
+                skipGhost = true;
+            }
+        } else if (total >= 2 * capacity) {
+            lists.removeFirst(B2);
+        }
+        lists.addLast(T1, key);
+    }
+
+    @Override
+    public void recordRemoval(long key) {
+        // Ghosts are not cached, so they stay remembered
+        int list = lists.listOf(key);
+        if (list == T1 || list == T2) {
+            lists.remove(key);
+        }
+    }
+
+    @Override
+    public long selectVictim() {
+        // The newcomer does not count toward T1 when choosing the list to evict from
+        int t1Size = lists.listOf(lastInserted) == T1 ? lists.size(T1) - 1 : lists.size(T1);
+        if (t1Size >= 1 && (t1Size > p || (lastFromB2 && t1Size == p) || skipGhost) || lists.isEmpty(T2)) {
+            long victim = lists.first(T1);
+            if (skipGhost) {
+                lists.remove(victim);
+            } else {
+                lists.moveToLast(B1, victim);
+            }
+            skipGhost = false;
+            return victim;
+        }
+        long victim = lists.first(T2);
+        lists.moveToLast(B2, victim);
+        return victim;
+    }
+
+    @Override
+    public void clear() {
+        lists.clear();
+        p = 0;
+    }
+}
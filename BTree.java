@@ -1,39 +1,72 @@
 package cs321.btree;
 import cs321.create.*;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * BTree class implementing the BTreeInterface.
  */
-public class BTree implements BTreeInterface {
+public class BTree implements BTreeInterface, KmerStore {
 
-    private long size;
+    private final LongAdder size = new LongAdder();
     private int degree;
-    private int numNodes;
-    private int height;
-    private BTreeNode root;
+    private final LongAdder numNodes = new LongAdder();
+    private volatile int height;
+    private volatile BTreeNode root;
     private Cache<BTreeNode> cache;
+    private PageCache pageCache; // off-heap cache of serialized nodes, null unless enabled
+    private final PageCache.PageReader<BTreeNode> pageParser = this::parseNode; // decodes page cache hits in place
+    private AdaptiveCacheSizer cacheSizer; // resizes the node cache from its hit ratio, null unless enabled
     private int useCache;
     @SuppressWarnings("unused")
     private int cacheSize;//used if cache is implemented
-    private int cacheHit;
-    private int cacheRef;
+    private final BTreeStatistics statistics = new BTreeStatistics(); // cache and I/O counters
     private int METADATA_SIZE = Long.BYTES;
-    private long nextDiskAddress = METADATA_SIZE;
+    private final AtomicLong nextDiskAddress = new AtomicLong(METADATA_SIZE);
     private FileChannel file;
-    private ByteBuffer buffer;
+    private ThreadLocal<ByteBuffer> buffer; // one I/O buffer per thread so readers never share positions
     private int byteSize;
     private File fileName;
     private int subsequenceLength;
-    private long rootAddress = METADATA_SIZE; // Offset to the root node
+    private volatile long rootAddress = METADATA_SIZE; // Offset to the root node
+    private boolean concurrentInsert; // true when insert/search use per-node latches
+    private final ReentrantReadWriteLock rootLatch = new ReentrantReadWriteLock(); // guards the root pointer
+    private static final int LATCH_STRIPES = 256; // latches per tree level, a power of two
+    private static final int MAX_LATCH_LEVELS = 64; // more levels than any tree of 2^63 bytes can have
+    // level (0 for leaves) -> latches shared by the nodes of that level, created when the level is first latched
+    private final AtomicReferenceArray<ReentrantReadWriteLock[]> latches = new AtomicReferenceArray<>(MAX_LATCH_LEVELS);
+    private NodePrefetcher prefetcher; // null unless traversals prefetch children
+    private DataOutputStream readTrace; // records the address of every diskRead, null unless tracing
+    private static final int MAX_AUTO_PINNED_NODES = 4096; // upper bound on nodes pinned by automatic sizing
+    private static final int WARM_SET_MAGIC = 0x5753_4554; // "WSET", first int of a warm set file
+    private static final int WARM_SET_READ_BYTES = 1 << 20; // largest single read when preloading a warm set
+    private static final int WARM_SET_MAX_GAP = 1 << 16; // unwanted bytes read through rather than seek past
+    private static final int SCAN_READ_BYTES = 1 << 20; // bytes read at a time by scanEntries
+    private volatile BloomFilter bloomFilter; // rejects absent keys before any node is read, null unless loaded
+    private volatile PinnedTier pinnedTier; // always-resident upper levels of the tree, null when nothing is pinned
 
     /**
      * Constructor for the BTree class.
@@ -51,14 +84,12 @@ public class BTree implements BTreeInterface {
         //Initializes variables
         this.useCache = 0;
         this.cacheSize = 0;
-        this.cacheHit = 0;
-        this.size = 0;
-        this.numNodes = 1;
+        this.numNodes.increment();
         this.height = 0;
         this.root = null;
         this.fileName = new File(fileName); // Create a File object with the given fileName
         byteSize = 4096; // Set block size to default, 4096 bytes
-        buffer = ByteBuffer.allocateDirect(byteSize); // Allocate a direct ByteBuffer with byteSize
+        buffer = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(byteSize)); // Allocate a direct ByteBuffer with byteSize per thread
 
         RandomAccessFile dataFile = null; // Declare dataFile and initialize it to null
         try {
@@ -70,20 +101,13 @@ public class BTree implements BTreeInterface {
                 writeMetaData();
                 this.root = new BTreeNode(this.degree, true, true); // Create a new root node
                 this.root.address = rootAddress; // Set the address of the root node
-                if (useCache == 1) {
-                    cacheRef++;
-                    cache.addObject(root); // Add the root node to the cache if useCache is 1
-                }
             } else {
                 // If the file exists
                 dataFile = new RandomAccessFile(fileName, "rw"); // Open the file in read-write mode
                 file = dataFile.getChannel(); // Get the file channel
                 readMetaData();
-                root = diskRead(rootAddress); // Read the root node from disk
-                if (useCache == 1) {
-                    cacheRef++;
-                    cache.addObject(root); // Add the root node to the cache if useCache is 1
-                }
+                root = diskRead(rootAddress, 0); // Read the root node from disk
+                height = readHeight(); // The height is not stored, so measure it
             }
         } catch (FileNotFoundException e) {
             System.err.println(e); // Print the exception if the file is not found
@@ -105,22 +129,585 @@ public class BTree implements BTreeInterface {
      * @param cacheSize The size of the cache, if caching is enabled.
      */
     public void setUseCacheAndCacheSize(boolean useCache, int cacheSize) {
+        setUseCacheAndCacheSize(useCache, cacheSize, "lru");
+    }
+
+    /**
+     * Sets the cache usage, cache size and eviction policy for the BTree.
+     *
+     * @param useCache    Indicates whether to use caching (true) or not (false).
+     * @param cacheSize   The size of the cache, if caching is enabled.
+     * @param cachePolicy The eviction policy: lru, clock, 2q, arc or tinylfu.
+     */
+    public void setUseCacheAndCacheSize(boolean useCache, int cacheSize, String cachePolicy) {
+        setUseCacheAndCacheSize(useCache, cacheSize, cachePolicy, 1);
+    }
+
+    /**
+     * Sets the cache usage, cache size, eviction policy and number of lock segments for the BTree.
+     * Several segments let hits from concurrent search threads proceed without waiting on each other.
+     *
+     * @param useCache    Indicates whether to use caching (true) or not (false).
+     * @param cacheSize   The size of the cache, if caching is enabled.
+     * @param cachePolicy The eviction policy: lru, clock, 2q, arc or tinylfu.
+     * @param segments    The number of lock segments; 1 keeps a single cache-wide policy.
+     */
+    public void setUseCacheAndCacheSize(boolean useCache, int cacheSize, String cachePolicy, int segments) {
         if (useCache) {
             this.useCache = 1;
-            this.cache = new Cache<BTreeNode>(cacheSize);
+            if (segments > 1) {
+                this.cache = new Cache<BTreeNode>(cacheSize, cachePolicy, segments);
+            } else {
+                this.cache = new Cache<BTreeNode>(cacheSize, EvictionPolicy.forName(cachePolicy, cacheSize));
+            }
+            this.cache.setStatistics(statistics);
             this.cacheSize = cacheSize;
         } else {
             this.useCache = 0;
         }
     }
 
+    /**
+     * Lets the node cache grow and shrink with its hit ratio and the heap usage. The capacity given
+     * to setUseCacheAndCacheSize becomes the ceiling, and the cache starts halfway between the floor
+     * and the ceiling. The node cache must be enabled first.
+     *
+     * @param adaptive    true to resize the node cache while the tree is used.
+     * @param minCapacity The smallest number of nodes the cache is shrunk to.
+     */
+    public void setAdaptiveCacheSizing(boolean adaptive, int minCapacity) {
+        if (adaptive && useCache == 1) {
+            this.cacheSizer = new AdaptiveCacheSizer(cache, statistics, minCapacity);
+        } else {
+            this.cacheSizer = null;
+        }
+    }
+
+    /**
+     * Returns the number of nodes the enabled cache can currently hold.
+     *
+     * @return The capacity of the node cache or page cache in nodes, or 0 if caching is disabled.
+     */
+    public int getCacheCapacity() {
+        if (useCache == 1) {
+            return cache.getCapacity();
+        }
+        return pageCache == null ? 0 : pageCache.getCapacity();
+    }
+
+    /**
+     * Sets the off-heap page cache usage and size for the BTree. The page cache holds serialized
+     * nodes in direct memory, so its size does not add to the heap or to garbage collection time.
+     *
+     * @param useCache  Indicates whether to use the off-heap cache (true) or not (false).
+     * @param cacheSize The number of nodes the cache holds, if caching is enabled.
+     */
+    public void setUseOffHeapCache(boolean useCache, int cacheSize) {
+        setUseOffHeapCache(useCache, cacheSize, "clock");
+    }
+
+    /**
+     * Sets the off-heap page cache usage, size and eviction policy for the BTree.
+     *
+     * @param useCache    Indicates whether to use the off-heap cache (true) or not (false).
+     * @param cacheSize   The number of nodes the cache holds, if caching is enabled.
+     * @param cachePolicy The eviction policy: lru, clock, 2q, arc or tinylfu.
+     */
+    public void setUseOffHeapCache(boolean useCache, int cacheSize, String cachePolicy) {
+        setUseOffHeapCache(useCache, cacheSize, cachePolicy, 1);
+    }
+
+    /**
+     * Sets the off-heap page cache usage, size, eviction policy and number of lock segments for the
+     * BTree. Several segments let hits from concurrent search threads proceed without waiting on each other.
+     *
+     * @param useCache    Indicates whether to use the off-heap cache (true) or not (false).
+     * @param cacheSize   The number of nodes the cache holds, if caching is enabled.
+     * @param cachePolicy The eviction policy: lru, clock, 2q, arc or tinylfu.
+     * @param segments    The number of lock segments; 1 keeps a single cache-wide policy.
+     */
+    public void setUseOffHeapCache(boolean useCache, int cacheSize, String cachePolicy, int segments) {
+        if (useCache) {
+            int pageSize = getNodeDiskSize(this.degree);
+            if (segments > 1) {
+                this.pageCache = new PageCache(cacheSize, pageSize, cachePolicy, segments);
+            } else {
+                this.pageCache = new PageCache(cacheSize, pageSize, EvictionPolicy.forName(cachePolicy, cacheSize));
+            }
+            this.pageCache.setStatistics(statistics);
+            this.cacheSize = cacheSize;
+        } else {
+            this.pageCache = null;
+        }
+    }
+
+    /**
+     * Pins the root and the levels below it in an always-resident tier. Pinned nodes are served
+     * without touching the evictable cache, which is then left to the lower levels, so leaf traffic
+     * can no longer push the top of the tree out. Pinning takes a snapshot of the current upper
+     * levels; nodes created by later splits are cached normally.
+     *
+     * @param levels The number of levels to pin (1 pins only the root), 0 to unpin everything, or
+     *               a negative number to size the tier from the tree height: every level except the
+     *               last internal level and the leaves, up to MAX_AUTO_PINNED_NODES nodes.
+     * @throws IOException If an error occurs while reading from disk.
+     */
+    public void pinUpperLevels(int levels) throws IOException {
+        pinnedTier = null;
+
+        int maxNodes = Integer.MAX_VALUE;
+        if (levels < 0) {
+            levels = Math.max(1, this.height - 1);
+            maxNodes = MAX_AUTO_PINNED_NODES;
+        }
+
+        // Walk down level by level, stopping before a level that would not fit
+        List<BTreeNode> pinned = new ArrayList<>();
+        List<BTreeNode> level = new ArrayList<>();
+        level.add(this.root);
+        for (int depth = 0; depth < levels && !level.isEmpty(); depth++) {
+            pinned.addAll(level);
+            if (depth + 1 == levels) {
+                break;
+            }
+            int nextLevelSize = 0;
+            for (BTreeNode node : level) {
+                nextLevelSize += node.isLeaf ? 0 : node.size + 1;
+            }
+            if (pinned.size() + nextLevelSize > maxNodes) {
+                break;
+            }
+            List<BTreeNode> nextLevel = new ArrayList<>(nextLevelSize);
+            for (BTreeNode node : level) {
+                if (!node.isLeaf) {
+                    for (int i = 0; i <= node.size; i++) {
+                        nextLevel.add(diskRead(node.children[i], depth + 1));
+                    }
+                }
+            }
+            level = nextLevel;
+        }
+        if (levels == 0) {
+            return;
+        }
+
+        LongIntHashMap index = new LongIntHashMap(pinned.size());
+        BTreeNode[] nodes = pinned.toArray(new BTreeNode[0]);
+        for (int i = 0; i < nodes.length; i++) {
+            index.put(nodes[i].address, i);
+            // Leave the evictable cache to the lower levels
+            if (useCache == 1) {
+                cache.removeObject(nodes[i]);
+            }
+        }
+        pinnedTier = new PinnedTier(index, nodes);
+    }
+
+    /**
+     * Returns the number of nodes held in the pinned tier.
+     *
+     * @return The number of pinned nodes.
+     */
+    public int getPinnedNodeCount() {
+        PinnedTier tier = pinnedTier;
+        return tier == null ? 0 : tier.index.size();
+    }
+
+    /**
+     * Starts recording the disk address of every node read, as big-endian longs, to the given file.
+     * Traces can be replayed against each eviction policy with CacheTraceBenchmark.
+     *
+     * @param traceFileName The file to write the trace to.
+     * @throws IOException If the trace file cannot be created.
+     */
+    public void setReadTrace(String traceFileName) throws IOException {
+        readTrace = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(traceFileName), 1 << 16));
+    }
+
+    /**
+     * Saves the disk addresses of the cached nodes to a warm set file, so a later run can preload
+     * them with loadWarmSet. The file records the degree and size of the B-Tree file, so a warm set
+     * is ignored once the tree has changed.
+     *
+     * @param warmSetFileName The file to write the warm set to.
+     * @throws IOException If the warm set file cannot be written.
+     */
+    public void saveWarmSet(String warmSetFileName) throws IOException {
+        long[] addresses;
+        if (useCache == 1) {
+            addresses = cache.getResidentAddresses();
+        } else if (pageCache != null) {
+            addresses = pageCache.getResidentAddresses();
+        } else {
+            addresses = new long[0];
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(warmSetFileName), 1 << 16))) {
+            out.writeInt(WARM_SET_MAGIC);
+            out.writeInt(this.degree);
+            out.writeLong(file.size());
+            out.writeInt(addresses.length);
+            for (long address : addresses) {
+                out.writeLong(address);
+            }
+        }
+    }
+
+    /**
+     * Preloads the nodes listed in a warm set file into the cache. The addresses are sorted and
+     * neighbouring nodes are read together, in reads of up to WARM_SET_READ_BYTES, so a cold start
+     * costs a few large sequential reads rather than one random read per node. Nodes are added to
+     * the cache in the order they were saved, which restores their LRU recency. If there are more
+     * nodes than the cache holds, the most recently used ones are loaded.
+     *
+     * @param warmSetFileName The warm set file written by saveWarmSet.
+     * @return The number of nodes preloaded, 0 if the file is missing or was saved for a different tree.
+     * @throws IOException If an error occurs while reading the warm set or the B-Tree file.
+     */
+    public int loadWarmSet(String warmSetFileName) throws IOException {
+        int capacity = getCacheCapacity();
+        if (capacity == 0 || !new File(warmSetFileName).exists()) {
+            return 0;
+        }
+        long[] saved;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(warmSetFileName), 1 << 16))) {
+            if (in.readInt() != WARM_SET_MAGIC || in.readInt() != this.degree || in.readLong() != file.size()) {
+                return 0;
+            }
+            saved = new long[in.readInt()];
+            for (int i = 0; i < saved.length; i++) {
+                saved[i] = in.readLong();
+            }
+        }
+
+        // Keep the most recently used nodes that fit, skipping pinned ones
+        PinnedTier pinned = pinnedTier;
+        long[] wanted = new long[Math.min(saved.length, capacity)];
+        int count = 0;
+        for (int i = saved.length - 1; i >= 0 && count < wanted.length; i--) {
+            if (pinned == null || pinned.index.get(saved[i]) < 0) {
+                wanted[count++] = saved[i];
+            }
+        }
+        // wanted now runs from most to least recently used; load in the opposite order
+        long[] order = new long[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = wanted[count - 1 - i];
+        }
+        long[] sorted = Arrays.copyOf(order, count);
+        Arrays.sort(sorted);
+
+        int nodeSize = getNodeDiskSize(this.degree);
+        BTreeNode[] nodes = new BTreeNode[count];
+        ByteBuffer chunk = ByteBuffer.allocateDirect(Math.max(WARM_SET_READ_BYTES, nodeSize));
+        int first = 0;
+        while (first < count) {
+            // Extend the run while the next node is close enough to read through the gap
+            long start = sorted[first];
+            int last = first;
+            while (last + 1 < count
+                    && sorted[last + 1] - (sorted[last] + nodeSize) <= WARM_SET_MAX_GAP
+                    && sorted[last + 1] + nodeSize - start <= chunk.capacity()) {
+                last++;
+            }
+            chunk.clear();
+            chunk.limit((int) (sorted[last] + nodeSize - start));
+            readFully(chunk, start);
+            for (int i = first; i <= last; i++) {
+                ByteBuffer page = chunk.duplicate();
+                page.limit(chunk.position());
+                page.position((int) (sorted[i] - start));
+                if (useCache == 1) {
+                    nodes[i] = parseNode(page, sorted[i]);
+                } else {
+                    pageCache.write(sorted[i], page);
+                }
+            }
+            first = last + 1;
+        }
+
+        if (useCache == 1) {
+            for (long address : order) {
+                cache.addObject(nodes[Arrays.binarySearch(sorted, address)]);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Receives the entries of the B-Tree from scanEntries, traverseInOrder and the other key visits.
+     */
+    public interface EntryVisitor {
+        /**
+         * Called once for each key stored in the B-Tree.
+         *
+         * @param key       The key.
+         * @param frequency The number of times the key was inserted.
+         */
+        void visit(long key, long frequency);
+    }
+
+    /**
+     * The pinned tier: an address index and the nodes it points into, published together through
+     * one volatile field so a reader that sees the index always sees its nodes. Re-pinning replaces
+     * the whole tier; only the node array's entries change in place, when a pinned node is written.
+     */
+    private static final class PinnedTier {
+        final LongIntHashMap index; // disk address -> index into nodes
+        final BTreeNode[] nodes;
+
+        PinnedTier(LongIntHashMap index, BTreeNode[] nodes) {
+            this.index = index;
+            this.nodes = nodes;
+        }
+    }
+
+    /**
+     * Visits every key in the B-Tree by reading the file front to back in large chunks. Every node
+     * slot in the file holds a live node, so no tree walk is needed; keys are visited in file order,
+     * not key order. The scan bypasses the caches and the statistics.
+     *
+     * @param visitor The visitor to call for each key.
+     * @throws IOException If an error occurs while reading the B-Tree file.
+     */
+    public void scanEntries(EntryVisitor visitor) throws IOException {
+        scanSlots(visitor, 0, getSlotCount());
+    }
+
+    /**
+     * Computes the k-mer statistics of the B-Tree in one pass over the file. The node slots are
+     * split into one contiguous range per thread; each range is scanned sequentially into its own
+     * KmerStatistics, and the partial results are merged.
+     *
+     * @param sequenceLength The number of bases in each key.
+     * @param threads        The number of threads scanning the file.
+     * @return The statistics of every key in the B-Tree.
+     * @throws IOException If an error occurs while reading the B-Tree file.
+     */
+    public KmerStatistics computeKmerStatistics(int sequenceLength, int threads) throws IOException {
+        long slots = getSlotCount();
+        int parts = (int) Math.max(1, Math.min(threads, slots));
+        KmerStatistics[] partials = new KmerStatistics[parts];
+        ExecutorService pool = parts > 1 ? Executors.newFixedThreadPool(parts) : null;
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int p = 0; p < parts; p++) {
+                long from = slots * p / parts;
+                long to = slots * (p + 1) / parts;
+                KmerStatistics partial = new KmerStatistics(sequenceLength);
+                partials[p] = partial;
+                if (pool != null) {
+                    workers.add(pool.submit(() -> {
+                        scanSlots(partial, from, to);
+                        return null;
+                    }));
+                } else {
+                    scanSlots(partial, from, to);
+                }
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while computing statistics", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        } finally {
+            if (pool != null) {
+                pool.shutdownNow();
+            }
+        }
+        for (int p = 1; p < parts; p++) {
+            partials[0].merge(partials[p]);
+        }
+        return partials[0];
+    }
+
+    /**
+     * Gets the number of node slots in the B-Tree file.
+     *
+     * @return The number of nodes stored after the metadata.
+     * @throws IOException If the size of the file cannot be read.
+     */
+    private long getSlotCount() throws IOException {
+        int nodeSize = getNodeDiskSize(this.degree);
+        return (file.size() - METADATA_SIZE + nodeSize - 1) / nodeSize;
+    }
+
+    /**
+     * Visits every key in a range of node slots, reading the slots front to back in large chunks.
+     *
+     * @param visitor  The visitor to call for each key.
+     * @param fromSlot The first slot to read.
+     * @param toSlot   The slot after the last one to read.
+     * @throws IOException If an error occurs while reading the B-Tree file.
+     */
+    private void scanSlots(EntryVisitor visitor, long fromSlot, long toSlot) throws IOException {
+        int nodeSize = getNodeDiskSize(this.degree);
+        long end = Math.min(file.size(), METADATA_SIZE + toSlot * nodeSize);
+        ByteBuffer chunk = ByteBuffer.allocateDirect(Math.max(SCAN_READ_BYTES / nodeSize, 1) * nodeSize);
+        for (long start = METADATA_SIZE + fromSlot * nodeSize; start < end; start += chunk.capacity()) {
+            chunk.clear();
+            chunk.limit((int) Math.min(chunk.capacity(), end - start));
+            readFully(chunk, start);
+            chunk.flip();
+            for (int offset = 0; offset < chunk.limit(); offset += nodeSize) {
+                int size = chunk.getInt(offset);
+                for (int i = 0; i < size; i++) {
+                    int entry = offset + Integer.BYTES * 2 + 1 + i * Long.BYTES * 2;
+                    visitor.visit(chunk.getLong(entry), chunk.getLong(entry + Long.BYTES));
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the n most frequent keys in the B-Tree. Every entry is streamed once through a
+     * bounded min-heap by scanEntries, so this reads the file sequentially and holds only n
+     * entries in memory, however large the tree is.
+     *
+     * @param n The number of keys to return.
+     * @return Up to n TreeObjects, most frequent first; keys of equal frequency are in ascending order.
+     * @throws IOException If an error occurs while reading the B-Tree file.
+     */
+    public TreeObject[] topN(int n) throws IOException {
+        TopFrequencyHeap heap = new TopFrequencyHeap(n);
+        scanEntries(heap::offer);
+        return heap.drainDescending();
+    }
+
+    /**
+     * Builds a Bloom filter over every key in the B-Tree and writes it to a file, tagged with the
+     * size of the B-Tree file so that loadBloomFilter ignores it once the tree has changed.
+     *
+     * @param bloomFileName     The file to write the filter to.
+     * @param falsePositiveRate The fraction of absent keys the filter may let through, in (0, 1).
+     * @throws IOException If an error occurs while reading the B-Tree or writing the filter.
+     */
+    public void writeBloomFilter(String bloomFileName, double falsePositiveRate) throws IOException {
+        long keys = getSize();
+        if (keys == 0) {
+            // The size is not stored in the file, so count the keys of a reopened tree
+            LongAdder count = new LongAdder();
+            scanEntries((key, frequency) -> count.increment());
+            keys = count.sum();
+        }
+        BloomFilter filter = new BloomFilter(keys, falsePositiveRate);
+        scanEntries((key, frequency) -> filter.add(key));
+        filter.writeTo(bloomFileName, file.size());
+    }
+
+    /**
+     * Loads a Bloom filter written by writeBloomFilter. From then on, searches skip the tree for
+     * any key the filter rules out, and inserts add their keys to the filter.
+     *
+     * @param bloomFileName The filter file.
+     * @return true if the filter was loaded, false if the file is missing or was built for a different tree.
+     * @throws IOException If an error occurs while reading the filter.
+     */
+    public boolean loadBloomFilter(String bloomFileName) throws IOException {
+        if (!new File(bloomFileName).exists()) {
+            return false;
+        }
+        bloomFilter = BloomFilter.readFrom(bloomFileName, file.size());
+        return bloomFilter != null;
+    }
+
+    /**
+     * Tells whether the loaded Bloom filter, if any, rules out a key.
+     *
+     * @param key The key to check.
+     * @return true if the key is certainly not in the B-Tree.
+     */
+    private boolean bloomRejects(long key) {
+        BloomFilter filter = bloomFilter;
+        if (filter != null && !filter.mightContain(key)) {
+            statistics.recordBloomRejection();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of bytes a node of the given degree occupies on disk.
+     *
+     * @param degree The degree of the BTree.
+     * @return The size of one node on disk in bytes.
+     */
+    public static int getNodeDiskSize(int degree) {
+        int byteSize = Integer.BYTES + 1 + Integer.BYTES; // Size of degree, isLeaf flag, and size
+        byteSize += (2 * degree - 1) * (Long.BYTES * 2); // Size of keys array
+        byteSize += (2 * degree) * Long.BYTES; // Size of children array
+        return byteSize;
+    }
+
+    /**
+     * Estimates the heap a cached node of the given degree occupies when full: the node, its key
+     * and child arrays, its TreeObjects and the cache's map entry for it.
+     *
+     * @param degree The degree of the BTree.
+     * @return The approximate heap size of one cached node in bytes.
+     */
+    public static int getNodeHeapSize(int degree) {
+        int byteSize = 48; // BTreeNode object header and fields
+        byteSize += 16 + (2 * degree - 1) * 4; // keys array of references
+        byteSize += (2 * degree - 1) * 32; // one TreeObject per key
+        byteSize += 16 + (2 * degree) * Long.BYTES; // children array
+        byteSize += 96; // map entry, boxed address and policy bookkeeping
+        return byteSize;
+    }
+
+    /**
+     * Enables or disables concurrent insert mode. In this mode insert and search latch each node
+     * they visit (latch crabbing), so several threads can insert into and search the same tree.
+     * The mode must be chosen before any thread starts using the tree.
+     *
+     * @param concurrentInsert true to latch nodes on insert and search, false for single-threaded inserts.
+     */
+    public void setConcurrentInsert(boolean concurrentInsert) {
+        this.concurrentInsert = concurrentInsert;
+    }
+
+    /**
+     * Enables asynchronous prefetching for traversals and batch lookups. When a node is visited,
+     * reads for the children visited after it are issued on a pool of I/O threads.
+     *
+     * @param threads The number of I/O threads, or 0 to disable prefetching.
+     */
+    public void setPrefetchThreads(int threads) {
+        if (prefetcher != null) {
+            prefetcher.close();
+            prefetcher = null;
+        }
+        if (threads > 0) {
+            prefetcher = new NodePrefetcher(this, threads);
+        }
+    }
+
+    /**
+     * Stops the prefetch threads, closes any read trace and closes the B-Tree file.
+     *
+     * @throws IOException If an error occurs while closing the file.
+     */
+    public void close() throws IOException {
+        if (prefetcher != null) {
+            prefetcher.close();
+            prefetcher = null;
+        }
+        if (readTrace != null) {
+            readTrace.close();
+            readTrace = null;
+        }
+        file.close();
+    }
+
     /**
      * Returns the size of the BTree.
      *
      * @return The size of the BTree.
      */
     public long getSize() {
-        return this.size;
+        return this.size.sum();
     }
 
     /**
@@ -138,7 +725,7 @@ public class BTree implements BTreeInterface {
      * @return The number of nodes in the BTree.
      */
     public int getNumberOfNodes() {
-        return this.numNodes;
+        return this.numNodes.intValue();
     }
 
     /**
@@ -161,10 +748,68 @@ public class BTree implements BTreeInterface {
     /**
      * Returns the cache hit ratio of the BTree.
      *
-     * @return The cache hit ratio, calculated as cacheHit / cacheRef.
+     * @return The fraction of node reads served from memory, or 0 if no node was read.
      */
     public double getCacheHitRatio() {
-        return (double) cacheHit / cacheRef;
+        return statistics.getHitRatio();
+    }
+
+    /**
+     * Returns the cache and I/O statistics of the BTree. The counters keep running until they are
+     * reset, so callers can reset them between phases such as loading and querying.
+     *
+     * @return The statistics of this BTree.
+     */
+    public BTreeStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Looks up the frequency of one key with search.
+     *
+     * @param key The key to search for.
+     * @return The frequency of the key, or 0 if it is not found.
+     * @throws IOException If an I/O error occurs during the search.
+     */
+    @Override
+    public long get(long key) throws IOException {
+        TreeObject found = search(key);
+        return found == null ? 0 : found.getFrequency();
+    }
+
+    /**
+     * Adds occurrences of a key with a single insert, which adds the count to the frequency.
+     *
+     * @param key   The key to add.
+     * @param count The number of occurrences to add.
+     * @throws IOException If an error occurs while reading from or writing to disk.
+     */
+    @Override
+    public void upsert(long key, long count) throws IOException {
+        insert(new TreeObject(key, count));
+    }
+
+    /**
+     * Looks up many keys at once with searchBatch.
+     *
+     * @param keys The keys to search for.
+     * @return The frequency of each key, in the same order, with 0 for keys not found.
+     * @throws IOException If an I/O error occurs during the search.
+     */
+    @Override
+    public long[] getBatch(long[] keys) throws IOException {
+        return searchBatch(keys);
+    }
+
+    /**
+     * Visits every key in ascending order with traverseInOrder.
+     *
+     * @param visitor The visitor to call for each key.
+     * @throws IOException If an error occurs while reading from disk.
+     */
+    @Override
+    public void scan(EntryVisitor visitor) throws IOException {
+        traverseInOrder(visitor);
     }
 
     /**
@@ -175,17 +820,24 @@ public class BTree implements BTreeInterface {
      * @throws IOException If an I/O error occurs during the search.
      */
     public TreeObject search(long key) throws IOException {
-            return search(this.root, key);
+            if (bloomRejects(key)) {
+                return null;
+            }
+            if (concurrentInsert) {
+                return searchWithLatches(key);
+            }
+            return search(this.root, key, 0);
     }
     /**
      * Recursively searches for a key in the B-tree starting from the given node.
      *
      * @param node The current node being searched.
      * @param key The key to search for.
+     * @param depth The depth of the node, 0 for the root.
      * @return The TreeObject associated with the key, or null if the key is not found.
      * @throws IOException If an I/O error occurs during the search.
      */
-    private TreeObject search(BTreeNode node, long key) throws IOException {
+    private TreeObject search(BTreeNode node, long key, int depth) throws IOException {
         int i = 0;
 
         // Find the index of the first key greater than or equal to the search key
@@ -202,10 +854,10 @@ public class BTree implements BTreeInterface {
         } else {
             // If the key is not found and the current node is not a leaf,
             // read the child node from disk
-            BTreeNode childNode = diskRead(node.children[i]);
+            BTreeNode childNode = diskRead(node.children[i], depth + 1);
 
             // Recursively search for the key in the child node
-            TreeObject result = search(childNode, key);
+            TreeObject result = search(childNode, key, depth + 1);
 
             return result;
         }
@@ -220,6 +872,19 @@ public class BTree implements BTreeInterface {
     * @throws IOException If an error occurs while reading from disk.
     */
     protected BTreeNode searchNode(BTreeNode node, long key) throws IOException {
+        return searchNode(node, key, 0);
+    }
+
+    /**
+    * Searches for a node containing the given key in the subtree at the given depth.
+    *
+    * @param node  The root node of the subtree to search in.
+    * @param key   The key to search for.
+    * @param depth The depth of the node, 0 for the root.
+    * @return The node containing the key, or null if the key is not found.
+    * @throws IOException If an error occurs while reading from disk.
+    */
+    private BTreeNode searchNode(BTreeNode node, long key, int depth) throws IOException {
         int i = 0;
         
         // Traverse the keys in the node
@@ -237,30 +902,395 @@ public class BTree implements BTreeInterface {
         }
         // If the node is not a leaf, search recursively in the child node
         else {
-            BTreeNode childNode = diskRead(node.children[i]);
+            BTreeNode childNode = diskRead(node.children[i], depth + 1);
             
             // Recursively search for the key in the child node
-            BTreeNode result = searchNode(childNode, key);
+            BTreeNode result = searchNode(childNode, key, depth + 1);
 
             return result;
         }
     }
 
     /**
-    * Inserts a TreeObject into the B-Tree.
+     * Searches for many keys at once. The distinct keys are sorted and pushed down the tree together,
+     * so every node on their shared paths is read once, and all children needed below a node are
+     * prefetched before the first of them is visited.
+     *
+     * @param keys The keys to search for.
+     * @return The frequency of each key, in the same order as the keys, with 0 for keys not found.
+     * @throws IOException If an I/O error occurs during the search.
+     */
+    public long[] searchBatch(long[] keys) throws IOException {
+        long[] frequencies = new long[keys.length];
+        if (concurrentInsert || keys.length == 0) {
+            // Batches skip the latches, so fall back to single lookups while inserts may be running
+            for (int i = 0; i < keys.length; i++) {
+                TreeObject result = search(keys[i]);
+                frequencies[i] = result == null ? 0 : result.getFrequency();
+            }
+            return frequencies;
+        }
+
+        // Sort and dedupe the keys, dropping any the Bloom filter rules out
+        long[] distinct = keys.clone();
+        Arrays.sort(distinct);
+        int count = 0;
+        for (int i = 0; i < distinct.length; i++) {
+            if ((i == 0 || distinct[i - 1] != distinct[i]) && !bloomRejects(distinct[i])) {
+                distinct[count++] = distinct[i];
+            }
+        }
+
+        long[] distinctFrequencies = new long[count];
+        if (count > 0) {
+            searchBatch(this.root, 0, distinct, 0, count, distinctFrequencies);
+        }
+
+        // Scatter the results back to the original order; rejected keys stay 0
+        for (int i = 0; i < keys.length; i++) {
+            int index = Arrays.binarySearch(distinct, 0, count, keys[i]);
+            if (index >= 0) {
+                frequencies[i] = distinctFrequencies[index];
+            }
+        }
+        return frequencies;
+    }
+
+    /**
+     * Resolves the sorted keys in [from, to) against the subtree rooted at the given node.
+     *
+     * @param node        The root of the subtree.
+     * @param depth       The depth of the node, 0 for the root.
+     * @param keys        The sorted, distinct keys.
+     * @param from        The first key to resolve (inclusive).
+     * @param to          The last key to resolve (exclusive).
+     * @param frequencies The frequencies found, indexed like keys.
+     * @throws IOException If an I/O error occurs during the search.
+     */
+    private void searchBatch(BTreeNode node, int depth, long[] keys, int from, int to, long[] frequencies) throws IOException {
+        // Keys in [childFrom[i], childTo[i]) belong in child i
+        int[] childFrom = new int[node.size + 1];
+        int[] childTo = new int[node.size + 1];
+        int k = from;
+        for (int i = 0; i < node.size; i++) {
+            long nodeKey = node.keys[i].getValue();
+            childFrom[i] = k;
+            while (k < to && keys[k] < nodeKey) {
+                k++;
+            }
+            childTo[i] = k;
+            if (k < to && keys[k] == nodeKey) {
+                frequencies[k] = node.keys[i].getFrequency();
+                k++;
+            }
+        }
+        childFrom[node.size] = k;
+        childTo[node.size] = to;
+        if (node.isLeaf) {
+            return;
+        }
+
+        // Issue reads for every child after the first one with keys, then visit them in order
+        boolean first = true;
+        for (int i = 0; i <= node.size; i++) {
+            if (childFrom[i] < childTo[i]) {
+                if (!first && prefetcher != null) {
+                    prefetcher.prefetch(node.children[i], depth + 1);
+                }
+                first = false;
+            }
+        }
+        for (int i = 0; i <= node.size; i++) {
+            if (childFrom[i] < childTo[i]) {
+                searchBatch(readChild(node, i, depth + 1), depth + 1, keys, childFrom[i], childTo[i], frequencies);
+            }
+        }
+    }
+
+    /**
+     * Sums the frequencies of the keys in each of many key ranges in one walk of the tree. The
+     * ranges are pushed down the tree together like the keys of searchBatch, so a node is read at
+     * most once however many ranges reach it, and subtrees outside every range are never read.
+     *
+     * @param lows  The first key of each range, in ascending order.
+     * @param highs The last key of each range; ranges must not overlap.
+     * @return The total frequency of the keys in each range, in the same order.
+     * @throws IOException If an I/O error occurs during the search.
+     */
+    @Override
+    public long[] sumRanges(long[] lows, long[] highs) throws IOException {
+        long[] sums = new long[lows.length];
+        if (lows.length > 0) {
+            sumRanges(this.root, 0, lows, highs, 0, lows.length, sums);
+        }
+        return sums;
+    }
+
+    /**
+     * Adds the keys of the subtree rooted at the given node to the ranges in [from, to) they fall in.
+     *
+     * @param node  The root of the subtree.
+     * @param depth The depth of the node, 0 for the root.
+     * @param lows  The first key of each range, in ascending order.
+     * @param highs The last key of each range.
+     * @param from  The first range that may reach the subtree (inclusive).
+     * @param to    The last range that may reach the subtree (exclusive).
+     * @param sums  The totals, indexed like the ranges.
+     * @throws IOException If an I/O error occurs during the search.
+     */
+    private void sumRanges(BTreeNode node, int depth, long[] lows, long[] highs, int from, int to, long[] sums) throws IOException {
+        // Ranges in [childFrom[i], childTo[i]) reach child i, which holds the keys between separators i - 1 and i
+        int[] childFrom = new int[node.size + 1];
+        int[] childTo = new int[node.size + 1];
+        int first = from; // first range not entirely below the current separator
+        int last = from;  // first range entirely above the current separator
+        for (int i = 0; i < node.size; i++) {
+            long nodeKey = node.keys[i].getValue();
+            childFrom[i] = first;
+            while (last < to && lows[last] < nodeKey) {
+                last++;
+            }
+            childTo[i] = last;
+            while (first < to && highs[first] < nodeKey) {
+                first++;
+            }
+            if (first < to && lows[first] <= nodeKey) {
+                sums[first] += node.keys[i].getFrequency();
+            }
+        }
+        childFrom[node.size] = first;
+        childTo[node.size] = to;
+        if (node.isLeaf) {
+            return;
+        }
+
+        // Issue reads for every child after the first one reached by a range, then visit them in order
+        boolean firstChild = true;
+        for (int i = 0; i <= node.size; i++) {
+            if (childFrom[i] < childTo[i]) {
+                if (!firstChild && prefetcher != null) {
+                    prefetcher.prefetch(node.children[i], depth + 1);
+                }
+                firstChild = false;
+            }
+        }
+        for (int i = 0; i <= node.size; i++) {
+            if (childFrom[i] < childTo[i]) {
+                sumRanges(readChild(node, i, depth + 1), depth + 1, lows, highs, childFrom[i], childTo[i], sums);
+            }
+        }
+    }
+
+    /**
+     * Visits every key within the given Hamming distance of a query, in key order. The tree is
+     * walked from the root, and a subtree is skipped when no key in its range can be close enough:
+     * the separators around a child bound its keys, and the smallest distance between the query
+     * and any sequence between two bounds takes one pass over the bases to compute.
+     *
+     * @param key            The query sequence.
+     * @param sequenceLength The number of bases in each key.
+     * @param maxDistance    The largest number of mismatched bases allowed.
+     * @param visitor        The visitor to call for each key found, with its frequency.
+     * @throws IOException If an I/O error occurs during the search.
+     */
+    public void searchWithinDistance(long key, int sequenceLength, int maxDistance, EntryVisitor visitor) throws IOException {
+        long lastKey = (1L << (2 * sequenceLength)) - 1;
+        searchWithinDistance(this.root, 0, 0, lastKey, key, sequenceLength, maxDistance, visitor);
+    }
+
+    /**
+     * Returns the total frequency of the keys within the given Hamming distance of a query.
+     *
+     * @param key            The query sequence.
+     * @param sequenceLength The number of bases in each key.
+     * @param maxDistance    The largest number of mismatched bases allowed.
+     * @return The sum of the frequencies of every key within maxDistance of the query.
+     * @throws IOException If an I/O error occurs during the search.
+     */
+    @Override
+    public long countWithinDistance(long key, int sequenceLength, int maxDistance) throws IOException {
+        LongAdder total = new LongAdder();
+        searchWithinDistance(key, sequenceLength, maxDistance, (found, frequency) -> total.add(frequency));
+        return total.sum();
+    }
+
+    /**
+     * Visits the keys of the subtree rooted at the given node that are within distance of the query.
+     *
+     * @param node           The root of the subtree.
+     * @param depth          The depth of the node, 0 for the root.
+     * @param low            The smallest key the subtree can hold.
+     * @param high           The largest key the subtree can hold.
+     * @param key            The query sequence.
+     * @param sequenceLength The number of bases in each key.
+     * @param maxDistance    The largest number of mismatched bases allowed.
+     * @param visitor        The visitor to call for each key found.
+     * @throws IOException If an I/O error occurs during the search.
+     */
+    private void searchWithinDistance(BTreeNode node, int depth, long low, long high, long key, int sequenceLength, int maxDistance, EntryVisitor visitor) throws IOException {
+        // Child i holds the keys between separators i - 1 and i; collect the children worth visiting
+        boolean[] visit = new boolean[node.size + 1];
+        boolean first = true;
+        if (!node.isLeaf) {
+            for (int i = 0; i <= node.size; i++) {
+                long childLow = i == 0 ? low : node.keys[i - 1].getValue();
+                long childHigh = i == node.size ? high : node.keys[i].getValue();
+                visit[i] = minDistanceInRange(childLow, childHigh, key, sequenceLength, maxDistance) <= maxDistance;
+                if (visit[i]) {
+                    if (!first && prefetcher != null) {
+                        prefetcher.prefetch(node.children[i], depth + 1);
+                    }
+                    first = false;
+                }
+            }
+        }
+        for (int i = 0; i <= node.size; i++) {
+            if (visit[i]) {
+                searchWithinDistance(readChild(node, i, depth + 1), depth + 1,
+                        i == 0 ? low : node.keys[i - 1].getValue(), i == node.size ? high : node.keys[i].getValue(),
+                        key, sequenceLength, maxDistance, visitor);
+            }
+            if (i < node.size && SequenceUtils.hammingDistance(node.keys[i].getValue(), key, sequenceLength) <= maxDistance) {
+                visitor.visit(node.keys[i].getValue(), node.keys[i].getFrequency());
+            }
+        }
+    }
+
+    /**
+     * Returns the smallest Hamming distance between a query and any key in [low, high]. Keys in the
+     * range agree with both bounds on every base above the first base where the bounds differ. At
+     * that base a key either takes a base strictly between theirs, leaving every base below free,
+     * or follows one bound, staying above low or below high on the bases below.
+     *
+     * @param low            The smallest key of the range.
+     * @param high           The largest key of the range.
+     * @param key            The query sequence.
+     * @param sequenceLength The number of bases in each key.
+     * @param maxDistance    The distance beyond which the exact value does not matter.
+     * @return The fewest mismatched bases any key in the range has, or some number above maxDistance
+     *         if every key is further than that.
+     */
+    private static int minDistanceInRange(long low, long high, long key, int sequenceLength, int maxDistance) {
+        long differ = low ^ high;
+        if (differ == 0) {
+            return SequenceUtils.hammingDistance(low, key, sequenceLength);
+        }
+        int base = (63 - Long.numberOfLeadingZeros(differ)) / 2; // first differing base, counted from the right
+        long sharedBits = -1L << (2 * (base + 1));
+        int shared = SequenceUtils.hammingDistance(low & sharedBits, key & sharedBits, sequenceLength);
+        if (shared > maxDistance) {
+            return shared; // Already too far; the bases below cannot bring the key closer
+        }
+        int lowBase = baseAt(low, base);
+        int highBase = baseAt(high, base);
+        int keyBase = baseAt(key, base);
+        int best = Integer.MAX_VALUE;
+        if (highBase - lowBase >= 2) {
+            best = keyBase > lowBase && keyBase < highBase ? 0 : 1;
+        }
+        int budget = maxDistance - shared;
+        if (best > 0) {
+            int first = keyBase == lowBase ? 0 : 1;
+            best = Math.min(best, first + minDistanceAtLeast(low, key, base - 1, budget - first));
+        }
+        if (best > 0) {
+            int first = keyBase == highBase ? 0 : 1;
+            best = Math.min(best, first + minDistanceAtMost(high, key, base - 1, budget - first));
+        }
+        return shared + best;
+    }
+
+    /**
+     * Returns the smallest Hamming distance between the query and any sequence that is at least
+     * the bound, counting only bases top down to 0.
+     *
+     * @param bound The smallest sequence allowed.
+     * @param key   The query sequence.
+     * @param top   The highest base to compare, counted from the right.
+     * @param limit The distance beyond which the exact value does not matter.
+     * @return The fewest mismatched bases, or some number above limit if every sequence is further.
+     */
+    private static int minDistanceAtLeast(long bound, long key, int top, int limit) {
+        int best = Integer.MAX_VALUE;
+        int matched = 0; // mismatches while still equal to the bound
+        for (int base = top; base >= 0 && matched < best && matched <= limit; base--) {
+            int boundBase = baseAt(bound, base);
+            int keyBase = baseAt(key, base);
+            if (keyBase > boundBase) {
+                best = Math.min(best, matched); // Rise above the bound here; every base below is free
+            } else if (boundBase < 3) {
+                best = Math.min(best, matched + 1);
+            }
+            if (keyBase != boundBase) {
+                matched++;
+            }
+        }
+        return Math.min(best, matched);
+    }
+
+    /**
+     * Returns the smallest Hamming distance between the query and any sequence that is at most
+     * the bound, counting only bases top down to 0.
+     *
+     * @param bound The largest sequence allowed.
+     * @param key   The query sequence.
+     * @param top   The highest base to compare, counted from the right.
+     * @param limit The distance beyond which the exact value does not matter.
+     * @return The fewest mismatched bases, or some number above limit if every sequence is further.
+     */
+    private static int minDistanceAtMost(long bound, long key, int top, int limit) {
+        int best = Integer.MAX_VALUE;
+        int matched = 0; // mismatches while still equal to the bound
+        for (int base = top; base >= 0 && matched < best && matched <= limit; base--) {
+            int boundBase = baseAt(bound, base);
+            int keyBase = baseAt(key, base);
+            if (keyBase < boundBase) {
+                best = Math.min(best, matched); // Drop below the bound here; every base below is free
+            } else if (boundBase > 0) {
+                best = Math.min(best, matched + 1);
+            }
+            if (keyBase != boundBase) {
+                matched++;
+            }
+        }
+        return Math.min(best, matched);
+    }
+
+    /**
+     * Returns one base of an encoded sequence.
+     *
+     * @param sequence The encoded sequence.
+     * @param base     The position of the base, counted from the right.
+     * @return The two bits of the base.
+     */
+    private static int baseAt(long sequence, int base) {
+        return (int) (sequence >>> (2 * base)) & 0b11;
+    }
+
+    /**
+    * Inserts a TreeObject into the B-Tree. If the key is already stored, the object's frequency
+    * is added to the stored frequency.
     *
     * @param obj The TreeObject to be inserted.
     * @throws IOException If an error occurs while reading from or writing to disk.
     */
     public void insert(TreeObject obj) throws IOException {
+        BloomFilter filter = bloomFilter;
+        if (filter != null) {
+            filter.add(obj.getValue()); // Keep the filter free of false negatives
+        }
+        if (concurrentInsert) {
+            insertWithLatches(obj);
+            return;
+        }
         BTreeNode nodeR = this.root;
     
         // Search for a node containing the key
         BTreeNode frequencyNode = searchNode(nodeR, obj.getValue());
     
-        // If a node with the key already exists, increment its frequency and write to disk
+        // If a node with the key already exists, add to its frequency and write to disk
         if (frequencyNode != null) {
-            frequencyNode.getKey(obj).incrementFrequency();
+            frequencyNode.getKey(obj).addFrequency(obj.getFrequency());
             diskWrite(frequencyNode);
         }
         // If the key is not found
@@ -269,12 +1299,12 @@ public class BTree implements BTreeInterface {
             if (nodeR.size == 2 * this.degree - 1) {
                 BTreeNode nodeS = splitRoot(this);
                 insertNonFull(nodeS, obj);
-                this.size++; // Increment size when splitting the root
+                this.size.increment(); // Increment size when splitting the root
             }
             // If the root node is not full, insert the key into the root
             else {
                 insertNonFull(nodeR, obj);
-                this.size++; // Increment size when inserting into a non-full node
+                this.size.increment(); // Increment size when inserting into a non-full node
             }
         }
     }
@@ -287,8 +1317,11 @@ public class BTree implements BTreeInterface {
         tree.root = nodeS;
         tree.rootAddress = tree.root.address;
         splitChild(nodeS, 0);
-        this.numNodes++;
+        this.numNodes.increment();
         tree.height++;
+
+        // The root moved, so write the updated metadata to disk
+        writeMetaData();
         return nodeS;
     }
 
@@ -340,15 +1373,12 @@ public class BTree implements BTreeInterface {
     
         // Increment the size of nodeX and the number of nodes
         nodeX.size = nodeX.size + 1;
-        this.numNodes++;
+        this.numNodes.increment();
     
         // Write the modified nodes back to disk
         diskWrite(nodeY);
         diskWrite(nodeZ);
         diskWrite(nodeX);
-    
-        // Write the updated metadata to disk
-        writeMetaData();
     }
 
     /**
@@ -359,6 +1389,18 @@ public class BTree implements BTreeInterface {
     * @throws IOException If an error occurs while reading from or writing to disk.
     */
     public void insertNonFull(BTreeNode node, TreeObject key) throws IOException {
+        insertNonFull(node, key, 0);
+    }
+
+    /**
+    * Inserts a TreeObject into a non-full node at the given depth of the B-Tree.
+    *
+    * @param node  The non-full node where the TreeObject should be inserted.
+    * @param key   The TreeObject to be inserted.
+    * @param depth The depth of the node, 0 for the root.
+    * @throws IOException If an error occurs while reading from or writing to disk.
+    */
+    private void insertNonFull(BTreeNode node, TreeObject key, int depth) throws IOException {
         int i = node.size - 1;
     
         // If the node is a leaf node
@@ -385,7 +1427,7 @@ public class BTree implements BTreeInterface {
             i = i + 1;
     
             // Read the child node from disk
-            BTreeNode child = diskRead(node.children[i]);
+            BTreeNode child = diskRead(node.children[i], depth + 1);
     
             // If the child node is full, split it
             if (child.size == 2 * degree - 1) {
@@ -394,15 +1436,221 @@ public class BTree implements BTreeInterface {
                 // After splitting, determine the correct child node for insertion
                 if (key.compareTo(node.keys[i]) == 1) {
                     i = i + 1;
-                    child = diskRead(node.children[i]);
+                    child = diskRead(node.children[i], depth + 1);
                 }
             }
     
             // Read the child node again to get the updated reference
-            child = diskRead(child.address);
+            child = diskRead(child.address, depth + 1);
     
             // Recursively insert the key into the child node
-            insertNonFull(child, key);
+            insertNonFull(child, key, depth + 1);
+        }
+    }
+
+    /**
+     * Returns the latch guarding the node stored at the given disk address. Each level of the tree
+     * has a fixed set of latches, and the nodes of a level share them by a hash of their address, so
+     * the number of latches does not grow with the tree. Levels are counted up from the leaves, so a
+     * node keeps its level, and its latch, when the root splits. A thread only waits for a latch
+     * of a lower level than any it holds, so sharing latches within a level cannot deadlock.
+     *
+     * @param diskAddress The disk address of the node.
+     * @param level       The level of the node, 0 for leaves and the height for the root.
+     * @return The read/write latch for that node.
+     */
+    private ReentrantReadWriteLock latchFor(long diskAddress, int level) {
+        ReentrantReadWriteLock[] levelLatches = latches.get(level);
+        if (levelLatches == null) {
+            levelLatches = new ReentrantReadWriteLock[LATCH_STRIPES];
+            for (int i = 0; i < LATCH_STRIPES; i++) {
+                levelLatches[i] = new ReentrantReadWriteLock();
+            }
+            if (!latches.compareAndSet(level, null, levelLatches)) {
+                levelLatches = latches.get(level);
+            }
+        }
+        // Node addresses are evenly spaced, so mix the bits before picking a latch
+        long hash = diskAddress * 0x9E3779B97F4A7C15L;
+        return levelLatches[(int) (hash >>> 40) & (LATCH_STRIPES - 1)];
+    }
+
+    /**
+     * Inserts a TreeObject using write-latch crabbing. Full nodes are split on the way down, so once
+     * a child is latched it can always absorb a key and the parent latch is released right away.
+     * Every thread latches top-down (root pointer, then root, then children), so latching cannot deadlock.
+     *
+     * @param obj The TreeObject to be inserted.
+     * @throws IOException If an error occurs while reading from or writing to disk.
+     */
+    private void insertWithLatches(TreeObject obj) throws IOException {
+        BTreeNode node;
+        Lock nodeLatch = null; // the latch held on node, released by the outer finally
+
+        int level;
+
+        try {
+            rootLatch.writeLock().lock();
+            try {
+                node = this.root;
+                level = this.height;
+                Lock rootNodeLatch = latchFor(node.address, level).writeLock();
+                rootNodeLatch.lock();
+                nodeLatch = rootNodeLatch;
+
+                // If the root is full, split it while we still own the root pointer
+                if (node.size == 2 * this.degree - 1) {
+                    BTreeNode nodeS = new BTreeNode(this.degree, false, true);
+                    // No node is above the root yet, so no other thread holds a latch of the new root's level
+                    Lock latchS = latchFor(nodeS.address, level + 1).writeLock();
+                    latchS.lock();
+                    try {
+                        nodeS.children[0] = node.address;
+                        splitChild(nodeS, 0);
+                        this.root = nodeS;
+                        this.rootAddress = nodeS.address;
+                        this.numNodes.increment();
+                        this.height++;
+                        writeMetaData();
+
+                        // Hand the new root's latch over to nodeLatch
+                        nodeLatch.unlock();
+                        nodeLatch = latchS;
+                        latchS = null;
+                        node = nodeS;
+                        level++;
+                    } finally {
+                        if (latchS != null) {
+                            latchS.unlock();
+                        }
+                    }
+                }
+            } finally {
+                rootLatch.writeLock().unlock();
+            }
+
+            for (int depth = 0; ; depth++) {
+                int i = 0;
+                while (i < node.size && obj.compareTo(node.keys[i]) > 0) {
+                    i++;
+                }
+
+                // The key already exists, so only its frequency changes
+                if (i < node.size && obj.compareTo(node.keys[i]) == 0) {
+                    node.keys[i].addFrequency(obj.getFrequency());
+                    diskWrite(node);
+                    return;
+                }
+
+                // Leaf nodes are never full here, so the key can be placed directly
+                if (node.isLeaf) {
+                    for (int j = node.size; j > i; j--) {
+                        node.keys[j] = node.keys[j - 1];
+                    }
+                    node.keys[i] = obj;
+                    node.size = node.size + 1;
+                    diskWrite(node);
+                    this.size.increment();
+                    return;
+                }
+
+                // Latch the child before reading it so we see its latest contents; the finally
+                // releases the child latch unless it has been handed over to nodeLatch
+                Lock childLatch = latchFor(node.children[i], level - 1).writeLock();
+                childLatch.lock();
+                try {
+                    BTreeNode child = diskRead(node.children[i], depth + 1);
+
+                    if (child.size == 2 * degree - 1) {
+                        splitChild(node, i);
+
+                        // The middle key of the child moved up into this node
+                        if (obj.compareTo(node.keys[i]) == 0) {
+                            childLatch.unlock();
+                            childLatch = null;
+                            node.keys[i].addFrequency(obj.getFrequency());
+                            diskWrite(node);
+                            return;
+                        }
+
+                        // The new right sibling is only reachable through this node, which stays latched, so the
+                        // child is released first: waiting for a latch of its own level while holding it could deadlock
+                        if (obj.compareTo(node.keys[i]) > 0) {
+                            i = i + 1;
+                            childLatch.unlock();
+                            childLatch = null;
+                            Lock siblingLatch = latchFor(node.children[i], level - 1).writeLock();
+                            siblingLatch.lock();
+                            childLatch = siblingLatch;
+                        }
+                        child = diskRead(node.children[i], depth + 1);
+                    }
+
+                    // The child can absorb a key, so the parent is safe to release
+                    nodeLatch.unlock();
+                    nodeLatch = childLatch;
+                    childLatch = null;
+                    node = child;
+                    level--;
+                } finally {
+                    if (childLatch != null) {
+                        childLatch.unlock();
+                    }
+                }
+            }
+        } finally {
+            if (nodeLatch != null) {
+                nodeLatch.unlock();
+            }
+        }
+    }
+
+    /**
+     * Searches for a key using read-latch crabbing, so lookups can run while other threads insert.
+     *
+     * @param key The key to search for.
+     * @return A copy of the TreeObject associated with the key, or null if the key is not found.
+     * @throws IOException If an I/O error occurs during the search.
+     */
+    private TreeObject searchWithLatches(long key) throws IOException {
+        BTreeNode node;
+        Lock nodeLatch;
+
+        int level;
+
+        rootLatch.readLock().lock();
+        try {
+            node = this.root;
+            level = this.height;
+            nodeLatch = latchFor(node.address, level).readLock();
+            nodeLatch.lock();
+        } finally {
+            rootLatch.readLock().unlock();
+        }
+
+        try {
+            for (int depth = 0; ; depth++) {
+                int i = 0;
+                while (i < node.size && key > node.keys[i].getValue()) {
+                    i++;
+                }
+                if (i < node.size && key == node.keys[i].getValue()) {
+                    // Copy the key, since its frequency may change once the latch is released
+                    return new TreeObject(node.keys[i].getValue(), node.keys[i].getFrequency());
+                }
+                if (node.isLeaf) {
+                    return null;
+                }
+                Lock childLatch = latchFor(node.children[i], level - 1).readLock();
+                childLatch.lock();
+                BTreeNode child = diskRead(node.children[i], depth + 1);
+                nodeLatch.unlock();
+                node = child;
+                nodeLatch = childLatch;
+                level--;
+            }
+        } finally {
+            nodeLatch.unlock();
         }
     }
 
@@ -414,36 +1662,50 @@ public class BTree implements BTreeInterface {
     */
     public void dumpToFile(PrintWriter out) throws IOException {
         // Perform in-order traversal of the B-Tree and write the contents to the file
-        inOrderTraversal(root, out);
+        traverseInOrder((key, frequency) -> out.println(SequenceUtils.longToDnaString(key, this.subsequenceLength) + " " + frequency));
     
         // Ensure all data is flushed and written to the file
         out.flush();
     }
+
+    /**
+     * Visits every key in the B-Tree in ascending key order with an in-order traversal.
+     *
+     * @param visitor The visitor to call for each key.
+     * @throws IOException If an error occurs while reading from disk.
+     */
+    public void traverseInOrder(EntryVisitor visitor) throws IOException {
+        inOrderTraversal(root, 0, visitor);
+    }
     
     /**
-     * Performs an in-order traversal of the B-Tree and writes the contents to the provided PrintWriter.
+     * Performs an in-order traversal of the B-Tree and passes its contents to the provided visitor.
      *
      * @param node The root node of the subtree to be traversed.
-     * @param out The PrintWriter object used to write the contents to.
-     * @throws IOException If an error occurs while reading from disk or writing to the file.
+     * @param depth The depth of the node, 0 for the root.
+     * @param visitor The visitor to call for each key.
+     * @throws IOException If an error occurs while reading from disk.
      */
-    private void inOrderTraversal(BTreeNode node, PrintWriter out) throws IOException {
+    private void inOrderTraversal(BTreeNode node, int depth, EntryVisitor visitor) throws IOException {
         if (node != null) {
+            // Start reading the children visited after the first one
+            prefetchChildren(node, depth);
+
             // Recursively traverse the left subtree
             for (int i = 0; i < node.size; i++) {
                 if (!node.isLeaf) {
                     // Read the child node from disk and recursively traverse it
-                    inOrderTraversal(diskRead(node.children[i]), out);
+                    inOrderTraversal(readChild(node, i, depth + 1), depth + 1, visitor);
                 }
     
-                // Write the key and its frequency to the file
-                out.println(SequenceUtils.longToDnaString(node.keys[i].getValue(), this.subsequenceLength) + " " + node.keys[i].getFrequency());
+                // Visit the key and its frequency
+                visitor.visit(node.keys[i].getValue(), node.keys[i].getFrequency());
             }
     
             // Traverse the right subtree (if it exists)
             if (!node.isLeaf) {
                 // Read the child node from disk and recursively traverse it
-                inOrderTraversal(diskRead(node.children[node.size]), out);
+                inOrderTraversal(readChild(node, node.size, depth + 1), depth + 1, visitor);
             }
         }
     }
@@ -458,7 +1720,7 @@ public class BTree implements BTreeInterface {
         List<Long> keyList = new ArrayList<>();
     
         // Traverse the B-Tree and collect all keys in a list
-        getSortedKeyArrayHelper(root, keyList);
+        getSortedKeyArrayHelper(root, 0, keyList);
     
         // Convert the list to an array
         long[] keyArray = new long[keyList.size()];
@@ -473,17 +1735,21 @@ public class BTree implements BTreeInterface {
      * Helper method to traverse the B-Tree and collect all keys in a list.
      *
      * @param node    The root node of the subtree to be traversed.
+     * @param depth   The depth of the node, 0 for the root.
      * @param keyList The list to which the keys will be added.
      * @throws IOException If an error occurs while reading from disk.
      */
-    private void getSortedKeyArrayHelper(BTreeNode node, List<Long> keyList) throws IOException {
+    private void getSortedKeyArrayHelper(BTreeNode node, int depth, List<Long> keyList) throws IOException {
         if (node != null) {
+            // Start reading the children visited after the first one
+            prefetchChildren(node, depth);
+
             // Recursively traverse the left subtree
             int i = 0;
             for (i = 0; i < node.size; i++) {
                 if (!node.isLeaf) {
                     // Read the child node from disk and recursively traverse it
-                    getSortedKeyArrayHelper(diskRead(node.children[i]), keyList);
+                    getSortedKeyArrayHelper(readChild(node, i, depth + 1), depth + 1, keyList);
                 }
     
                 // Add the key to the list
@@ -493,9 +1759,59 @@ public class BTree implements BTreeInterface {
             // Traverse the right subtree (if it exists)
             if (!node.isLeaf) {
                 // Read the child node from disk and recursively traverse it
-                getSortedKeyArrayHelper(diskRead(node.children[i]), keyList);
+                getSortedKeyArrayHelper(readChild(node, i, depth + 1), depth + 1, keyList);
+            }
+        }
+    }
+
+    /**
+     * Issues asynchronous reads for children 1 through size of an internal node. Child 0 is
+     * visited next anyway, so it is read directly.
+     *
+     * @param node  The node being visited.
+     * @param depth The depth of the node, 0 for the root.
+     */
+    private void prefetchChildren(BTreeNode node, int depth) {
+        if (prefetcher != null && !node.isLeaf) {
+            for (int i = 1; i <= node.size; i++) {
+                prefetcher.prefetch(node.children[i], depth + 1);
+            }
+        }
+    }
+
+    /**
+     * Reads the i-th child of a node, taking it from the prefetcher when a read was already issued.
+     *
+     * @param node  The parent node.
+     * @param i     The index of the child.
+     * @param level The depth of the child, 0 for the root.
+     * @return The child node.
+     * @throws IOException If an error occurs while reading from disk.
+     */
+    private BTreeNode readChild(BTreeNode node, int i, int level) throws IOException {
+        if (prefetcher != null) {
+            BTreeNode child = prefetcher.take(node.children[i]);
+            if (child != null) {
+                return child;
             }
         }
+        return diskRead(node.children[i], level);
+    }
+
+    /**
+     * Measures the height of the tree by following the leftmost path down to a leaf.
+     *
+     * @return The number of edges from the root to a leaf.
+     * @throws IOException If an error occurs while reading from disk.
+     */
+    private int readHeight() throws IOException {
+        int levels = 0;
+        BTreeNode node = this.root;
+        while (!node.isLeaf) {
+            node = diskRead(node.children[0], levels + 1);
+            levels++;
+        }
+        return levels;
     }
 
     /**
@@ -504,15 +1820,12 @@ public class BTree implements BTreeInterface {
     * @throws IOException If an error occurs while reading from the file.
     */
     public void readMetaData() throws IOException {
-        // Position the file pointer to the beginning of the file
-        file.position(0);
-    
         // Allocate a direct byte buffer for reading the metadata
         ByteBuffer tmpbuffer = ByteBuffer.allocateDirect(METADATA_SIZE);
         tmpbuffer.clear();
     
-        // Read the metadata from the file into the byte buffer
-        file.read(tmpbuffer);
+        // Read the metadata from the beginning of the file into the byte buffer
+        readFully(tmpbuffer, 0);
         tmpbuffer.flip();
     
         // Get the rootAddress from the byte buffer
@@ -525,9 +1838,6 @@ public class BTree implements BTreeInterface {
      * @throws IOException If an error occurs while writing to the file.
      */
     public void writeMetaData() throws IOException {
-        // Position the file pointer to the beginning of the file
-        file.position(0);
-    
         // Allocate a direct byte buffer for writing the metadata
         ByteBuffer tmpbuffer = ByteBuffer.allocateDirect(METADATA_SIZE);
         tmpbuffer.clear();
@@ -536,8 +1846,43 @@ public class BTree implements BTreeInterface {
         tmpbuffer.putLong(rootAddress);
         tmpbuffer.flip();
     
-        // Write the byte buffer to the file
-        file.write(tmpbuffer);
+        // Write the byte buffer to the beginning of the file
+        writeFully(tmpbuffer, 0);
+    }
+
+    /**
+     * Reads from the file at the given position until the buffer is full or the end of the file is reached.
+     * Positional reads leave the channel position untouched, so any number of threads can read at once.
+     *
+     * @param dst      The buffer to read into.
+     * @param position The file offset to start reading at.
+     * @return The number of bytes read.
+     * @throws IOException If an error occurs while reading from the file.
+     */
+    private int readFully(ByteBuffer dst, long position) throws IOException {
+        int total = 0;
+        while (dst.hasRemaining()) {
+            int bytesRead = file.read(dst, position);
+            if (bytesRead < 0) {
+                break;
+            }
+            position += bytesRead;
+            total += bytesRead;
+        }
+        return total;
+    }
+
+    /**
+     * Writes the remaining bytes of the buffer to the file at the given position.
+     *
+     * @param src      The buffer to write from.
+     * @param position The file offset to start writing at.
+     * @throws IOException If an error occurs while writing to the file.
+     */
+    private void writeFully(ByteBuffer src, long position) throws IOException {
+        while (src.hasRemaining()) {
+            position += file.write(src, position);
+        }
     }
 
     /**
@@ -548,23 +1893,82 @@ public class BTree implements BTreeInterface {
     * @throws IOException If an error occurs while reading from the file.
     */
     public BTreeNode diskRead(long diskAddress) throws IOException {
+        return diskRead(diskAddress, -1);
+    }
+
+    /**
+    * Reads a BTreeNode at the given depth from disk, counting a read from the file against that level.
+    *
+    * @param diskAddress The disk address of the BTreeNode to read.
+    * @param level       The depth of the node (0 for the root), or -1 if it is not known.
+    * @return The BTreeNode read from disk, or null if the disk address is 0.
+    * @throws IOException If an error occurs while reading from the file.
+    */
+    BTreeNode diskRead(long diskAddress, int level) throws IOException {
         if (diskAddress == 0) return null;
 
+        if (readTrace != null) {
+            synchronized (readTrace) {
+                readTrace.writeLong(diskAddress);
+            }
+        }
+
+        // Pinned upper levels never leave memory
+        PinnedTier pinned = pinnedTier;
+        if (pinned != null) {
+            int slot = pinned.index.get(diskAddress);
+            if (slot >= 0) {
+                statistics.recordHit();
+                return pinned.nodes[slot];
+            }
+        }
+
         if(useCache == 1){
-            cacheRef++;
             BTreeNode cachedNode = cache.getObject(diskAddress);
             if(cachedNode != null){
-                cacheHit++;
+                statistics.recordHit();
                 return cachedNode;
             }
         }
     
-        // Position the file pointer to the disk address
-        file.position(diskAddress);
-        buffer.clear();
-        file.read(buffer);
-        buffer.flip();
+        // Decode the node straight from the off-heap cache when it holds the page
+        BTreeNode x = null;
+        if (pageCache != null) {
+            x = pageCache.read(diskAddress, pageParser);
+            if (x != null) {
+                statistics.recordHit();
+            }
+        }
+        if (x == null) {
+            ByteBuffer buffer = this.buffer.get();
+            buffer.clear();
+            statistics.recordMiss(level, readFully(buffer, diskAddress));
+            buffer.flip();
+            if (cacheSizer != null) {
+                cacheSizer.onRead(); // Only misses re-evaluate the size, so hits stay cheap
+            }
+            if (pageCache != null) {
+                pageCache.write(diskAddress, buffer);
+            }
+            x = parseNode(buffer, diskAddress);
+        }
+
+        // Cache the node only once its address is set, since the cache is keyed by address
+        if(useCache == 1){
+            cache.addObject(x);
+        }
     
+        return x;
+    }
+
+    /**
+     * Builds a BTreeNode from its serialized form, starting at the buffer's position.
+     *
+     * @param buffer      The buffer holding the serialized node.
+     * @param diskAddress The disk address the node was read from.
+     * @return The node.
+     */
+    private BTreeNode parseNode(ByteBuffer buffer, long diskAddress) {
         // Read the size, degree, and leaf flag from the buffer
         int size = buffer.getInt();
         int degree = buffer.getInt();
@@ -587,15 +1991,10 @@ public class BTree implements BTreeInterface {
     
         // Create a new BTreeNode with the read data
         BTreeNode x = new BTreeNode(degree, isLeaf, false);
-        if(useCache == 1){
-            cacheRef++;
-            cache.addObject(x);
-        }
         x.size = size;
         x.children = children;
         x.keys = keys;
         x.address = diskAddress;
-    
         return x;
     }
     
@@ -607,13 +2006,22 @@ public class BTree implements BTreeInterface {
      */
     public void diskWrite(BTreeNode x) throws IOException {
 
-        if(useCache == 1){
-            cacheRef++;
+        // Keep the pinned copy of the node current; pinned nodes stay out of the evictable cache
+        boolean isPinned = false;
+        PinnedTier pinned = pinnedTier;
+        if (pinned != null) {
+            int slot = pinned.index.get(x.address);
+            if (slot >= 0) {
+                pinned.nodes[slot] = x;
+                isPinned = true;
+            }
+        }
+
+        if(useCache == 1 && !isPinned){
             cache.addObject(x);
         }
 
-        // Position the file pointer to the node's disk address
-        file.position(x.address);
+        ByteBuffer buffer = this.buffer.get();
         buffer.clear();
     
         // Write the size, degree, and leaf flag to the buffer
@@ -639,7 +2047,13 @@ public class BTree implements BTreeInterface {
         }
     
         buffer.flip();
-        file.write(buffer);
+        // Keep the off-heap copy in step with the disk
+        if (pageCache != null) {
+            pageCache.write(x.address, buffer);
+        }
+        // Write the buffer at the node's disk address
+        statistics.recordFlush(buffer.remaining());
+        writeFully(buffer, x.address);
         // file.force(true);
     }
     
@@ -691,11 +2105,7 @@ public class BTreeNode {
         // If the node should be allocated on disk
         if (onDisk) {
             // Calculate and assign the disk address for the node
-            address = nextDiskAddress;
-            int byteSize = Integer.BYTES + 1 + Integer.BYTES; // Size of degree, isLeaf flag, and size
-            byteSize += (2 * degree - 1) * (Long.BYTES * 2); // Size of keys array
-            byteSize += (2 * degree) * Long.BYTES; // Size of children array
-            nextDiskAddress += byteSize;
+            address = nextDiskAddress.getAndAdd(getNodeDiskSize(degree)); // Atomic, so concurrent inserts never share an address
         }
     }
  
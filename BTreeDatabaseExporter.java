@@ -0,0 +1,94 @@
+package cs321.create;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import cs321.btree.KmerStore;
+
+/**
+ * Exports the contents of a B-tree, or any other KmerStore, into an SQLite database as a table of
+ * (key, freq) rows, where key is the encoded DNA sequence. The key is the table's INTEGER PRIMARY KEY, which SQLite stores
+ * as the rowid of the table's own B-tree, so a lookup is one probe of that index and needs no
+ * separate index. Rows are inserted in the ascending key order of KmerStore.scan, so each
+ * insert appends to the rightmost page, and are written in large batches inside large transactions
+ * with journaling and syncing relaxed for the bulk load.
+ */
+public class BTreeDatabaseExporter {
+    /** Name of the table holding the sequences. */
+    public static final String TABLE_NAME = "dataset";
+    private static final int BATCH_ROWS = 10_000; // rows sent to the driver at a time
+    private static final int TRANSACTION_ROWS = 1_000_000; // rows committed at a time
+
+    /**
+     * Wraps an SQLException thrown inside a scan, which may only throw IOException.
+     */
+    private static class ExportException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        ExportException(SQLException cause) {
+            super(cause);
+        }
+    }
+
+    /**
+     * Writes every key of the store and its frequency to a database, replacing any table the
+     * database already has. The sequence length is stored as the database's user_version so the
+     * search program can reject queries of another length.
+     *
+     * @param store The B-tree or other store to export.
+     * @param sequenceLength The length of the sequences stored in the store.
+     * @param databaseFileName The SQLite database file, created if it does not exist.
+     * @return The number of rows written.
+     * @throws IOException If an error occurs while reading the store.
+     * @throws SQLException If an error occurs while writing the database.
+     */
+    public static long export(KmerStore store, int sequenceLength, String databaseFileName) throws IOException, SQLException {
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + databaseFileName)) {
+            try (Statement statement = connection.createStatement()) {
+                // WAL keeps readers working during the load; the rest trades durability for speed until the final commit
+                statement.execute("PRAGMA journal_mode = WAL");
+                statement.execute("PRAGMA synchronous = OFF");
+                statement.execute("PRAGMA temp_store = MEMORY");
+                statement.execute("PRAGMA cache_size = -65536");
+                statement.execute("DROP TABLE IF EXISTS " + TABLE_NAME);
+                statement.execute("CREATE TABLE " + TABLE_NAME + " (key INTEGER PRIMARY KEY, freq INTEGER NOT NULL)");
+                statement.execute("PRAGMA user_version = " + sequenceLength);
+            }
+            connection.setAutoCommit(false);
+            long[] rows = new long[1];
+            try (PreparedStatement insert = connection.prepareStatement("INSERT INTO " + TABLE_NAME + " (key, freq) VALUES (?, ?)")) {
+                store.scan((key, frequency) -> {
+                    try {
+                        insert.setLong(1, key);
+                        insert.setLong(2, frequency);
+                        insert.addBatch();
+                        rows[0]++;
+                        if (rows[0] % BATCH_ROWS == 0) {
+                            insert.executeBatch();
+                        }
+                        if (rows[0] % TRANSACTION_ROWS == 0) {
+                            connection.commit();
+                        }
+                    } catch (SQLException e) {
+                        throw new ExportException(e);
+                    }
+                });
+                insert.executeBatch();
+                connection.commit();
+            } catch (ExportException e) {
+                connection.rollback();
+                throw (SQLException) e.getCause();
+            }
+            connection.setAutoCommit(true);
+            try (Statement statement = connection.createStatement()) {
+                // Fold the log back into the database file so it is complete on its own
+                statement.execute("PRAGMA wal_checkpoint(TRUNCATE)");
+            }
+            return rows[0];
+        }
+    }
+}
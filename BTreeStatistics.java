@@ -0,0 +1,192 @@
+package cs321.btree;
+
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The BTreeStatistics class counts the cache and I/O activity of one BTree. Every node read is
+ * either a hit (served from the pinned tier, the node cache or the page cache) or a miss (read
+ * from the file), so the hit ratio is hits / (hits + misses). All counters can be updated from
+ * many threads at once, and reset between phases such as loading and querying.
+ */
+public class BTreeStatistics {
+    private static final int MAX_LEVELS = 64;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder insertions = new LongAdder();
+    private final LongAdder dirtyFlushes = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder bloomRejections = new LongAdder();
+    private final AtomicLongArray readsPerLevel = new AtomicLongArray(MAX_LEVELS);
+
+    /**
+     * Records a node read served from memory.
+     */
+    public void recordHit() {
+        hits.increment();
+    }
+
+    /**
+     * Records a node read that went to the file.
+     *
+     * @param level the depth of the node (0 for the root), or -1 if the caller does not know it
+     * @param bytes the number of bytes read from the file
+     */
+    public void recordMiss(int level, int bytes) {
+        misses.increment();
+        bytesRead.add(bytes);
+        if (level >= 0 && level < MAX_LEVELS) {
+            readsPerLevel.incrementAndGet(level);
+        }
+    }
+
+    /**
+     * Records a node added to a cache.
+     */
+    public void recordInsertion() {
+        insertions.increment();
+    }
+
+    /**
+     * Records a node evicted from a cache.
+     */
+    public void recordEviction() {
+        evictions.increment();
+    }
+
+    /**
+     * Records a modified node written to the file.
+     *
+     * @param bytes the number of bytes written
+     */
+    public void recordFlush(int bytes) {
+        dirtyFlushes.increment();
+        bytesWritten.add(bytes);
+    }
+
+    /**
+     * Records a search answered by the Bloom filter without reading any node.
+     */
+    public void recordBloomRejection() {
+        bloomRejections.increment();
+    }
+
+    /**
+     * Resets every counter to zero, to start measuring a new phase.
+     */
+    public void reset() {
+        hits.reset();
+        misses.reset();
+        evictions.reset();
+        insertions.reset();
+        dirtyFlushes.reset();
+        bytesRead.reset();
+        bytesWritten.reset();
+        bloomRejections.reset();
+        for (int i = 0; i < MAX_LEVELS; i++) {
+            readsPerLevel.set(i, 0);
+        }
+    }
+
+    /**
+     * @return The number of node reads served from memory.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return The number of node reads that went to the file.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return The fraction of node reads served from memory, or 0 if nothing was read.
+     */
+    public double getHitRatio() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0.0 : (double) hitCount / total;
+    }
+
+    /**
+     * @return The number of nodes evicted from the caches.
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return The number of nodes added to the caches.
+     */
+    public long getInsertions() {
+        return insertions.sum();
+    }
+
+    /**
+     * @return The number of modified nodes written to the file.
+     */
+    public long getDirtyFlushes() {
+        return dirtyFlushes.sum();
+    }
+
+    /**
+     * @return The number of bytes read from the file.
+     */
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    /**
+     * @return The number of bytes written to the file.
+     */
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    /**
+     * @return The number of searches the Bloom filter answered without reading any node.
+     */
+    public long getBloomRejections() {
+        return bloomRejections.sum();
+    }
+
+    /**
+     * Returns the number of file reads of nodes at the given depth.
+     *
+     * @param level the depth, 0 for the root
+     * @return the number of file reads at that depth
+     */
+    public long getReadsAtLevel(int level) {
+        return level >= 0 && level < MAX_LEVELS ? readsPerLevel.get(level) : 0;
+    }
+
+    /**
+     * Prints the counters in the style of the programs' debug analysis.
+     *
+     * @param out the stream to print to
+     */
+    public void print(PrintStream out) {
+        out.printf("Cache Hit Ratio: %.2f%%\n", getHitRatio() * 100.0);
+        out.println("Cache Hits: " + getHits());
+        out.println("Cache Misses: " + getMisses());
+        out.println("Cache Insertions: " + getInsertions());
+        out.println("Cache Evictions: " + getEvictions());
+        out.println("Dirty Node Flushes: " + getDirtyFlushes());
+        out.println("Bytes Read: " + getBytesRead());
+        out.println("Bytes Written: " + getBytesWritten());
+        out.println("Bloom Filter Rejections: " + getBloomRejections());
+        for (int level = 0; level < MAX_LEVELS; level++) {
+            long reads = readsPerLevel.get(level);
+            if (reads > 0) {
+                out.println("Disk Reads at Level " + level + ": " + reads);
+            }
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package cs321.btree;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * The BloomFilter class answers "is this key certainly absent?" for long keys in memory. It is a
+ * blocked Bloom filter: each key hashes to one 512-bit block (a cache line) and sets or tests all of
+ * its bits inside that block, so a lookup touches one cache line however many hashes it uses. The
+ * filter never reports a stored key as absent; it reports an absent key as present with roughly the
+ * false-positive rate it was sized for.
+ */
+public class BloomFilter {
+    private static final int FILE_MAGIC = 0x424C_4F4D; // "BLOM", first int of a filter file
+    private static final int BLOCK_LONGS = 8; // 512 bits per block
+    private static final int BLOCK_BITS = BLOCK_LONGS * Long.SIZE;
+    private static final int PROBE_BITS = 9; // bits of hash needed to pick one bit of a block
+    private static final int PROBES_PER_HASH = Long.SIZE / PROBE_BITS;
+    // Keys crowd unevenly into blocks, so a blocked filter needs about a tenth more bits than the
+    // textbook formula to reach the same false-positive rate
+    private static final double BLOCKING_OVERHEAD = 1.1;
+
+    private final long[] bits;
+    private final int blockCount;
+    private final int hashCount;
+
+    /**
+     * Constructs an empty BloomFilter sized for the number of keys and false-positive rate.
+     *
+     * @param expectedKeys      the number of keys that will be added
+     * @param falsePositiveRate the fraction of absent keys allowed to be reported as present, in (0, 1)
+     */
+    public BloomFilter(long expectedKeys, double falsePositiveRate) {
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("False-positive rate must be in (0, 1): " + falsePositiveRate);
+        }
+        long keys = Math.max(1, expectedKeys);
+        double ln2 = Math.log(2);
+        long bitCount = (long) Math.ceil(BLOCKING_OVERHEAD * -keys * Math.log(falsePositiveRate) / (ln2 * ln2));
+        long blocks = Math.max(1, (bitCount + BLOCK_BITS - 1) / BLOCK_BITS);
+        if (blocks > Integer.MAX_VALUE / BLOCK_LONGS) {
+            throw new IllegalArgumentException("Bloom filter for " + expectedKeys + " keys is too large");
+        }
+        this.blockCount = (int) blocks;
+        this.hashCount = (int) Math.max(1, Math.min(16, Math.round((double) blocks * BLOCK_BITS / keys * ln2)));
+        this.bits = new long[blockCount * BLOCK_LONGS];
+    }
+
+    /**
+     * Constructs a BloomFilter from its saved state.
+     *
+     * @param bits      the bit array, BLOCK_LONGS longs per block
+     * @param hashCount the number of bits set per key
+     */
+    private BloomFilter(long[] bits, int hashCount) {
+        this.bits = bits;
+        this.blockCount = bits.length / BLOCK_LONGS;
+        this.hashCount = hashCount;
+    }
+
+    /**
+     * Adds a key to the filter.
+     *
+     * @param key the key
+     */
+    public synchronized void add(long key) {
+        long hash = mix(key);
+        int base = block(hash) * BLOCK_LONGS;
+        long probes = hash;
+        for (int i = 0; i < hashCount; i++) {
+            probes = nextProbes(probes, i);
+            int bit = (int) (probes >>> (PROBE_BITS * (i % PROBES_PER_HASH))) & (BLOCK_BITS - 1);
+            bits[base + (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    /**
+     * Tests whether a key may have been added.
+     *
+     * @param key the key
+     * @return false if the key was certainly never added, true if it may have been
+     */
+    public boolean mightContain(long key) {
+        long hash = mix(key);
+        int base = block(hash) * BLOCK_LONGS;
+        long probes = hash;
+        for (int i = 0; i < hashCount; i++) {
+            probes = nextProbes(probes, i);
+            int bit = (int) (probes >>> (PROBE_BITS * (i % PROBES_PER_HASH))) & (BLOCK_BITS - 1);
+            if ((bits[base + (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the size of the filter.
+     *
+     * @return the number of bits in the filter
+     */
+    public long getBitCount() {
+        return (long) bits.length * Long.SIZE;
+    }
+
+    /**
+     * Returns the number of bits each key sets.
+     *
+     * @return the number of hash functions
+     */
+    public int getHashCount() {
+        return hashCount;
+    }
+
+    /**
+     * Writes the filter to a file, tagged with the size of the B-Tree file it describes.
+     *
+     * @param fileName     the file to write
+     * @param treeFileSize the size of the B-Tree file the filter was built from
+     * @throws IOException if the file cannot be written
+     */
+    public void writeTo(String fileName, long treeFileSize) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName), 1 << 16))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeLong(treeFileSize);
+            out.writeInt(hashCount);
+            out.writeInt(bits.length);
+            for (long word : bits) {
+                out.writeLong(word);
+            }
+        }
+    }
+
+    /**
+     * Reads a filter written by writeTo.
+     *
+     * @param fileName     the file to read
+     * @param treeFileSize the current size of the B-Tree file
+     * @return the filter, or null if the file is not a filter or was built for a different tree file
+     * @throws IOException if the file cannot be read
+     */
+    public static BloomFilter readFrom(String fileName, long treeFileSize) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(fileName), 1 << 16))) {
+            if (in.readInt() != FILE_MAGIC || in.readLong() != treeFileSize) {
+                return null;
+            }
+            int hashCount = in.readInt();
+            long[] bits = new long[in.readInt()];
+            for (int i = 0; i < bits.length; i++) {
+                bits[i] = in.readLong();
+            }
+            return new BloomFilter(bits, hashCount);
+        }
+    }
+
+    /**
+     * Picks the block for a hash, using the high bits so they stay independent of the bit positions.
+     *
+     * @param hash the mixed key
+     * @return the block index
+     */
+    private int block(long hash) {
+        return (int) (((hash >>> 32) * blockCount) >>> 32);
+    }
+
+    /**
+     * Returns the hash the i-th probe takes its bits from. Every PROBES_PER_HASH probes a fresh
+     * hash is derived, so the probes of a key stay independent of each other and of its block.
+     *
+     * @param probes the hash used by the previous probe, or the key's hash before the first probe
+     * @param i      the index of the probe
+     * @return the hash for probe i
+     */
+    private static long nextProbes(long probes, int i) {
+        return i % PROBES_PER_HASH == 0 ? mix(probes) : probes;
+    }
+
+    /**
+     * Scrambles a key so that neighbouring keys spread over the whole filter (SplitMix64's finalizer).
+     *
+     * @param key the key
+     * @return the mixed key
+     */
+    private static long mix(long key) {
+        long z = key + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
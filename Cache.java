@@ -1,36 +1,71 @@
 package cs321.btree;
 
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.util.Arrays;
 
 import cs321.btree.BTree.BTreeNode;
 
 /**
  * The Cache class represents a cache storage mechanism for BTreeNode objects.
- * It uses a LinkedHashMap to store the cached objects, with the disk address as the key.
- * The cache has a maximum capacity, and when the capacity is reached, the least recently used (LRU)
- * object is automatically removed from the cache.
+ * Objects live in slots of plain arrays, found through a LongIntHashMap from disk address to
+ * slot, so neither lookups nor hits box the address or allocate. Disk address 0 cannot be cached.
+ * The cache has a maximum capacity, and when the capacity is reached, its EvictionPolicy
+ * chooses the object to remove. The default, least recently used (LRU), needs no policy object:
+ * the slots are threaded on an intrusive recency list through two int arrays.
+ * <p>
+ * The cache is split into one or more segments by disk address, each with its own lock, map and
+ * policy (lock striping). A get updates the policy's bookkeeping, so even lookups take a lock, but
+ * only the lock of their segment: with many segments, hits from different threads rarely wait on
+ * each other. Each segment evicts on its own, so with more than one segment the policy is applied
+ * per segment rather than across the whole cache.
  *
  * @param <T> the type of objects stored in the cache
  */
 public class Cache<T> {
-    private Map<Long, T> cacheStorage;
-    private int cacheSize;
+    private final Segment<T>[] segments;
+    private final int segmentMask;
+    private volatile int cacheSize;
 
     /**
-     * Constructs a new Cache object with the specified capacity.
+     * Constructs a new LRU Cache object with the specified capacity.
      *
      * @param capacity the maximum number of objects the cache can store
      */
     public Cache(int capacity) {
+        this(capacity, (EvictionPolicy) null);
+    }
+
+    /**
+     * Constructs a new single-segment Cache object with the specified capacity and eviction policy.
+     *
+     * @param capacity the maximum number of objects the cache can store
+     * @param policy   the policy choosing which object to remove when the cache is full, or null for LRU
+     */
+    public Cache(int capacity, EvictionPolicy policy) {
         cacheSize = capacity;
-        cacheStorage = new LinkedHashMap<Long, T>(capacity, 0.75f, true) {
-            @Override
-            protected boolean removeEldestEntry(Map.Entry<Long, T> eldest) {
-                // Remove the least recently used entry when the cache size exceeds the capacity
-                return size() > cacheSize;
-            }
-        };
+        // LRU is built into the segment's recency list
+        segments = newSegments(1);
+        segments[0] = new Segment<T>(capacity, policy instanceof LruPolicy ? null : policy);
+        segmentMask = 0;
+    }
+
+    /**
+     * Constructs a new lock-striped Cache object. The capacity is divided evenly between the
+     * segments, and each segment gets its own instance of the named policy.
+     *
+     * @param capacity     the maximum number of objects the cache can store
+     * @param cachePolicy  the eviction policy: lru, clock, 2q, arc or tinylfu
+     * @param segmentCount the number of segments, rounded down to a power of two no larger than the capacity
+     */
+    public Cache(int capacity, String cachePolicy, int segmentCount) {
+        cacheSize = capacity;
+        int count = Integer.highestOneBit(Math.max(1, Math.min(segmentCount, capacity)));
+        segments = newSegments(count);
+        for (int i = 0; i < count; i++) {
+            int segmentSize = capacity / count + (i < capacity % count ? 1 : 0);
+            EvictionPolicy policy = cachePolicy.equals("lru") ? null : EvictionPolicy.forName(cachePolicy, segmentSize);
+            segments[i] = new Segment<T>(segmentSize, policy);
+        }
+        segmentMask = count - 1;
     }
 
     /**
@@ -40,21 +75,17 @@ public class Cache<T> {
      * @return true if the object is found in the cache, false otherwise
      */
     public boolean getObject(T object) {
-        if (object instanceof BTreeNode) {
-            BTreeNode node = (BTreeNode) object;
-            return cacheStorage.containsKey(node.address);
-        }
-        return false;
+        return cacheContains(object);
     }
 
     /**
-     * Retrieves the BTreeNode object associated with the specified disk address from the cache.
+     * Retrieves the object associated with the specified disk address from the cache.
      *
      * @param diskAddress the disk address of the object to retrieve
-     * @return the BTreeNode object if found in the cache, null otherwise
+     * @return the object if found in the cache, null otherwise
      */
-    public BTreeNode getObject(long diskAddress) {
-        return (BTreeNode) cacheStorage.get(diskAddress);
+    public T getObject(long diskAddress) {
+        return segmentFor(diskAddress).get(diskAddress);
     }
 
     /**
@@ -65,15 +96,28 @@ public class Cache<T> {
     public void addObject(T object) {
         if (object instanceof BTreeNode) {
             BTreeNode node = (BTreeNode) object;
-            cacheStorage.put(node.address, object);
+            addObject(node.address, object);
         }
     }
 
+    /**
+     * Adds the specified object to the cache under the given disk address, evicting
+     * an object chosen by the policy if the segment is over capacity.
+     *
+     * @param diskAddress the disk address of the object
+     * @param object      the object to add to the cache
+     */
+    public void addObject(long diskAddress, T object) {
+        segmentFor(diskAddress).put(diskAddress, object);
+    }
+
     /**
      * Clears all objects from the cache.
      */
     public void clearCache() {
-        cacheStorage.clear();
+        for (Segment<T> segment : segments) {
+            segment.clear();
+        }
     }
 
     /**
@@ -82,7 +126,11 @@ public class Cache<T> {
      * @return the number of objects currently stored in the cache
      */
     public int getSize() {
-        return cacheStorage.size();
+        int size = 0;
+        for (Segment<T> segment : segments) {
+            size += segment.size();
+        }
+        return size;
     }
 
     /**
@@ -94,7 +142,7 @@ public class Cache<T> {
     public boolean removeObject(T obj) {
         if (obj instanceof BTreeNode) {
             BTreeNode node = (BTreeNode) obj;
-            return cacheStorage.remove(node.address) != null;
+            return segmentFor(node.address).remove(node.address);
         }
         return false;
     }
@@ -108,7 +156,7 @@ public class Cache<T> {
     public boolean cacheContains(T obj) {
         if (obj instanceof BTreeNode) {
             BTreeNode node = (BTreeNode) obj;
-            return cacheStorage.containsKey(node.address);
+            return segmentFor(node.address).contains(node.address);
         }
         return false;
     }
@@ -121,4 +169,275 @@ public class Cache<T> {
     public int getCapacity() {
         return this.cacheSize;
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns the disk addresses of every cached object. Under LRU each segment's addresses run
+     * from least to most recently used, so adding them back in this order restores the recency.
+     *
+     * @return the addresses of the cached objects
+     */
+    public long[] getResidentAddresses() {
+        long[][] perSegment = new long[segments.length][];
+        int total = 0;
+        for (int i = 0; i < segments.length; i++) {
+            perSegment[i] = segments[i].addresses();
+            total += perSegment[i].length;
+        }
+        long[] addresses = new long[total];
+        int count = 0;
+        for (long[] segmentAddresses : perSegment) {
+            System.arraycopy(segmentAddresses, 0, addresses, count, segmentAddresses.length);
+            count += segmentAddresses.length;
+        }
+        return addresses;
+    }
+
+    /**
+     * Changes the maximum capacity of the cache. Shrinking evicts objects chosen by the policy
+     * until every segment fits again. The policies keep the sizing they were built with, so a cache
+     * that will be resized should be constructed with its largest capacity.
+     *
+     * @param capacity the new maximum number of objects, at least the number of segments
+     */
+    public void setCapacity(int capacity) {
+        int count = segments.length;
+        capacity = Math.max(capacity, count);
+        for (int i = 0; i < count; i++) {
+            segments[i].setCapacity(capacity / count + (i < capacity % count ? 1 : 0));
+        }
+        this.cacheSize = capacity;
+    }
+
+    /**
+     * Returns the number of lock segments in the cache.
+     *
+     * @return the number of segments
+     */
+    public int getSegmentCount() {
+        return segments.length;
+    }
+
+    /**
+     * Reports insertions and evictions to the given statistics from now on.
+     *
+     * @param statistics the statistics to update, or null to stop reporting
+     */
+    public void setStatistics(BTreeStatistics statistics) {
+        for (Segment<T> segment : segments) {
+            segment.setStatistics(statistics);
+        }
+    }
+
+    /**
+     * Creates an empty array of segments; Java cannot create an array of a generic type directly.
+     *
+     * @param count the length of the array
+     * @return the array
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> Segment<T>[] newSegments(int count) {
+        return (Segment<T>[]) new Segment<?>[count];
+    }
+
+    /**
+     * Returns the segment responsible for a disk address.
+     *
+     * @param diskAddress the disk address
+     * @return the segment holding that address
+     */
+    private Segment<T> segmentFor(long diskAddress) {
+        // Node addresses are evenly spaced, so mix the bits before picking a segment
+        long hash = diskAddress * 0x9E3779B97F4A7C15L;
+        return segments[(int) (hash >>> 40) & segmentMask];
+    }
+
+    /**
+     * One lock stripe of the cache: a slot table and a policy guarded by the segment's monitor.
+     * Slot 0 is the head of the recency list, whose next slot is the least recently used and whose
+     * previous slot is the most recently used. Free slots are chained through next.
+     *
+     * @param <T> the type of objects stored in the segment
+     */
+    private static class Segment<T> {
+        private final LongIntHashMap index; // disk address -> slot
+        private final EvictionPolicy policy; // null to evict from the recency list (LRU)
+        private long[] keys;
+        private Object[] values;
+        private int[] prev;
+        private int[] next;
+        private int freeSlot;
+        private int cacheSize;
+        private BTreeStatistics statistics;
+
+        Segment(int capacity, EvictionPolicy policy) {
+            this.index = new LongIntHashMap(capacity + 1);
+            this.policy = policy;
+            this.cacheSize = capacity;
+            // One slot beyond the capacity holds a newcomer until the victim is removed
+            allocateSlots(capacity + 2);
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized T get(long diskAddress) {
+            int slot = index.get(diskAddress);
+            if (slot < 0) {
+                return null;
+            }
+            recordAccess(slot, diskAddress);
+            return (T) values[slot];
+        }
+
+        synchronized void put(long diskAddress, T object) {
+            int slot = index.get(diskAddress);
+            if (slot >= 0) {
+                // Replacing a cached object counts as a use of it
+                values[slot] = object;
+                recordAccess(slot, diskAddress);
+                return;
+            }
+            if (freeSlot == 0) {
+                allocateSlots(keys.length * 2);
+            }
+            slot = freeSlot;
+            freeSlot = next[slot];
+            keys[slot] = diskAddress;
+            values[slot] = object;
+            index.put(diskAddress, slot);
+            if (policy == null) {
+                linkLast(slot);
+            } else {
+                policy.recordInsertion(diskAddress);
+            }
+            if (statistics != null) {
+                statistics.recordInsertion();
+            }
+            if (index.size() > cacheSize) {
+                evict();
+            }
+        }
+
+        synchronized void setStatistics(BTreeStatistics statistics) {
+            this.statistics = statistics;
+        }
+
+        synchronized void setCapacity(int capacity) {
+            cacheSize = capacity;
+            while (index.size() > cacheSize) {
+                evict();
+            }
+        }
+
+        synchronized boolean remove(long diskAddress) {
+            int slot = index.remove(diskAddress);
+            if (slot < 0) {
+                return false;
+            }
+            if (policy != null) {
+                policy.recordRemoval(diskAddress);
+            }
+            freeSlot(slot);
+            return true;
+        }
+
+        synchronized boolean contains(long diskAddress) {
+            return index.get(diskAddress) >= 0;
+        }
+
+        synchronized void clear() {
+            index.clear();
+            if (policy != null) {
+                policy.clear();
+            }
+            allocateSlots(keys.length);
+        }
+
+        synchronized int size() {
+            return index.size();
+        }
+
+        synchronized long[] addresses() {
+            if (policy != null) {
+                return index.keys();
+            }
+            long[] addresses = new long[index.size()];
+            int count = 0;
+            for (int slot = next[0]; slot != 0; slot = next[slot]) {
+                addresses[count++] = keys[slot];
+            }
+            return addresses;
+        }
+
+        /**
+         * Marks a resident slot as used: LRU moves it to the most recently used end of the list.
+         */
+        private void recordAccess(int slot, long diskAddress) {
+            if (policy == null) {
+                unlink(slot);
+                linkLast(slot);
+            } else {
+                policy.recordAccess(diskAddress);
+            }
+        }
+
+        /**
+         * Removes the object chosen by the policy, or the least recently used one.
+         */
+        private void evict() {
+            long victim = policy == null ? keys[next[0]] : policy.selectVictim();
+            freeSlot(index.remove(victim));
+            if (statistics != null) {
+                statistics.recordEviction();
+            }
+        }
+
+        /**
+         * Unlinks a slot that has left the index and puts it on the free list.
+         */
+        private void freeSlot(int slot) {
+            if (policy == null) {
+                unlink(slot);
+            }
+            values[slot] = null;
+            next[slot] = freeSlot;
+            freeSlot = slot;
+        }
+
+        private void linkLast(int slot) {
+            int last = prev[0];
+            prev[slot] = last;
+            next[slot] = 0;
+            next[last] = slot;
+            prev[0] = slot;
+        }
+
+        private void unlink(int slot) {
+            next[prev[slot]] = next[slot];
+            prev[next[slot]] = prev[slot];
+        }
+
+        /**
+         * Sizes the slot arrays to the given length, keeping the resident slots and chaining every
+         * other slot onto the free list.
+         */
+        private void allocateSlots(int length) {
+            boolean empty = keys == null || index.size() == 0;
+            int oldLength = empty ? 1 : keys.length;
+            if (keys == null || keys.length != length) {
+                keys = keys == null ? new long[length] : Arrays.copyOf(keys, length);
+                values = values == null ? new Object[length] : Arrays.copyOf(values, length);
+                prev = prev == null ? new int[length] : Arrays.copyOf(prev, length);
+                next = next == null ? new int[length] : Arrays.copyOf(next, length);
+            }
+            if (empty) {
+                Arrays.fill(values, null);
+                prev[0] = 0;
+                next[0] = 0;
+            }
+            freeSlot = 0;
+            for (int slot = length - 1; slot >= oldLength; slot--) {
+                next[slot] = freeSlot;
+                freeSlot = slot;
+            }
+        }
+    }
+}
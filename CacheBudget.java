@@ -0,0 +1,118 @@
+package cs321.btree;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+/**
+ * The CacheBudget class turns a cache size given on the command line into a number of nodes.
+ * A size is either a plain node count, a number of bytes with a b, k, m or g suffix, or a
+ * percentage of the memory the cache lives in (the maximum heap for the node cache, the maximum
+ * direct memory for the page cache). Byte and percentage budgets are divided by the memory one
+ * node costs, so the same budget holds fewer nodes as the degree grows.
+ */
+public final class CacheBudget {
+
+    private CacheBudget() {
+    }
+
+    /**
+     * Converts a cache size specification into a node capacity.
+     *
+     * @param spec        the size: a node count such as 500, a byte size such as 64m, or a percentage such as 25%
+     * @param nodeBytes   the memory one cached node costs
+     * @param memoryLimit the memory percentages are taken of
+     * @return the number of nodes that fit in the budget
+     * @throws IllegalArgumentException if the specification cannot be parsed
+     */
+    public static int toNodeCount(String spec, int nodeBytes, long memoryLimit) {
+        String size = spec.trim().toLowerCase(Locale.ROOT);
+        if (size.isEmpty()) {
+            throw new IllegalArgumentException("Cache size is empty");
+        }
+        long bytes;
+        if (size.endsWith("%")) {
+            double percent = Double.parseDouble(size.substring(0, size.length() - 1));
+            if (percent <= 0 || percent > 100) {
+                throw new IllegalArgumentException("Cache percentage must be in (0, 100]: " + spec);
+            }
+            bytes = (long) (memoryLimit * percent / 100.0);
+        } else if (Character.isDigit(size.charAt(size.length() - 1))) {
+            return Integer.parseInt(size); // A plain number counts nodes, as before
+        } else {
+            bytes = parseBytes(size);
+        }
+        return (int) Math.min(Integer.MAX_VALUE, bytes / nodeBytes);
+    }
+
+    /**
+     * Parses a byte size with a b, k, kb, m, mb, g or gb suffix (powers of 1024).
+     *
+     * @param spec the size, such as 512k or 2g
+     * @return the size in bytes
+     * @throws IllegalArgumentException if the size cannot be parsed
+     */
+    public static long parseBytes(String spec) {
+        String size = spec.trim().toLowerCase(Locale.ROOT);
+        if (size.endsWith("b")) {
+            size = size.substring(0, size.length() - 1);
+        }
+        long unit = 1;
+        switch (size.isEmpty() ? ' ' : size.charAt(size.length() - 1)) {
+            case 'k':
+                unit = 1L << 10;
+                break;
+            case 'm':
+                unit = 1L << 20;
+                break;
+            case 'g':
+                unit = 1L << 30;
+                break;
+            default:
+                break;
+        }
+        if (unit != 1) {
+            size = size.substring(0, size.length() - 1);
+        }
+        try {
+            return Long.parseLong(size) * unit;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid byte size: " + spec, e);
+        }
+    }
+
+    /**
+     * Returns the maximum heap the JVM will use.
+     *
+     * @return the maximum heap size in bytes
+     */
+    public static long maxHeapMemory() {
+        return Runtime.getRuntime().maxMemory();
+    }
+
+    /**
+     * Returns the maximum direct memory the JVM will allocate: -XX:MaxDirectMemorySize when given,
+     * otherwise the maximum heap size, which is the JVM's default limit.
+     *
+     * @return the maximum direct memory in bytes
+     */
+    public static long maxDirectMemory() {
+        for (String argument : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            if (argument.startsWith("-XX:MaxDirectMemorySize=")) {
+                return parseBytes(argument.substring(24));
+            }
+        }
+        return maxHeapMemory();
+    }
+
+    /**
+     * Chooses how many lock segments a cache shared by the given number of threads is striped into:
+     * one for a single thread, otherwise eight per thread rounded down to a power of two, so two
+     * threads rarely want the same segment at once.
+     *
+     * @param threads the number of threads using the cache
+     * @return the number of segments
+     */
+    public static int defaultSegmentCount(int threads) {
+        return threads > 1 ? Integer.highestOneBit(threads) * 8 : 1;
+    }
+}
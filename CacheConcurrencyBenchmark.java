@@ -0,0 +1,94 @@
+package cs321.btree;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * CacheConcurrencyBenchmark measures how cache hit throughput scales with the number of threads.
+ * Every thread looks up random addresses that are all resident, so only the hit path is measured.
+ * Each thread count is run against a single-segment cache and a lock-striped cache.
+ */
+public class CacheConcurrencyBenchmark {
+    private static final int CACHE_SIZE = 10000;
+    private static final long NODE_SIZE = BTree.getNodeDiskSize(85);
+    private static final long MEASURE_MILLIS = 1000;
+
+    /**
+     * Main method to run the benchmark.
+     * @param args Optionally the eviction policy (default lru) and the maximum thread count
+     *             (default the number of processors).
+     * @throws InterruptedException Throws an InterruptedException if interrupted while waiting for threads.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        String policy = args.length > 0 ? args[0] : "lru";
+        int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int stripedSegments = Integer.highestOneBit(maxThreads) * 8;
+
+        System.out.println("| threads | segments | hits per second |");
+        System.out.println("|---------|----------|-----------------|");
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            for (int segments : new int[] {1, stripedSegments}) {
+                Cache<Object> cache = new Cache<>(CACHE_SIZE, policy, segments);
+                for (int i = 0; i < CACHE_SIZE; i++) {
+                    cache.addObject(address(i), Integer.valueOf(i));
+                }
+                // Warm up, then measure
+                run(cache, threads);
+                double hitsPerSecond = run(cache, threads);
+                System.out.printf("| %7d | %8d | %15.0f |%n", threads, cache.getSegmentCount(), hitsPerSecond);
+            }
+        }
+    }
+
+    /**
+     * Runs the given number of threads against the cache for the measurement period.
+     * @param cache The cache to read from.
+     * @param threads The number of reader threads.
+     * @return The total number of hits per second across all threads.
+     * @throws InterruptedException Throws an InterruptedException if interrupted while waiting for threads.
+     */
+    private static double run(Cache<Object> cache, int threads) throws InterruptedException {
+        LongAdder hits = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] readers = new Thread[threads];
+        long[] deadline = new long[1];
+        for (int t = 0; t < threads; t++) {
+            final int seed = t;
+            readers[t] = new Thread(() -> {
+                SplittableRandom random = new SplittableRandom(seed);
+                long count = 0;
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                while (System.nanoTime() < deadline[0]) {
+                    for (int i = 0; i < 1024; i++) {
+                        if (cache.getObject(address(random.nextInt(CACHE_SIZE))) != null) {
+                            count++;
+                        }
+                    }
+                }
+                hits.add(count);
+            });
+            readers[t].start();
+        }
+        long startTime = System.nanoTime();
+        deadline[0] = startTime + MEASURE_MILLIS * 1000000;
+        start.countDown();
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        return hits.sum() / ((System.nanoTime() - startTime) / 1e9);
+    }
+
+    /**
+     * Returns the disk address of the i-th node of a degree 85 tree.
+     * @param i The index of the node.
+     * @return The disk address of the node.
+     */
+    private static long address(int i) {
+        return Long.BYTES + i * NODE_SIZE;
+    }
+}
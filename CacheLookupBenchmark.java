@@ -0,0 +1,170 @@
+package cs321.btree;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * CacheLookupBenchmark compares the primitive-keyed Cache with a boxed cache built the way Cache
+ * used to be (a HashMap from Long plus a LinkedHashSet recency order), on a single thread. It reports the time of a
+ * hit and of a miss that inserts and evicts, the bytes allocated per hit, and the bytes allocated
+ * per entry while building and filling the cache, which nothing frees until the cache is dropped.
+ */
+public class CacheLookupBenchmark {
+    private static final long NODE_SIZE = BTree.getNodeDiskSize(85);
+    private static final int OPERATIONS = 2000000;
+    private static final Object VALUE = new Object(); // cached under every address, so entries cost only the cache's overhead
+
+    /**
+     * Main method to run the benchmark.
+     * @param args Optionally the cache size (default 10000).
+     */
+    public static void main(String[] args) {
+        int cacheSize = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+
+        System.out.println("| cache              | ns per hit | ns per miss | bytes allocated per hit | bytes per entry |");
+        System.out.println("|--------------------|------------|-------------|-------------------------|-----------------|");
+        // The first round only warms up the JIT
+        runPrimitive(cacheSize, false);
+        runBoxed(cacheSize, false);
+        runPrimitive(cacheSize, true);
+        runBoxed(cacheSize, true);
+    }
+
+    /**
+     * Measures a fresh primitive-keyed Cache.
+     * @param cacheSize The capacity of the cache.
+     * @param print Whether to print the row.
+     */
+    private static void runPrimitive(int cacheSize, boolean print) {
+        long allocatedBefore = allocatedBytes();
+        Cache<Object> cache = new Cache<>(cacheSize);
+        report("primitive (Cache)", print, cacheSize, allocatedBefore, cache::getObject, cache::addObject, VALUE);
+    }
+
+    /**
+     * Measures a fresh boxed cache.
+     * @param cacheSize The capacity of the cache.
+     * @param print Whether to print the row.
+     */
+    private static void runBoxed(int cacheSize, boolean print) {
+        long allocatedBefore = allocatedBytes();
+        BoxedLruCache cache = new BoxedLruCache(cacheSize);
+        report("boxed (HashMap)", print, cacheSize, allocatedBefore, cache::get, cache::put, VALUE);
+    }
+
+    /**
+     * Measures one cache and prints its row.
+     * @param name The name printed for the cache.
+     * @param print Whether to print the row.
+     * @param cacheSize The capacity of the cache.
+     * @param allocatedBefore The bytes this thread had allocated before the cache was constructed.
+     * @param get Looks an address up.
+     * @param put Adds an object under an address.
+     * @param value The object cached under every address.
+     */
+    private static void report(String name, boolean print, int cacheSize, long allocatedBefore, Lookup get, Insert put, Object value) {
+        for (int i = 0; i < cacheSize; i++) {
+            put.put(address(i), value);
+        }
+        long bytesPerEntry = (allocatedBytes() - allocatedBefore) / cacheSize;
+
+        // Hits: every address is resident
+        SplittableRandom random = new SplittableRandom(42);
+        allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        int found = 0;
+        for (int i = 0; i < OPERATIONS; i++) {
+            if (get.get(address(random.nextInt(cacheSize))) != null) {
+                found++;
+            }
+        }
+        double nsPerHit = (System.nanoTime() - start) / (double) OPERATIONS;
+        double allocatedPerHit = (allocatedBytes() - allocatedBefore) / (double) OPERATIONS;
+
+        // Misses: every lookup fails and inserts, evicting the least recently used entry
+        start = System.nanoTime();
+        for (int i = 0; i < OPERATIONS; i++) {
+            long address = address(cacheSize + i);
+            if (get.get(address) == null) {
+                put.put(address, value);
+            }
+        }
+        double nsPerMiss = (System.nanoTime() - start) / (double) OPERATIONS;
+
+        if (print && found == OPERATIONS) {
+            System.out.printf("| %-18s | %10.1f | %11.1f | %23.1f | %15d |%n", name, nsPerHit, nsPerMiss, allocatedPerHit, bytesPerEntry);
+        }
+    }
+
+    /**
+     * Returns the bytes this thread has allocated, when the JVM can tell.
+     * @return The allocated bytes, or 0 if the JVM does not measure them.
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the disk address of the i-th node of a degree 85 tree.
+     * @param i The index of the node.
+     * @return The disk address of the node.
+     */
+    private static long address(long i) {
+        return Long.BYTES + i * NODE_SIZE;
+    }
+
+    private interface Lookup {
+        Object get(long address);
+    }
+
+    private interface Insert {
+        void put(long address, Object object);
+    }
+
+    /**
+     * The boxed layout Cache used before: a HashMap from Long to the object, with the recency order
+     * kept in a LinkedHashSet the way LruPolicy used to.
+     */
+    private static class BoxedLruCache {
+        private final Map<Long, Object> storage;
+        private final LinkedHashSet<Long> recency = new LinkedHashSet<>();
+        private final int capacity;
+
+        BoxedLruCache(int capacity) {
+            this.storage = new HashMap<>(capacity * 4 / 3 + 1);
+            this.capacity = capacity;
+        }
+
+        synchronized Object get(long address) {
+            Object object = storage.get(address);
+            if (object != null) {
+                recency.remove(address);
+                recency.add(address);
+            }
+            return object;
+        }
+
+        synchronized void put(long address, Object object) {
+            if (storage.put(address, object) != null) {
+                recency.remove(address);
+                recency.add(address);
+                return;
+            }
+            recency.add(address);
+            if (storage.size() > capacity) {
+                Iterator<Long> eldest = recency.iterator();
+                storage.remove(eldest.next());
+                eldest.remove();
+            }
+        }
+    }
+}
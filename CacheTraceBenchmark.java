@@ -0,0 +1,84 @@
+package cs321.btree;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+/**
+ * CacheTraceBenchmark replays a recorded diskRead address trace (see BTree.setReadTrace and the
+ * --readtrace option) against every eviction policy and prints the hit rate each one achieves.
+ * Because the trace is fixed, the policies are compared on exactly the same reference stream.
+ */
+public class CacheTraceBenchmark {
+    private static final String[] POLICIES = {"lru", "clock", "2q", "arc", "tinylfu"};
+
+    /**
+     * Main method to replay a trace.
+     * @param args The trace file, a comma separated list of cache sizes, and optionally a
+     *             comma separated list of policies.
+     * @throws IOException Throws an IOException if the trace cannot be read.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: CacheTraceBenchmark <trace-file> <cachesize>[,<cachesize>...] [<policy>[,<policy>...]]");
+            System.exit(1);
+        }
+        long[] trace = readTrace(args[0]);
+        String[] policies = args.length > 2 ? args[2].split(",") : POLICIES;
+
+        System.out.println("Replaying " + trace.length + " node reads from " + args[0]);
+        System.out.println();
+        System.out.println("| policy  | cache size | cache hit rate | ns per read |");
+        System.out.println("|---------|------------|----------------|-------------|");
+        for (String size : args[1].split(",")) {
+            int cacheSize = Integer.parseInt(size.trim());
+            for (String policy : policies) {
+                replay(trace, cacheSize, policy.trim());
+            }
+        }
+    }
+
+    /**
+     * Replays the trace against one cache and prints a table row with the result.
+     * @param trace The disk addresses, in the order they were read.
+     * @param cacheSize The capacity of the cache.
+     * @param policy The name of the eviction policy.
+     */
+    private static void replay(long[] trace, int cacheSize, String policy) {
+        Cache<Object> cache = new Cache<>(cacheSize, EvictionPolicy.forName(policy, cacheSize));
+        Object node = new Object();
+        long hits = 0;
+
+        long startTime = System.nanoTime();
+        for (long diskAddress : trace) {
+            if (cache.getObject(diskAddress) != null) {
+                hits++;
+            } else {
+                cache.addObject(diskAddress, node);
+            }
+        }
+        long elapsed = System.nanoTime() - startTime;
+
+        System.out.printf("| %-7s | %10d | %13.2f%% | %11.1f |%n", policy, cacheSize,
+                100.0 * hits / Math.max(1, trace.length), (double) elapsed / Math.max(1, trace.length));
+    }
+
+    /**
+     * Reads a trace file of big-endian longs.
+     * @param fileName The trace file.
+     * @return The disk addresses in the trace.
+     * @throws IOException Throws an IOException if the trace cannot be read.
+     */
+    private static long[] readTrace(String fileName) throws IOException {
+        File traceFile = new File(fileName);
+        long[] trace = new long[(int) (traceFile.length() / Long.BYTES)];
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(traceFile), 1 << 16))) {
+            for (int i = 0; i < trace.length; i++) {
+                trace[i] = in.readLong();
+            }
+        }
+        return trace;
+    }
+}
@@ -0,0 +1,81 @@
+package cs321.btree;
+
+/**
+ * The ClockPolicy class approximates LRU with the CLOCK (second chance) algorithm. Keys sit in a
+ * ring with one reference bit each; a hit only sets the bit, so hits never reorder anything.
+ * To find a victim the hand sweeps the ring, clearing set bits, and evicts the first key whose
+ * bit is already clear.
+ */
+public class ClockPolicy implements EvictionPolicy {
+    private final long[] ring; // 0 marks a free slot
+    private final boolean[] referenced;
+    private final LongIntHashMap slots; // key -> ring slot
+    private final int[] freeSlots;
+    private int freeCount;
+    private int hand;
+
+    /**
+     * Constructs a new ClockPolicy for a cache of the given capacity.
+     *
+     * @param capacity the number of keys the cache holds
+     */
+    public ClockPolicy(int capacity) {
+        // One extra slot holds the newcomer until the cache evicts a key
+        int ringSize = capacity + 1;
+        this.ring = new long[ringSize];
+        this.referenced = new boolean[ringSize];
+        this.slots = new LongIntHashMap(ringSize);
+        this.freeSlots = new int[ringSize];
+        clear();
+    }
+
+    @Override
+    public void recordAccess(long key) {
+        int slot = slots.get(key);
+        if (slot >= 0) {
+            referenced[slot] = true;
+        }
+    }
+
+    @Override
+    public void recordInsertion(long key) {
+        int slot = freeSlots[--freeCount];
+        ring[slot] = key;
+        referenced[slot] = false;
+        slots.put(key, slot);
+    }
+
+    @Override
+    public void recordRemoval(long key) {
+        int slot = slots.remove(key);
+        if (slot >= 0) {
+            ring[slot] = 0;
+            freeSlots[freeCount++] = slot;
+        }
+    }
+
+    @Override
+    public long selectVictim() {
+        // Give every referenced key a second chance
+        while (ring[hand] == 0 || referenced[hand]) {
+            referenced[hand] = false;
+            hand = (hand + 1) % ring.length;
+        }
+        long victim = ring[hand];
+        hand = (hand + 1) % ring.length;
+        recordRemoval(victim);
+        return victim;
+    }
+
+    @Override
+    public void clear() {
+        java.util.Arrays.fill(ring, 0);
+        java.util.Arrays.fill(referenced, false);
+        slots.clear();
+        freeCount = 0;
+        for (int i = ring.length - 1; i >= 0; i--) {
+            freeSlots[freeCount++] = i;
+        }
+        hand = 0;
+    }
+}
@@ -0,0 +1,162 @@
+package cs321.btree;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * ConcurrentInsertStress checks latch crabbing: it inserts the same sequences into one tree from a
+ * single thread and into another from several threads while other threads search it, and fails
+ * unless both dumps are identical and no search saw a frequency larger than the final one. Small
+ * degrees split nodes, and the root, far more often, so they are the most likely to expose a race.
+ */
+public class ConcurrentInsertStress {
+    private static final int SEQUENCE_LENGTH = 10;
+    private static final int[] DEGREES = {2, 3, 16};
+    private static final int CACHE_SIZE = 500;
+    private static final int BLOCK_SIZE = 256; // sequences an insert thread claims at a time
+
+    /**
+     * Main method to run the stress test.
+     * @param args Optionally the number of rounds (default 3), the number of insert threads
+     *             (default 8) and the number of sequences inserted per round (default 200000).
+     * @throws Exception Throws an exception if a tree cannot be written or a thread fails.
+     */
+    public static void main(String[] args) throws Exception {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        int count = args.length > 2 ? Integer.parseInt(args[2]) : 200000;
+
+        File directory = Files.createTempDirectory("insertstress").toFile();
+        int failures = 0;
+        try {
+            for (int round = 0; round < rounds; round++) {
+                // Draw from fewer keys than sequences, so many inserts only raise a frequency
+                SplittableRandom random = new SplittableRandom(round);
+                long[] sequences = new long[count];
+                for (int i = 0; i < count; i++) {
+                    sequences[i] = random.nextLong(Math.min(1L << (2 * SEQUENCE_LENGTH), count / 2));
+                }
+                for (int degree : DEGREES) {
+                    for (boolean cached : new boolean[] {false, true}) {
+                        String expected = dump(build(new File(directory, "single"), degree, cached, sequences, 1));
+                        String actual = dump(build(new File(directory, "concurrent"), degree, cached, sequences, threads));
+                        boolean same = expected.equals(actual);
+                        if (!same) {
+                            failures++;
+                        }
+                        System.out.printf("round %d degree %2d cache %-3s threads %d: %s%n", round, degree, cached ? "yes" : "no",
+                                threads, same ? "SAME" : "DIFF");
+                    }
+                }
+            }
+        } finally {
+            new File(directory, "single").delete();
+            new File(directory, "concurrent").delete();
+            directory.delete();
+        }
+        System.out.println(failures == 0 ? "PASS" : "FAIL: " + failures + " dumps differ");
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Builds a tree from the sequences. With more than one thread, the threads claim blocks of the
+     * sequences like GeneBankCreateBTree does, and as many threads search the tree meanwhile.
+     * @param file The B-tree file, replaced if it exists.
+     * @param degree The degree of the tree.
+     * @param cached Whether the tree has a striped node cache.
+     * @param sequences The encoded sequences to insert.
+     * @param threads The number of insert threads.
+     * @return The tree, still open.
+     * @throws Exception Throws an exception if the tree cannot be written or a thread fails.
+     */
+    private static BTree build(File file, int degree, boolean cached, long[] sequences, int threads) throws Exception {
+        file.delete();
+        BTree tree = new BTree(degree, file.getPath());
+        tree.setSubsequenceLength(SEQUENCE_LENGTH);
+        if (cached) {
+            tree.setUseCacheAndCacheSize(true, CACHE_SIZE, "lru", CacheBudget.defaultSegmentCount(threads));
+        }
+        if (threads == 1) {
+            for (long sequence : sequences) {
+                tree.insert(new TreeObject(sequence, 1));
+            }
+            return tree;
+        }
+
+        // How often each key occurs, the most a search may ever report for it
+        int[] occurrences = new int[sequences.length];
+        for (long sequence : sequences) {
+            occurrences[(int) sequence]++;
+        }
+        tree.setConcurrentInsert(true);
+        AtomicInteger nextBlock = new AtomicInteger();
+        AtomicInteger insertersLeft = new AtomicInteger(threads);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(2 * threads);
+        for (int t = 0; t < threads; t++) {
+            new Thread(() -> {
+                try {
+                    int start;
+                    while ((start = nextBlock.getAndAdd(BLOCK_SIZE)) < sequences.length) {
+                        int end = Math.min(start + BLOCK_SIZE, sequences.length);
+                        for (int i = start; i < end; i++) {
+                            tree.insert(new TreeObject(sequences[i], 1));
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    insertersLeft.decrementAndGet();
+                    done.countDown();
+                }
+            }).start();
+            int seed = t;
+            new Thread(() -> {
+                try {
+                    SplittableRandom random = new SplittableRandom(seed);
+                    while (insertersLeft.get() > 0) {
+                        long key = sequences[random.nextInt(sequences.length)];
+                        TreeObject found = tree.search(key);
+                        if (found != null && found.getFrequency() > occurrences[(int) key]) {
+                            throw new IllegalStateException("Search saw frequency " + found.getFrequency() + " of key " + key
+                                    + ", which occurs only " + occurrences[(int) key] + " times");
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+        done.await();
+        if (failure.get() != null) {
+            throw new IllegalStateException("A thread failed at degree " + degree, failure.get());
+        }
+        return tree;
+    }
+
+    /**
+     * Dumps a tree the way GeneBankCreateBTree does and closes it.
+     * @param tree The tree.
+     * @return The dump.
+     * @throws IOException Throws an IOException if the tree cannot be read.
+     */
+    private static String dump(BTree tree) throws IOException {
+        StringWriter dump = new StringWriter();
+        try (PrintWriter out = new PrintWriter(dump)) {
+            tree.dumpToFile(out);
+        }
+        tree.close();
+        return dump.toString();
+    }
+}
@@ -0,0 +1,587 @@
+package cs321.btree;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.regex.Pattern;
+
+import cs321.create.SequenceUtils;
+
+/**
+ * CoreBenchmark measures the hot paths of the create and search programs: sequence encoding,
+ * node serialization, point search over several degrees and cache sizes, insertion, and the
+ * cache's hit and miss paths. Each benchmark runs warmup iterations and then measured iterations
+ * of a fixed number of operations on inputs drawn from a fixed seed, so every build runs exactly
+ * the same work. Results are written as CSV, one row per benchmark and parameter set, and the CSV
+ * of an earlier build can be given as a baseline to flag the benchmarks that got slower.
+ */
+public class CoreBenchmark {
+    private static final long SEED = 42;
+    private static final int INPUTS = 1 << 12; // inputs cycled through by each benchmark, a power of two
+    private static final int SEQUENCE_LENGTH = 20; // length of the sequences stored in the trees
+    private static final int TREE_KEYS = 200000; // distinct keys in the trees that are searched
+    private static final int[] DEGREES = {16, 85}; // 85 is the largest degree whose node fits the 4096 byte buffer
+    private static final int[] SEARCH_CACHE_SIZES = {0, 100, 10000};
+    private static final int[] INSERT_CACHE_SIZES = {0, 1000};
+    private static final int[] CACHE_SIZES = {1000, 100000};
+    private static final String[] CACHE_POLICIES = {"lru", "clock"};
+    private static final long NODE_SIZE = BTree.getNodeDiskSize(85);
+    private static final Object VALUE = new Object(); // cached under every address
+    private static final String CSV_HEADER = "benchmark,params,warmup,iterations,operations,ns_per_op,stddev_ns,min_ns,max_ns,ops_per_second";
+
+    private static volatile long sink; // every result is folded in here so no work can be optimized away
+
+    /**
+     * The state one benchmark measures, set up before its first iteration and closed after its last.
+     */
+    private interface Workload extends Closeable {
+        /**
+         * Runs one iteration.
+         * @param operations The number of operations to run.
+         * @return A value computed from every result, kept so the work cannot be skipped.
+         * @throws IOException Throws an IOException if the B-tree file cannot be read or written.
+         */
+        long run(int operations) throws IOException;
+
+        @Override
+        default void close() throws IOException {
+        }
+    }
+
+    private interface WorkloadFactory {
+        Workload create() throws IOException;
+    }
+
+    /**
+     * A benchmark with one set of parameters.
+     */
+    private static class Benchmark {
+        final String name;
+        final String params;
+        final int operations;
+        final WorkloadFactory factory;
+
+        Benchmark(String name, String params, int operations, WorkloadFactory factory) {
+            this.name = name;
+            this.params = params;
+            this.operations = operations;
+            this.factory = factory;
+        }
+
+        String key() {
+            return name + "," + params;
+        }
+    }
+
+    private final File directory; // holds the B-tree files, deleted at the end
+    private final long[] treeKeys; // the keys stored in every searched tree
+    private final Map<Integer, File> trees = new HashMap<>(); // degree -> searched tree, built on first use
+
+    private CoreBenchmark(File directory) {
+        this.directory = directory;
+        SplittableRandom random = new SplittableRandom(SEED);
+        treeKeys = new long[TREE_KEYS];
+        for (int i = 0; i < TREE_KEYS; i++) {
+            treeKeys[i] = random.nextLong(1L << (2 * SEQUENCE_LENGTH));
+        }
+    }
+
+    /**
+     * Main method to run the benchmarks.
+     * @param args [--warmup=<n>] [--iterations=<n>] [--filter=<regex>] [--output=<csv-file>]
+     *             [--baseline=<csv-file>] [--threshold=<percent>]
+     * @throws IOException Throws an IOException if a B-tree file or a CSV file cannot be read or written.
+     */
+    public static void main(String[] args) throws IOException {
+        int warmup = 3;
+        int iterations = 5;
+        Pattern filter = null;
+        String outputFileName = null;
+        String baselineFileName = null;
+        double threshold = 10;
+        for (String arg : args) {
+            if (arg.startsWith("--warmup=")) {
+                warmup = Integer.parseInt(arg.substring(9));
+            } else if (arg.startsWith("--iterations=")) {
+                iterations = Integer.parseInt(arg.substring(13));
+            } else if (arg.startsWith("--filter=")) {
+                filter = Pattern.compile(arg.substring(9));
+            } else if (arg.startsWith("--output=")) {
+                outputFileName = arg.substring(9);
+            } else if (arg.startsWith("--baseline=")) {
+                baselineFileName = arg.substring(11);
+            } else if (arg.startsWith("--threshold=")) {
+                threshold = Double.parseDouble(arg.substring(12));
+            } else {
+                System.out.println("Invalid Argument: " + arg);
+                System.out.println("Usage: CoreBenchmark [--warmup=<n>] [--iterations=<n>] [--filter=<regex>] [--output=<csv-file>] [--baseline=<csv-file>] [--threshold=<percent>]");
+                System.exit(1);
+            }
+        }
+        if (iterations < 1 || warmup < 0) {
+            System.out.println("At least one iteration must be measured");
+            System.exit(1);
+        }
+        // Read the baseline first so a bad file fails before the long run
+        Map<String, Double> baseline = baselineFileName == null ? null : readBaseline(baselineFileName);
+
+        File directory = Files.createTempDirectory("corebenchmark").toFile();
+        Map<String, Double> results = new LinkedHashMap<>();
+        try (PrintWriter out = outputFileName == null
+                ? new PrintWriter(new OutputStreamWriter(System.out), true)
+                : new PrintWriter(new FileWriter(outputFileName))) {
+            // The environment goes into comment lines so results from different machines are not compared by mistake
+            out.println("# java.version=" + System.getProperty("java.version") + " java.vm.name=" + System.getProperty("java.vm.name")
+                    + " os=" + System.getProperty("os.name") + "/" + System.getProperty("os.arch")
+                    + " processors=" + Runtime.getRuntime().availableProcessors() + " max_memory=" + Runtime.getRuntime().maxMemory());
+            out.println("# seed=" + SEED + " warmup=" + warmup + " iterations=" + iterations);
+            out.println(CSV_HEADER);
+            CoreBenchmark suite = new CoreBenchmark(directory);
+            for (Benchmark benchmark : suite.benchmarks()) {
+                if (filter != null && !filter.matcher(benchmark.key()).find()) {
+                    continue;
+                }
+                double[] nsPerOp = measure(benchmark, warmup, iterations);
+                String row = formatRow(benchmark, warmup, nsPerOp);
+                out.println(row);
+                out.flush();
+                results.put(benchmark.key(), mean(nsPerOp));
+                System.err.printf("%-20s %-24s %12.1f ns/op%n", benchmark.name, benchmark.params, mean(nsPerOp));
+            }
+        } finally {
+            File[] files = directory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            directory.delete();
+        }
+
+        if (baseline != null && compare(baseline, results, threshold)) {
+            System.exit(2);
+        }
+    }
+
+    /**
+     * Lists every benchmark with every parameter set, in the order they run.
+     * @return The benchmarks.
+     */
+    private List<Benchmark> benchmarks() {
+        List<Benchmark> benchmarks = new ArrayList<>();
+        for (int length : new int[] {6, 31}) {
+            String params = "length=" + length;
+            benchmarks.add(new Benchmark("sequence.encode", params, 1000000, () -> encodeWorkload(length)));
+            benchmarks.add(new Benchmark("sequence.decode", params, 1000000, () -> decodeWorkload(length)));
+            benchmarks.add(new Benchmark("sequence.complement", params, 1000000, () -> complementWorkload(length)));
+        }
+        for (int degree : DEGREES) {
+            String params = "degree=" + degree;
+            benchmarks.add(new Benchmark("node.diskRead", params, 100000, () -> diskReadWorkload(degree)));
+            benchmarks.add(new Benchmark("node.diskWrite", params, 100000, () -> diskWriteWorkload(degree)));
+        }
+        for (int degree : DEGREES) {
+            for (int cacheSize : SEARCH_CACHE_SIZES) {
+                benchmarks.add(new Benchmark("btree.search", "degree=" + degree + ";cache=" + cacheSize, 100000, () -> searchWorkload(degree, cacheSize)));
+            }
+        }
+        for (int degree : DEGREES) {
+            for (int cacheSize : INSERT_CACHE_SIZES) {
+                benchmarks.add(new Benchmark("btree.insert", "degree=" + degree + ";cache=" + cacheSize, 50000, () -> insertWorkload(degree, cacheSize)));
+            }
+        }
+        for (String policy : CACHE_POLICIES) {
+            for (int cacheSize : CACHE_SIZES) {
+                String params = "policy=" + policy + ";size=" + cacheSize;
+                benchmarks.add(new Benchmark("cache.hit", params, 1000000, () -> cacheHitWorkload(policy, cacheSize)));
+                benchmarks.add(new Benchmark("cache.miss", params, 1000000, () -> cacheMissWorkload(policy, cacheSize)));
+            }
+        }
+        return benchmarks;
+    }
+
+    /**
+     * Sets up a benchmark, runs its warmup and measured iterations, and closes it.
+     * @param benchmark The benchmark.
+     * @param warmup The number of iterations run only to warm up the JIT and the caches.
+     * @param iterations The number of iterations measured.
+     * @return The nanoseconds per operation of each measured iteration.
+     * @throws IOException Throws an IOException if the B-tree file cannot be read or written.
+     */
+    private static double[] measure(Benchmark benchmark, int warmup, int iterations) throws IOException {
+        double[] nsPerOp = new double[iterations];
+        try (Workload workload = benchmark.factory.create()) {
+            for (int i = 0; i < warmup; i++) {
+                sink ^= workload.run(benchmark.operations);
+            }
+            for (int i = 0; i < iterations; i++) {
+                long start = System.nanoTime();
+                sink ^= workload.run(benchmark.operations);
+                nsPerOp[i] = (System.nanoTime() - start) / (double) benchmark.operations;
+            }
+        }
+        return nsPerOp;
+    }
+
+    // --- Sequence encoding ---
+
+    private Workload encodeWorkload(int length) {
+        String[] sequences = new String[INPUTS];
+        SplittableRandom random = new SplittableRandom(SEED);
+        for (int i = 0; i < INPUTS; i++) {
+            sequences[i] = SequenceUtils.longToDnaString(random.nextLong(1L << (2 * length)), length);
+        }
+        return operations -> {
+            long sum = 0;
+            for (int i = 0; i < operations; i++) {
+                sum += SequenceUtils.dnaStringToLong(sequences[i & (INPUTS - 1)]);
+            }
+            return sum;
+        };
+    }
+
+    private Workload decodeWorkload(int length) {
+        long[] keys = randomKeys(length);
+        return operations -> {
+            long sum = 0;
+            for (int i = 0; i < operations; i++) {
+                sum += SequenceUtils.longToDnaString(keys[i & (INPUTS - 1)], length).charAt(length - 1);
+            }
+            return sum;
+        };
+    }
+
+    private Workload complementWorkload(int length) {
+        long[] keys = randomKeys(length);
+        return operations -> {
+            long sum = 0;
+            for (int i = 0; i < operations; i++) {
+                sum += SequenceUtils.getComplement(keys[i & (INPUTS - 1)], length);
+            }
+            return sum;
+        };
+    }
+
+    // --- Node serialization ---
+
+    /**
+     * Reads nodes of the searched tree in a fixed random order, with no cache, so each operation
+     * is one positional read from the page cache and the decoding of the node.
+     */
+    private Workload diskReadWorkload(int degree) throws IOException {
+        BTree tree = new BTree(degree, buildTree(degree).getPath());
+        long[] addresses = nodeAddresses(degree);
+        return new Workload() {
+            @Override
+            public long run(int operations) throws IOException {
+                long sum = 0;
+                for (int i = 0; i < operations; i++) {
+                    sum += tree.diskRead(addresses[i & (INPUTS - 1)]).getSize();
+                }
+                return sum;
+            }
+
+            @Override
+            public void close() throws IOException {
+                tree.close();
+            }
+        };
+    }
+
+    /**
+     * Writes nodes of the searched tree back to their own addresses, with no cache, so each
+     * operation is the encoding of the node and one positional write, and the file never changes.
+     */
+    private Workload diskWriteWorkload(int degree) throws IOException {
+        BTree tree = new BTree(degree, buildTree(degree).getPath());
+        long[] addresses = nodeAddresses(degree);
+        BTree.BTreeNode[] nodes = new BTree.BTreeNode[INPUTS];
+        for (int i = 0; i < INPUTS; i++) {
+            nodes[i] = tree.diskRead(addresses[i]);
+        }
+        return new Workload() {
+            @Override
+            public long run(int operations) throws IOException {
+                long sum = 0;
+                for (int i = 0; i < operations; i++) {
+                    BTree.BTreeNode node = nodes[i & (INPUTS - 1)];
+                    tree.diskWrite(node);
+                    sum += node.address;
+                }
+                return sum;
+            }
+
+            @Override
+            public void close() throws IOException {
+                tree.close();
+            }
+        };
+    }
+
+    // --- B-tree search and insert ---
+
+    /**
+     * Searches the tree of the given degree for stored keys in a fixed random order.
+     */
+    private Workload searchWorkload(int degree, int cacheSize) throws IOException {
+        BTree tree = new BTree(degree, buildTree(degree).getPath());
+        if (cacheSize > 0) {
+            tree.setUseCacheAndCacheSize(true, cacheSize);
+        }
+        long[] queries = new long[INPUTS];
+        SplittableRandom random = new SplittableRandom(SEED + 1);
+        for (int i = 0; i < INPUTS; i++) {
+            queries[i] = treeKeys[random.nextInt(TREE_KEYS)];
+        }
+        return new Workload() {
+            @Override
+            public long run(int operations) throws IOException {
+                long sum = 0;
+                for (int i = 0; i < operations; i++) {
+                    TreeObject found = tree.search(queries[i & (INPUTS - 1)]);
+                    if (found != null) {
+                        sum += found.getFrequency();
+                    }
+                }
+                return sum;
+            }
+
+            @Override
+            public void close() throws IOException {
+                tree.close();
+            }
+        };
+    }
+
+    /**
+     * Inserts the same keys into a new tree each iteration; creating and closing the tree is
+     * part of the time. The keys are drawn from the stored keys, so some are inserted twice.
+     */
+    private Workload insertWorkload(int degree, int cacheSize) {
+        File file = new File(directory, "insert." + degree + "." + cacheSize);
+        return operations -> {
+            file.delete();
+            BTree tree = new BTree(degree, file.getPath());
+            if (cacheSize > 0) {
+                tree.setUseCacheAndCacheSize(true, cacheSize);
+            }
+            SplittableRandom random = new SplittableRandom(SEED + 2);
+            for (int i = 0; i < operations; i++) {
+                tree.insert(new TreeObject(treeKeys[random.nextInt(TREE_KEYS)], 1));
+            }
+            tree.close();
+            long size = tree.getSize();
+            file.delete();
+            return size;
+        };
+    }
+
+    /**
+     * Builds the searched tree of the given degree the first time it is needed.
+     * @param degree The degree of the tree.
+     * @return The B-tree file.
+     * @throws IOException Throws an IOException if the file cannot be written.
+     */
+    private File buildTree(int degree) throws IOException {
+        File file = trees.get(degree);
+        if (file == null) {
+            file = new File(directory, "search." + degree);
+            BTree tree = new BTree(degree, file.getPath());
+            tree.setUseCacheAndCacheSize(true, 10000); // only to build it faster; the benchmarks reopen it
+            for (long key : treeKeys) {
+                tree.insert(new TreeObject(key, 1));
+            }
+            tree.close();
+            trees.put(degree, file);
+        }
+        return file;
+    }
+
+    /**
+     * Picks nodes of the searched tree of the given degree in a fixed random order. Nodes are
+     * laid out one after another behind the metadata.
+     * @param degree The degree of the tree.
+     * @return The disk addresses of INPUTS nodes, some repeated if the tree is smaller.
+     * @throws IOException Throws an IOException if the tree cannot be built.
+     */
+    private long[] nodeAddresses(int degree) throws IOException {
+        long nodeSize = BTree.getNodeDiskSize(degree);
+        long nodes = (buildTree(degree).length() - Long.BYTES) / nodeSize;
+        long[] addresses = new long[INPUTS];
+        SplittableRandom random = new SplittableRandom(SEED + 3);
+        for (int i = 0; i < INPUTS; i++) {
+            addresses[i] = Long.BYTES + random.nextLong(nodes) * nodeSize;
+        }
+        return addresses;
+    }
+
+    // --- Cache ---
+
+    /**
+     * Looks up resident addresses in a fixed random order.
+     */
+    private Workload cacheHitWorkload(String policy, int cacheSize) {
+        Cache<Object> cache = new Cache<>(cacheSize, EvictionPolicy.forName(policy, cacheSize));
+        for (int i = 0; i < cacheSize; i++) {
+            cache.addObject(address(i), VALUE);
+        }
+        long[] addresses = new long[INPUTS];
+        SplittableRandom random = new SplittableRandom(SEED);
+        for (int i = 0; i < INPUTS; i++) {
+            addresses[i] = address(random.nextInt(cacheSize));
+        }
+        return operations -> {
+            long sum = 0;
+            for (int i = 0; i < operations; i++) {
+                if (cache.getObject(addresses[i & (INPUTS - 1)]) != null) {
+                    sum++;
+                }
+            }
+            return sum;
+        };
+    }
+
+    /**
+     * Looks up addresses never seen before, each of which is then added and evicts an entry.
+     */
+    private Workload cacheMissWorkload(String policy, int cacheSize) {
+        Cache<Object> cache = new Cache<>(cacheSize, EvictionPolicy.forName(policy, cacheSize));
+        for (int i = 0; i < cacheSize; i++) {
+            cache.addObject(address(i), VALUE);
+        }
+        long[] next = {cacheSize};
+        return operations -> {
+            long sum = 0;
+            for (int i = 0; i < operations; i++) {
+                long address = address(next[0]++);
+                if (cache.getObject(address) == null) {
+                    cache.addObject(address, VALUE);
+                    sum++;
+                }
+            }
+            return sum;
+        };
+    }
+
+    // --- Helpers ---
+
+    /**
+     * Draws the inputs of a sequence benchmark.
+     * @param length The length of the sequences.
+     * @return INPUTS random encoded sequences of that length.
+     */
+    private static long[] randomKeys(int length) {
+        long[] keys = new long[INPUTS];
+        SplittableRandom random = new SplittableRandom(SEED);
+        for (int i = 0; i < INPUTS; i++) {
+            keys[i] = random.nextLong(1L << (2 * length));
+        }
+        return keys;
+    }
+
+    /**
+     * Returns the disk address of the i-th node of a degree 85 tree.
+     * @param i The index of the node.
+     * @return The disk address of the node.
+     */
+    private static long address(long i) {
+        return Long.BYTES + i * NODE_SIZE;
+    }
+
+    private static double mean(double[] values) {
+        double sum = 0;
+        for (double value : values) {
+            sum += value;
+        }
+        return sum / values.length;
+    }
+
+    /**
+     * Formats the CSV row of a benchmark.
+     * @param benchmark The benchmark.
+     * @param warmup The number of warmup iterations.
+     * @param nsPerOp The nanoseconds per operation of each measured iteration.
+     * @return The row, without a line separator.
+     */
+    private static String formatRow(Benchmark benchmark, int warmup, double[] nsPerOp) {
+        double mean = mean(nsPerOp);
+        double squares = 0;
+        double min = Double.MAX_VALUE;
+        double max = 0;
+        for (double value : nsPerOp) {
+            squares += (value - mean) * (value - mean);
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        double stddev = nsPerOp.length > 1 ? Math.sqrt(squares / (nsPerOp.length - 1)) : 0;
+        return String.format("%s,%d,%d,%d,%.3f,%.3f,%.3f,%.3f,%.0f", benchmark.key(), warmup, nsPerOp.length,
+                benchmark.operations, mean, stddev, min, max, 1e9 / mean);
+    }
+
+    /**
+     * Reads the mean time per operation of every benchmark in an earlier CSV.
+     * @param fileName The CSV file written by an earlier run.
+     * @return The nanoseconds per operation of each benchmark, keyed by name and parameters.
+     * @throws IOException Throws an IOException if the file cannot be read or is not a CoreBenchmark CSV.
+     */
+    private static Map<String, Double> readBaseline(String fileName) throws IOException {
+        Map<String, Double> baseline = new HashMap<>();
+        try (BufferedReader in = new BufferedReader(new FileReader(fileName))) {
+            String line;
+            boolean header = false;
+            while ((line = in.readLine()) != null) {
+                if (line.startsWith("#") || line.isEmpty()) {
+                    continue;
+                }
+                if (!header) {
+                    if (!line.equals(CSV_HEADER)) {
+                        throw new IOException("Not a CoreBenchmark CSV file: " + fileName);
+                    }
+                    header = true;
+                    continue;
+                }
+                String[] fields = line.split(",");
+                baseline.put(fields[0] + "," + fields[1], Double.parseDouble(fields[5]));
+            }
+        }
+        return baseline;
+    }
+
+    /**
+     * Prints how each benchmark changed against the baseline.
+     * @param baseline The nanoseconds per operation of the baseline, keyed by name and parameters.
+     * @param results The nanoseconds per operation of this run, keyed the same way.
+     * @param threshold The slowdown, in percent, above which a benchmark counts as a regression.
+     * @return Whether any benchmark regressed.
+     */
+    private static boolean compare(Map<String, Double> baseline, Map<String, Double> results, double threshold) {
+        boolean regressed = false;
+        System.err.println();
+        System.err.println("| benchmark                                  | baseline ns/op | ns/op      | change   |");
+        System.err.println("|--------------------------------------------|----------------|------------|----------|");
+        for (Map.Entry<String, Double> result : results.entrySet()) {
+            Double before = baseline.get(result.getKey());
+            if (before == null) {
+                continue;
+            }
+            double change = 100 * (result.getValue() - before) / before;
+            boolean regression = change > threshold;
+            regressed |= regression;
+            System.err.printf("| %-42s | %14.1f | %10.1f | %+7.1f%% |%s%n", result.getKey().replace(',', ' '), before,
+                    result.getValue(), change, regression ? " REGRESSION" : "");
+        }
+        return regressed;
+    }
+}
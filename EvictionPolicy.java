@@ -0,0 +1,68 @@
+package cs321.btree;
+
+/**
+ * An EvictionPolicy decides which key a bounded cache gives up when it runs out of room.
+ * The cache reports every hit and every new key to the policy, and asks it for a victim whenever
+ * it holds one key more than its capacity. Keys are disk addresses and are never 0.
+ */
+public interface EvictionPolicy {
+
+    /**
+     * Records a hit on a key the cache currently holds.
+     *
+     * @param key the key that was accessed
+     */
+    void recordAccess(long key);
+
+    /**
+     * Records that a key was added to the cache.
+     *
+     * @param key the key that was added
+     */
+    void recordInsertion(long key);
+
+    /**
+     * Records that the cache dropped a key on its own, for example when the key was removed explicitly.
+     *
+     * @param key the key that was removed
+     */
+    void recordRemoval(long key);
+
+    /**
+     * Chooses a key to evict and stops tracking it. The victim may be the key that was just
+     * inserted, when the policy decides the newcomer is not worth keeping.
+     *
+     * @return the key the cache must evict
+     */
+    long selectVictim();
+
+    /**
+     * Forgets every key, including any history the policy keeps about evicted keys.
+     */
+    void clear();
+
+    /**
+     * Creates the policy with the given name.
+     *
+     * @param name     one of lru, clock, 2q, arc or tinylfu
+     * @param capacity the number of keys the cache holds
+     * @return the new policy
+     * @throws IllegalArgumentException if the name is not a known policy
+     */
+    static EvictionPolicy forName(String name, int capacity) {
+        switch (name.toLowerCase()) {
+            case "lru":
+                return new LruPolicy(capacity);
+            case "clock":
+                return new ClockPolicy(capacity);
+            case "2q":
+                return new TwoQueuePolicy(capacity);
+            case "arc":
+                return new ArcPolicy(capacity);
+            case "tinylfu":
+                return new TinyLfuPolicy(capacity);
+            default:
+                throw new IllegalArgumentException("Unknown cache policy: " + name);
+        }
+    }
+}
@@ -1,7 +1,15 @@
 package cs321.create;
 
+import java.io.File;
 import java.io.PrintWriter;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import cs321.btree.BTree;
+import cs321.btree.CacheBudget;
+import cs321.btree.HashKmerStore;
+import cs321.btree.SortedArrayKmerStore;
 import cs321.btree.TreeObject;
 import cs321.common.ParseArgumentException;
 
@@ -23,21 +31,51 @@ public class GeneBankCreateBTree {
         // Read DNA sequences from the input file
         GeneBankFileReader fileReader = new GeneBankFileReader(commandArgs.getGbkFileName(), commandArgs.getSubsequenceLength());
 
+        // The hash and sorted engines count in memory and write a sorted k-mer file instead of a B-tree
+        if (!commandArgs.getEngine().equals("btree")) {
+            String kmerFileName = commandArgs.getGbkFileName() + ".kmers.data." + commandArgs.getSubsequenceLength();
+            long[] sequences = fileReader.getRemainingSequences();
+            long distinctCount = createKmerFile(commandArgs, sequences, kmerFileName);
+            long elapsedTimeInMillis = (System.nanoTime() - startTime) / 1000000;
+            if (commandArgs.getDebugLevel() == 0) {
+                System.out.println(" \n\n" + commandArgs.getGbkFileName() + " Successfully Uploaded!\n\n");
+                System.out.println("Engine: " + commandArgs.getEngine());
+                System.out.println("Elapsed time: " + elapsedTimeInMillis + " milliseconds");
+                System.out.println("Number of DNA sequences uploaded: " + sequences.length);
+                System.out.println("Distinct DNA sequences: " + distinctCount);
+                System.out.println("Sub Sequence Length: " + commandArgs.getSubsequenceLength());
+            }
+            return;
+        }
+
         // Create a B-tree
-        BTree dnaBTree = new BTree(commandArgs.getDegree(), commandArgs.getGbkFileName() + ".btree.data." + commandArgs.getSubsequenceLength() + "." + commandArgs.getDegree());
+        String btreeFileName = commandArgs.getGbkFileName() + ".btree.data." + commandArgs.getSubsequenceLength() + "." + commandArgs.getDegree();
+        BTree dnaBTree = new BTree(commandArgs.getDegree(), btreeFileName);
         dnaBTree.setSubsequenceLength(commandArgs.getSubsequenceLength());
 
         // Set cache size if cache is enabled
         if (commandArgs.isUseCache()) {
-            dnaBTree.setUseCacheAndCacheSize(commandArgs.isUseCache(), commandArgs.getCacheSize());
+            if (commandArgs.getCacheType().equals("offheap")) {
+                dnaBTree.setUseOffHeapCache(commandArgs.isUseCache(), commandArgs.getCacheSize(), commandArgs.getCachePolicy(), commandArgs.getCacheSegments());
+            } else {
+                dnaBTree.setUseCacheAndCacheSize(commandArgs.isUseCache(), commandArgs.getCacheSize(), commandArgs.getCachePolicy(), commandArgs.getCacheSegments());
+                dnaBTree.setAdaptiveCacheSizing(commandArgs.isAdaptiveCache(), 100);
+            }
+        }
+        if (commandArgs.getReadTraceFileName() != null) {
+            dnaBTree.setReadTrace(commandArgs.getReadTraceFileName());
         }
 
         // Insert DNA sequences into the B-tree
         int sequenceCount = 0;
-        for (int i = 0; i < fileReader.getSize(); i++) {
-            TreeObject currentTreeObject = new TreeObject(fileReader.getNextSequence(), 1);
-            dnaBTree.insert(currentTreeObject);
-            sequenceCount++;
+        if (commandArgs.getThreads() > 1) {
+            sequenceCount = insertSequencesConcurrently(dnaBTree, fileReader.getRemainingSequences(), commandArgs.getThreads());
+        } else {
+            for (int i = 0; i < fileReader.getSize(); i++) {
+                TreeObject currentTreeObject = new TreeObject(fileReader.getNextSequence(), 1);
+                dnaBTree.insert(currentTreeObject);
+                sequenceCount++;
+            }
         }
 
         // Dump B-tree to file if debug level is 1
@@ -46,6 +84,15 @@ public class GeneBankCreateBTree {
                 dnaBTree.dumpToFile(writer);
             }
         }
+        // Write the Bloom filter the search program loads to skip absent queries
+        if (commandArgs.getBloomFalsePositiveRate() > 0) {
+            dnaBTree.writeBloomFilter(btreeFileName + ".bloom", commandArgs.getBloomFalsePositiveRate());
+        }
+        // Export the keys to SQLite for the database search program
+        if (commandArgs.getDatabaseFileName() != null) {
+            BTreeDatabaseExporter.export(dnaBTree, commandArgs.getSubsequenceLength(), commandArgs.getDatabaseFileName());
+        }
+        dnaBTree.close();
 
         long endTime = System.nanoTime();
         long elapsedTimeInMillis = (endTime - startTime) / 1000000;
@@ -63,11 +110,93 @@ public class GeneBankCreateBTree {
             System.out.println("Amount of Nodes: " + dnaBTree.getNumberOfNodes());
             System.out.println("Cache Used: " + commandArgs.isUseCache());
             System.out.println("Cache Size: " + commandArgs.getCacheSize());
-            System.out.printf("Cache Hit Ratio: %.2f%%\n", (dnaBTree.getCacheHitRatio() * 100.0));
+            System.out.println("Cache Capacity at Exit: " + dnaBTree.getCacheCapacity());
+            dnaBTree.getStatistics().print(System.out);
             System.out.println("__________________________________________________");
         }
     }
 
+    /**
+     * Builds the sorted k-mer file of the hash or sorted engine, then writes the dump and the
+     * database export from it like the B-tree path does. The sorted engine sorts the occurrences
+     * and counts runs of equal keys; the hash engine counts them in a HashKmerStore, whose memory
+     * grows with the distinct sequences rather than with every occurrence.
+     * @param commandArgs The parsed command line arguments.
+     * @param sequences The encoded sequences of the GeneBank file, one per occurrence.
+     * @param kmerFileName The sorted k-mer file to write, replaced if it exists.
+     * @return The number of distinct sequences.
+     * @throws Exception Throws an exception if a file cannot be written.
+     */
+    private static long createKmerFile(GeneBankCreateBTreeArguments commandArgs, long[] sequences, String kmerFileName) throws Exception {
+        if (commandArgs.getEngine().equals("sorted")) {
+            SortedArrayKmerStore.writeSorted(kmerFileName, sequences);
+        } else {
+            new File(kmerFileName).delete(); // start empty rather than adding to an earlier run
+            try (HashKmerStore store = new HashKmerStore(kmerFileName)) {
+                for (long sequence : sequences) {
+                    store.upsert(sequence, 1);
+                }
+            }
+        }
+        try (SortedArrayKmerStore store = new SortedArrayKmerStore(kmerFileName)) {
+            if (commandArgs.getDebugLevel() == 1) {
+                try (PrintWriter writer = new PrintWriter(commandArgs.getGbkFileName() + ".dump." + commandArgs.getSubsequenceLength())) {
+                    store.scan((key, frequency) -> writer.println(SequenceUtils.longToDnaString(key, commandArgs.getSubsequenceLength()) + " " + frequency));
+                }
+            }
+            if (commandArgs.getDatabaseFileName() != null) {
+                BTreeDatabaseExporter.export(store, commandArgs.getSubsequenceLength(), commandArgs.getDatabaseFileName());
+            }
+            return store.getSize();
+        }
+    }
+
+    /**
+     * Inserts the sequences into the B-tree from several threads at once.
+     * Threads claim fixed-size blocks of the sequence array until it is exhausted. If any thread
+     * fails, the others are interrupted and the failure is rethrown at once.
+     * @param dnaBTree The B-tree to insert into.
+     * @param sequences The encoded sequences to insert.
+     * @param threads The number of insert threads.
+     * @return The number of sequences inserted.
+     * @throws Exception Throws an exception if any insert thread fails.
+     */
+    private static int insertSequencesConcurrently(BTree dnaBTree, long[] sequences, int threads) throws Exception {
+        final int blockSize = 1024;
+        AtomicInteger nextBlock = new AtomicInteger(0);
+        dnaBTree.setConcurrentInsert(true);
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        boolean completed = false;
+        try {
+            ExecutorCompletionService<Void> workers = new ExecutorCompletionService<>(pool);
+            for (int t = 0; t < threads; t++) {
+                workers.submit(() -> {
+                    int start;
+                    while (!Thread.currentThread().isInterrupted() && (start = nextBlock.getAndAdd(blockSize)) < sequences.length) {
+                        int end = Math.min(start + blockSize, sequences.length);
+                        for (int i = start; i < end; i++) {
+                            dnaBTree.insert(new TreeObject(sequences[i], 1));
+                        }
+                    }
+                    return null;
+                });
+            }
+            // Wait for the workers in the order they finish, rethrowing the first failure
+            for (int t = 0; t < threads; t++) {
+                workers.take().get();
+            }
+            completed = true;
+        } finally {
+            if (completed) {
+                pool.shutdown();
+            } else {
+                pool.shutdownNow(); // Stop the other workers so the failure is not held up behind them
+            }
+        }
+        return sequences.length;
+    }
+
     /**
      * Parses command line arguments and handles exceptions.
      * @param args Command line arguments.
@@ -89,7 +218,9 @@ public class GeneBankCreateBTree {
      */
     private static void printUsageAndExit(String errorMessage) {
         System.out.println("--cache=<0|1>  --degree=<btree-degree> \n" + //
-                "\t--gbkfile=<gbk-file> --length=<sequence-length> [--cachesize=<n>] [--debug=0|1]");
+                "\t--gbkfile=<gbk-file> --length=<sequence-length> [--cachesize=<n|bytes|percent%>] [--debug=0|1] [--threads=<n>]\n" + //
+                "\t[--cacheadaptive=<0|1>] [--cachetype=<heap|offheap>] [--cachepolicy=<lru|clock|2q|arc|tinylfu>] [--readtrace=<trace-file>]\n" + //
+                "\t[--bloomfpp=<false-positive-rate>] [--database=<sqlite-file>] [--engine=<btree|hash|sorted>] [--cachesegments=<n>]");
         System.exit(1);
     }
 
@@ -104,8 +235,17 @@ public class GeneBankCreateBTree {
         int degree = 0;
         String gbkFileName = null;
         int subsequenceLength = 0;
-        int cacheSize = 0;
+        String cacheSizeSpec = null;
+        boolean adaptiveCache = false;
         int debugLevel = 0;
+        int threads = 1;
+        String cacheType = "heap";
+        String cachePolicy = null;
+        String readTraceFileName = null;
+        double bloomFalsePositiveRate = 0;
+        String databaseFileName = null;
+        String engine = "btree";
+        int cacheSegments = 0; // 0 picks a count from the number of threads
     
         for (String arg : args) {
             if (arg.startsWith("--cache=")) {
@@ -117,9 +257,27 @@ public class GeneBankCreateBTree {
             } else if (arg.startsWith("--length=")) {
                 subsequenceLength = Integer.parseInt(arg.substring(9));
             } else if (arg.startsWith("--cachesize=")) {
-                cacheSize = Integer.parseInt(arg.substring(12));
+                cacheSizeSpec = arg.substring(12);
+            } else if (arg.startsWith("--cacheadaptive=")) {
+                adaptiveCache = Integer.parseInt(arg.substring(16)) == 1;
             } else if (arg.startsWith("--debug=")) {
                 debugLevel = Integer.parseInt(arg.substring(8));
+            } else if (arg.startsWith("--threads=")) {
+                threads = Integer.parseInt(arg.substring(10));
+            } else if (arg.startsWith("--cachetype=")) {
+                cacheType = arg.substring(12);
+            } else if (arg.startsWith("--cachepolicy=")) {
+                cachePolicy = arg.substring(14).toLowerCase();
+            } else if (arg.startsWith("--readtrace=")) {
+                readTraceFileName = arg.substring(12);
+            } else if (arg.startsWith("--bloomfpp=")) {
+                bloomFalsePositiveRate = Double.parseDouble(arg.substring(11));
+            } else if (arg.startsWith("--database=")) {
+                databaseFileName = arg.substring(11);
+            } else if (arg.startsWith("--engine=")) {
+                engine = arg.substring(9).toLowerCase();
+            } else if (arg.startsWith("--cachesegments=")) {
+                cacheSegments = Integer.parseInt(arg.substring(16));
             } else {
                 throw new ParseArgumentException("Invalid Argument: " + arg);
             }
@@ -130,10 +288,55 @@ public class GeneBankCreateBTree {
         }
 
         // Validate optional arguments
-        if (useCache && cacheSize < 100 && cacheSize > 10000) {
-            throw new ParseArgumentException("Cache size must be specified when using cache. Cache size should be 100 <= x <= 10000");
+        if (threads < 1) {
+            throw new ParseArgumentException("Number of threads must be at least 1");
+        }
+        if (cacheSegments < 0) {
+            throw new ParseArgumentException("Number of cache segments must not be negative");
+        }
+        if (cacheSegments == 0) {
+            cacheSegments = CacheBudget.defaultSegmentCount(threads);
+        }
+        if (!cacheType.equals("heap") && !cacheType.equals("offheap")) {
+            throw new ParseArgumentException("Cache type must be heap or offheap");
+        }
+        // Object caches default to LRU; page caches default to CLOCK, which keeps no per-entry objects
+        if (cachePolicy == null) {
+            cachePolicy = cacheType.equals("offheap") ? "clock" : "lru";
+        }
+        if (!cachePolicy.matches("lru|clock|2q|arc|tinylfu")) {
+            throw new ParseArgumentException("Cache policy must be lru, clock, 2q, arc or tinylfu");
+        }
+
+        // Byte and percentage sizes depend on what one node costs in the chosen cache
+        int cacheSize = 0;
+        if (cacheSizeSpec != null) {
+            boolean offHeap = cacheType.equals("offheap");
+            int nodeDegree = degree == 0 ? 85 : degree;
+            int nodeBytes = offHeap ? BTree.getNodeDiskSize(nodeDegree) : BTree.getNodeHeapSize(nodeDegree);
+            long memoryLimit = offHeap ? CacheBudget.maxDirectMemory() : CacheBudget.maxHeapMemory();
+            try {
+                cacheSize = CacheBudget.toNodeCount(cacheSizeSpec, nodeBytes, memoryLimit);
+            } catch (IllegalArgumentException e) {
+                throw new ParseArgumentException("Invalid cache size: " + cacheSizeSpec);
+            }
+        }
+        if (useCache && cacheSize < 100) {
+            throw new ParseArgumentException("Cache size must be specified when using cache. Cache size should hold at least 100 nodes");
+        }
+        if (adaptiveCache && cacheType.equals("offheap")) {
+            throw new ParseArgumentException("Adaptive cache sizing requires --cachetype=heap");
+        }
+        if (bloomFalsePositiveRate < 0 || bloomFalsePositiveRate >= 1) {
+            throw new ParseArgumentException("Bloom filter false-positive rate must be between 0 and 1");
+        }
+        if (!engine.matches("btree|hash|sorted")) {
+            throw new ParseArgumentException("Engine must be btree, hash or sorted");
+        }
+        if (!engine.equals("btree") && (useCache || threads > 1 || readTraceFileName != null || bloomFalsePositiveRate > 0)) {
+            throw new ParseArgumentException("--cache, --threads, --readtrace and --bloomfpp apply only to --engine=btree");
         }
     
-        return new GeneBankCreateBTreeArguments(useCache, degree, gbkFileName, subsequenceLength, cacheSize, debugLevel);
+        return new GeneBankCreateBTreeArguments(useCache, degree, gbkFileName, subsequenceLength, cacheSize, debugLevel, threads, cacheType, cachePolicy, readTraceFileName, adaptiveCache, bloomFalsePositiveRate, databaseFileName, engine, cacheSegments);
     }
 }
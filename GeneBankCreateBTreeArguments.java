@@ -10,6 +10,15 @@ public class GeneBankCreateBTreeArguments {
     private final int subsequenceLength;
     private final int cacheSize;
     private final int debugLevel;
+    private final int threads;
+    private final String cacheType;
+    private final String cachePolicy;
+    private final String readTraceFileName;
+    private final boolean adaptiveCache;
+    private final double bloomFalsePositiveRate;
+    private final String databaseFileName;
+    private final String engine;
+    private final int cacheSegments;
 
     /**
      * Constructor to initialize GeneBankCreateBTreeArguments.
@@ -21,12 +30,43 @@ public class GeneBankCreateBTreeArguments {
      * @param debugLevel Debug level (0 for no debug, 1 for debug).
      */
     public GeneBankCreateBTreeArguments(boolean useCache, int degree, String gbkFileName, int subsequenceLength, int cacheSize, int debugLevel) {
+        this(useCache, degree, gbkFileName, subsequenceLength, cacheSize, debugLevel, 1, "heap", "lru", null, false, 0, null, "btree", 1);
+    }
+
+    /**
+     * Constructor to initialize GeneBankCreateBTreeArguments.
+     * @param useCache Whether to use cache.
+     * @param degree Degree of the B-tree.
+     * @param gbkFileName Path to the input DNA sequence file.
+     * @param subsequenceLength Length of the DNA subsequence.
+     * @param cacheSize Size of the cache (if caching is enabled).
+     * @param debugLevel Debug level (0 for no debug, 1 for debug).
+     * @param threads Number of threads inserting into the B-tree.
+     * @param cacheType Where cached nodes live: "heap" for node objects, "offheap" for serialized pages.
+     * @param cachePolicy Eviction policy of the cache: lru, clock, 2q, arc or tinylfu.
+     * @param readTraceFileName File recording every node read for CacheTraceBenchmark, or null for no trace.
+     * @param adaptiveCache Whether the cache grows and shrinks with its hit ratio, using cacheSize as the ceiling.
+     * @param bloomFalsePositiveRate The false-positive rate of the Bloom filter written next to the B-Tree, or 0 for no filter.
+     * @param databaseFileName Name of the SQLite database the B-tree is exported to, or null to skip the export.
+     * @param engine Storage engine to build: btree, hash or sorted.
+     * @param cacheSegments Number of lock segments the node cache is striped into.
+     */
+    public GeneBankCreateBTreeArguments(boolean useCache, int degree, String gbkFileName, int subsequenceLength, int cacheSize, int debugLevel, int threads, String cacheType, String cachePolicy, String readTraceFileName, boolean adaptiveCache, double bloomFalsePositiveRate, String databaseFileName, String engine, int cacheSegments) {
         this.useCache = useCache;
         this.degree = degree;
         this.gbkFileName = gbkFileName;
         this.subsequenceLength = subsequenceLength;
         this.cacheSize = cacheSize;
         this.debugLevel = debugLevel;
+        this.threads = threads;
+        this.cacheType = cacheType;
+        this.cachePolicy = cachePolicy;
+        this.readTraceFileName = readTraceFileName;
+        this.adaptiveCache = adaptiveCache;
+        this.bloomFalsePositiveRate = bloomFalsePositiveRate;
+        this.databaseFileName = databaseFileName;
+        this.engine = engine;
+        this.cacheSegments = cacheSegments;
     }
 
     @Override
@@ -80,6 +120,92 @@ public class GeneBankCreateBTreeArguments {
         {
             return false;
         }
+        if (threads != other.threads)
+        {
+            return false;
+        }
+        if (cacheType == null)
+        {
+            if (other.cacheType != null)
+            {
+                return false;
+            }
+        }
+        else
+        {
+            if (!cacheType.equals(other.cacheType))
+            {
+                return false;
+            }
+        }
+        if (cachePolicy == null)
+        {
+            if (other.cachePolicy != null)
+            {
+                return false;
+            }
+        }
+        else
+        {
+            if (!cachePolicy.equals(other.cachePolicy))
+            {
+                return false;
+            }
+        }
+        if (readTraceFileName == null)
+        {
+            if (other.readTraceFileName != null)
+            {
+                return false;
+            }
+        }
+        else
+        {
+            if (!readTraceFileName.equals(other.readTraceFileName))
+            {
+                return false;
+            }
+        }
+        if (adaptiveCache != other.adaptiveCache)
+        {
+            return false;
+        }
+        if (Double.compare(bloomFalsePositiveRate, other.bloomFalsePositiveRate) != 0)
+        {
+            return false;
+        }
+        if (databaseFileName == null)
+        {
+            if (other.databaseFileName != null)
+            {
+                return false;
+            }
+        }
+        else
+        {
+            if (!databaseFileName.equals(other.databaseFileName))
+            {
+                return false;
+            }
+        }
+        if (engine == null)
+        {
+            if (other.engine != null)
+            {
+                return false;
+            }
+        }
+        else
+        {
+            if (!engine.equals(other.engine))
+            {
+                return false;
+            }
+        }
+        if (cacheSegments != other.cacheSegments)
+        {
+            return false;
+        }
         return true;
     }
 
@@ -94,6 +220,15 @@ public class GeneBankCreateBTreeArguments {
                 ", subsequenceLength=" + subsequenceLength +
                 ", cacheSize=" + cacheSize +
                 ", debugLevel=" + debugLevel +
+                ", threads=" + threads +
+                ", cacheType='" + cacheType + '\'' +
+                ", cachePolicy='" + cachePolicy + '\'' +
+                ", readTraceFileName='" + readTraceFileName + '\'' +
+                ", adaptiveCache=" + adaptiveCache +
+                ", bloomFalsePositiveRate=" + bloomFalsePositiveRate +
+                ", databaseFileName='" + databaseFileName + '\'' +
+                ", engine='" + engine + '\'' +
+                ", cacheSegments=" + cacheSegments +
                 '}';
     }
 
@@ -123,4 +258,40 @@ public class GeneBankCreateBTreeArguments {
     public int getDebugLevel() {
         return debugLevel;
     }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public String getCacheType() {
+        return cacheType;
+    }
+
+    public String getCachePolicy() {
+        return cachePolicy;
+    }
+
+    public String getReadTraceFileName() {
+        return readTraceFileName;
+    }
+
+    public boolean isAdaptiveCache() {
+        return adaptiveCache;
+    }
+
+    public double getBloomFalsePositiveRate() {
+        return bloomFalsePositiveRate;
+    }
+
+    public String getDatabaseFileName() {
+        return databaseFileName;
+    }
+
+    public String getEngine() {
+        return engine;
+    }
+
+    public int getCacheSegments() {
+        return cacheSegments;
+    }
 }
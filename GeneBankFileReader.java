@@ -34,6 +34,19 @@ public class GeneBankFileReader implements GeneBankFileReaderInterface {
         return dnaSequences.size();
     }
 
+    /**
+     * Encodes every remaining sequence at once, so the sequences can be split between insert threads.
+     *
+     * @return the remaining sequences, formatted as longs, in file order
+     */
+    public long[] getRemainingSequences() {
+        long[] sequences = new long[dnaSequences.size() - currentPosition];
+        for (int i = 0; i < sequences.length; i++) {
+            sequences[i] = SequenceUtils.dnaStringToLong(dnaSequences.get(currentPosition++));
+        }
+        return sequences;
+    }
+
     private void processSequences() throws IOException {
             try (Scanner fileScanner = new Scanner(gbkFile)) {
                 String currentLine;
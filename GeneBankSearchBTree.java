@@ -2,13 +2,28 @@ package cs321.search;
 
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
-import java.io.FileWriter;
 import java.io.PrintStream;
-import java.util.Scanner;
 import java.io.BufferedWriter;
-import java.io.File;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import cs321.btree.BTree;
+import cs321.btree.BTreeStatistics;
+import cs321.btree.CacheBudget;
+import cs321.btree.HashKmerStore;
+import cs321.btree.KmerStore;
+import cs321.btree.SortedArrayKmerStore;
+import cs321.btree.TopFrequencyHeap;
 import cs321.btree.TreeObject;
 import cs321.common.ParseArgumentException;
 import cs321.create.SequenceUtils;
@@ -17,6 +32,8 @@ import cs321.create.SequenceUtils;
  * GeneBankSearchBTree class is responsible for searching DNA sequences in a B-tree index and computing their frequencies.
  */
 public class GeneBankSearchBTree {
+    private static final int QUERY_BATCH_SIZE = 4096;
+    private static final int MAX_IUPAC_RANGES = 1 << 16; // most key ranges one ambiguous query may expand to
     
     /**
      * Main method to search DNA sequences in a B-tree index and compute their frequencies.
@@ -27,11 +44,55 @@ public class GeneBankSearchBTree {
         long startTime = System.nanoTime();
         // Parse command line arguments
         GeneBankSearchBTreeArguments commandArgs = parseArgumentsAndHandleExceptions(args);
+        // The hash and sorted engines have no cache, pinning or node statistics to set up
+        if (!commandArgs.getEngine().equals("btree")) {
+            searchKmerFile(commandArgs, startTime);
+            return;
+        }
         // Create a B-tree instance
         BTree dnaBTree = new BTree(commandArgs.getDegree(), commandArgs.getBTreeFileName());
+        // Set cache size if cache is enabled
+        if (commandArgs.isUseCache()) {
+            if (commandArgs.getCacheType().equals("offheap")) {
+                dnaBTree.setUseOffHeapCache(commandArgs.isUseCache(), commandArgs.getCacheSize(), commandArgs.getCachePolicy(), commandArgs.getCacheSegments());
+            } else {
+                dnaBTree.setUseCacheAndCacheSize(commandArgs.isUseCache(), commandArgs.getCacheSize(), commandArgs.getCachePolicy(), commandArgs.getCacheSegments());
+                dnaBTree.setAdaptiveCacheSizing(commandArgs.isAdaptiveCache(), 100);
+            }
+        }
+        if (commandArgs.getReadTraceFileName() != null) {
+            dnaBTree.setReadTrace(commandArgs.getReadTraceFileName());
+        }
+        // Keep the upper levels resident so each lookup only reads the lower levels
+        if (commandArgs.getPinLevels() != 0) {
+            dnaBTree.pinUpperLevels(commandArgs.getPinLevels());
+        }
+        // Start from the nodes the last run ended with
+        int warmSetNodes = 0;
+        if (commandArgs.getWarmSetFileName() != null) {
+            warmSetNodes = dnaBTree.loadWarmSet(commandArgs.getWarmSetFileName());
+        }
+        // Use the Bloom filter written by the create program, if it still matches the tree
+        boolean bloomFilterLoaded = dnaBTree.loadBloomFilter(commandArgs.getBTreeFileName() + ".bloom");
+        // Count only the query phase, not opening the tree, pinning and preloading
+        dnaBTree.getStatistics().reset();
         int sequenceCount = 0;
-        // Search keys from the query file and write results to the output file
-        searchKeysFromFile(dnaBTree, commandArgs.getQueryFileName(), commandArgs.getSubsequenceLength(), sequenceCount, commandArgs.getDebugLevel(), commandArgs.getBTreeFileName());
+        // Report the most frequent sequences, streamed from one sequential pass over the file
+        if (commandArgs.getTopN() > 0) {
+            printTopN(dnaBTree, commandArgs.getTopN(), commandArgs.getSubsequenceLength());
+        }
+        // Search keys from the query file, if one was given, and write results to the output file
+        if (commandArgs.getQueryFileName() != null) {
+            if (commandArgs.isPlan()) {
+                sequenceCount = searchKeysPlanned(dnaBTree, commandArgs.getQueryFileName(), commandArgs.getSubsequenceLength(), commandArgs.getDebugLevel(), commandArgs.getOutputFileName(), commandArgs.isEcho(), commandArgs.getThreads());
+            } else {
+                sequenceCount = searchKeysFromFile(dnaBTree, commandArgs.getQueryFileName(), commandArgs.getSubsequenceLength(), sequenceCount, commandArgs.getDebugLevel(), commandArgs.getOutputFileName(), commandArgs.isEcho(), commandArgs.getThreads(), commandArgs.getMismatches());
+            }
+        }
+        if (commandArgs.getWarmSetFileName() != null) {
+            dnaBTree.saveWarmSet(commandArgs.getWarmSetFileName());
+        }
+        dnaBTree.close();
         long endTime = System.nanoTime();
         long elapsedTimeInMillis = (endTime - startTime) / 1000000;
 
@@ -46,6 +107,56 @@ public class GeneBankSearchBTree {
             System.out.println("Sub Sequence Length: " + commandArgs.getSubsequenceLength());
             System.out.println("Degree Useded: " + dnaBTree.getDegree());
             System.out.println("Amount of Nodes:" + dnaBTree.getNumberOfNodes());
+            System.out.println("Cache Used: " + commandArgs.isUseCache());
+            System.out.println("Cache Size: " + commandArgs.getCacheSize());
+            System.out.println("Cache Capacity at Exit: " + dnaBTree.getCacheCapacity());
+            System.out.println("Warm Set Nodes Preloaded: " + warmSetNodes);
+            System.out.println("Bloom Filter Loaded: " + bloomFilterLoaded);
+            BTreeStatistics statistics = dnaBTree.getStatistics();
+            System.out.printf("Node Reads per Query: %.2f\n", sequenceCount == 0 ? 0.0 : (double) (statistics.getHits() + statistics.getMisses()) / sequenceCount);
+            dnaBTree.getStatistics().print(System.out);
+            System.out.println("__________________________________________________");
+        } else {
+            System.out.println("Process complete!\n");
+            System.out.println("Time elapsed: " + elapsedTimeInMillis);
+        }
+    }
+
+    /**
+     * Searches a sorted k-mer file written by GeneBankCreateBTree with the hash or sorted engine:
+     * the hash engine loads it into memory, the sorted engine maps it and searches it in place.
+     * @param commandArgs The parsed command line arguments.
+     * @param startTime The time the program started, from System.nanoTime.
+     * @throws Exception Throws an exception if an error occurs while reading the files or searching.
+     */
+    private static void searchKmerFile(GeneBankSearchBTreeArguments commandArgs, long startTime) throws Exception {
+        if (!new File(commandArgs.getBTreeFileName()).exists()) {
+            throw new FileNotFoundException(commandArgs.getBTreeFileName());
+        }
+        int sequenceCount = 0;
+        try (KmerStore store = commandArgs.getEngine().equals("hash")
+                ? new HashKmerStore(commandArgs.getBTreeFileName())
+                : new SortedArrayKmerStore(commandArgs.getBTreeFileName())) {
+            if (commandArgs.getTopN() > 0) {
+                printTopN(store, commandArgs.getTopN(), commandArgs.getSubsequenceLength());
+            }
+            if (commandArgs.getQueryFileName() != null) {
+                if (commandArgs.isPlan()) {
+                    sequenceCount = searchKeysPlanned(store, commandArgs.getQueryFileName(), commandArgs.getSubsequenceLength(), commandArgs.getDebugLevel(), commandArgs.getOutputFileName(), commandArgs.isEcho(), commandArgs.getThreads());
+                } else {
+                    sequenceCount = searchKeysFromFile(store, commandArgs.getQueryFileName(), commandArgs.getSubsequenceLength(), sequenceCount, commandArgs.getDebugLevel(), commandArgs.getOutputFileName(), commandArgs.isEcho(), commandArgs.getThreads(), commandArgs.getMismatches());
+                }
+            }
+        }
+        long elapsedTimeInMillis = (System.nanoTime() - startTime) / 1000000;
+        if (commandArgs.getDebugLevel() == 1) {
+            System.out.println("__________________________________________________\n");
+            System.out.println("                Debug - Analysis                  ");
+            System.out.println("__________________________________________________\n");
+            System.out.println("Engine: " + commandArgs.getEngine());
+            System.out.println("Elapsed time: " + elapsedTimeInMillis + " milliseconds");
+            System.out.println("Number of DNA sequences scanned: " + sequenceCount);
+            System.out.println("Sub Sequence Length: " + commandArgs.getSubsequenceLength());
             System.out.println("__________________________________________________");
         } else {
             System.out.println("Process complete!\n");
@@ -54,69 +165,319 @@ public class GeneBankSearchBTree {
     }
 
     /**
-     * Searches keys from the query file and computes frequencies.
-     * @param bTree The B-tree instance.
+     * Prints the most frequent sequences in the store, one per line with its frequency, most frequent first.
+     * A B-tree is read front to back by its own topN; other engines are scanned into the same bounded heap.
+     * @param store The B-tree or other store.
+     * @param n The number of sequences to print.
+     * @param sequenceLength The length of the DNA sequence.
+     * @throws IOException Throws an exception if an error occurs while reading the store.
+     */
+    private static void printTopN(KmerStore store, int n, int sequenceLength) throws IOException {
+        TreeObject[] top;
+        if (store instanceof BTree) {
+            top = ((BTree) store).topN(n);
+        } else {
+            TopFrequencyHeap heap = new TopFrequencyHeap(n);
+            store.scan(heap::offer);
+            top = heap.drainDescending();
+        }
+        BufferedWriter console = new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16);
+        for (TreeObject entry : top) {
+            console.write(SequenceUtils.longToDnaString(entry.getValue(), sequenceLength) + " " + entry.getFrequency() + "\n");
+        }
+        console.flush();
+    }
+
+    /**
+     * Searches keys from the query file and computes frequencies. The query file is read in batches;
+     * with more than one thread the batches are evaluated on a pool against the shared tree, and the
+     * results are still written in the order of the query file.
+     * @param store The B-tree or other store.
      * @param fileName The name of the query file.
-     * @param out The output writer for debug purposes.
      * @param sequenceLength The length of the DNA sequence.
      * @param sequenceCount The count of DNA sequences.
-     * @throws IOException Throws an IOException if an error occurs while reading the file.
+     * @param debugLevel The debug level; results are only written at level 0.
+     * @param outputFileName The name of the file the results are written to.
+     * @param echo Whether the results are also written to the console.
+     * @param threads The number of threads evaluating batches.
+     * @param mismatches The number of substituted bases a match may have.
+     * @return The number of DNA sequences scanned.
+     * @throws Exception Throws an exception if an error occurs while reading the file or searching.
+     */
+    private static int searchKeysFromFile(KmerStore store, String fileName, int sequenceLength, int sequenceCount, int debugLevel, String outputFileName, boolean echo, int threads, int mismatches) throws Exception {
+        ExecutorService pool = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+        // Batches are read ahead of the writer, but only a few per thread, so memory stays bounded
+        ArrayDeque<QueryBatch> pendingQueries = new ArrayDeque<>();
+        ArrayDeque<Future<long[]>> pendingCounts = new ArrayDeque<>();
+        try (QueryReader reader = new QueryReader(fileName);
+             ResultWriter writer = openResultWriter(outputFileName, echo)) {
+            QueryBatch queries;
+            while ((queries = reader.nextBatch(QUERY_BATCH_SIZE)) != null) {
+                final QueryBatch batch = queries;
+                pendingQueries.add(batch);
+                if (pool != null) {
+                    pendingCounts.add(pool.submit(() -> countBatch(store, batch, sequenceLength, mismatches)));
+                } else {
+                    pendingCounts.add(CompletableFuture.completedFuture(countBatch(store, batch, sequenceLength, mismatches)));
+                }
+                while (pendingCounts.size() > 2 * threads) {
+                    sequenceCount += writeBatch(pendingQueries.remove(), pendingCounts.remove().get(), debugLevel, writer);
+                }
+            }
+            while (!pendingCounts.isEmpty()) {
+                sequenceCount += writeBatch(pendingQueries.remove(), pendingCounts.remove().get(), debugLevel, writer);
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdownNow();
+            }
+        }
+        return sequenceCount;
+    }
+
+    /**
+     * Searches keys from the query file with a plan: every query and its complement are collected,
+     * deduplicated and sorted, so consecutive lookups share their path down the tree and each
+     * distinct key is searched once. The key ranges of queries with IUPAC codes, and of their
+     * complements, are cut into sorted pieces by a RangeSumPlan and summed in the same pass. With
+     * more than one thread the sorted keys and pieces are split into contiguous runs, one per
+     * thread. The results are scattered back to query file order.
+     * @param store The B-tree or other store.
+     * @param fileName The name of the query file.
+     * @param sequenceLength The length of the DNA sequence.
+     * @param debugLevel The debug level; results are only written at level 0.
+     * @param outputFileName The name of the file the results are written to.
+     * @param echo Whether the results are also written to the console.
+     * @param threads The number of threads searching key ranges.
+     * @return The number of DNA sequences scanned.
+     * @throws Exception Throws an exception if an error occurs while reading the file or searching.
      */
-    private static void searchKeysFromFile(BTree bTree, String fileName, int sequenceLength, int sequenceCount, int debugLevel, String btreeFileName) throws IOException {
-        String testFile ="";
-        if(btreeFileName.contains("test0"))
-        {
-            testFile = "test0";
-        }
-        else
-        {
-            testFile = "test5";
-        }
-        Scanner fileScanner = new Scanner(new File(fileName));
-        BufferedWriter writer = new BufferedWriter(new FileWriter("data/queries/query"+sequenceLength+"-"+testFile+".gbk.out"));
-        String dnaSequence = "";
-        long dnaLong = 0;
-        long frequencyCount1 = 0;
-        long frequencyCount2 = 0;
-        long frequencyCount = 0;
-        TreeObject ph = null;
-        // Iterate through each line of the query file
-        while (fileScanner.hasNextLine()) {
-            dnaSequence = fileScanner.nextLine().trim();
-            // Convert DNA sequence to a long value
-            dnaLong = SequenceUtils.dnaStringToLong(dnaSequence);
+    private static int searchKeysPlanned(KmerStore store, String fileName, int sequenceLength, int debugLevel, String outputFileName, boolean echo, int threads) throws Exception {
+        QueryBatch queries;
+        try (QueryReader reader = new QueryReader(fileName)) {
+            queries = reader.nextBatch(Integer.MAX_VALUE);
+        }
+        if (queries == null) {
+            queries = new QueryBatch(0);
+        }
+
+        // Every plain query needs its own key and its complement; an ambiguous query needs the
+        // key ranges it stands for and their complements, runs [rangeFrom[i], rangeTo[i]) of the plan
+        long[] keys = new long[2 * queries.size()];
+        boolean[] ambiguous = new boolean[queries.size()];
+        int[] rangeFrom = new int[queries.size()];
+        int[] rangeTo = new int[queries.size()];
+        RangeSumPlan plan = new RangeSumPlan();
+        int keyCount = 0;
+        for (int i = 0; i < queries.size(); i++) {
+            ambiguous[i] = !queries.isEncoded(i) && SequenceUtils.isAmbiguous(queries.getText(i));
+            if (ambiguous[i]) {
+                long[][] expanded = SequenceUtils.expandIupac(queries.getText(i), MAX_IUPAC_RANGES);
+                long[][] complements = SequenceUtils.getComplementRanges(expanded, sequenceLength);
+                rangeFrom[i] = plan.add(expanded[0], expanded[1]);
+                plan.add(complements[0], complements[1]);
+                rangeTo[i] = plan.size();
+            } else {
+                keys[2 * i] = keyOf(queries, i);
+                keys[2 * i + 1] = SequenceUtils.getComplement(keys[2 * i], sequenceLength);
+                keyCount += 2;
+            }
+        }
+        plan.plan();
+
+        // Sort and dedupe the keys of the plain queries
+        long[] distinct = new long[keyCount];
+        int count = 0;
+        for (int i = 0; i < queries.size(); i++) {
+            if (!ambiguous[i]) {
+                distinct[count++] = keys[2 * i];
+                distinct[count++] = keys[2 * i + 1];
+            }
+        }
+        Arrays.sort(distinct);
+        count = 0;
+        for (int i = 0; i < distinct.length; i++) {
+            if (count == 0 || distinct[count - 1] != distinct[i]) {
+                distinct[count++] = distinct[i];
+            }
+        }
+        long[] sortedKeys = Arrays.copyOf(distinct, count);
+        int keysFound = count;
+        int pieces = plan.getLows().length;
+
+        // Search contiguous runs of keys and pieces, so each thread still walks the tree in key order
+        long[] distinctFrequencies = new long[count];
+        int ranges = Math.max(1, Math.min(threads, Math.max(count, pieces)));
+        ExecutorService pool = ranges > 1 ? Executors.newFixedThreadPool(ranges) : null;
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int r = 0; r < ranges; r++) {
+                int from = (int) ((long) keysFound * r / ranges);
+                int to = (int) ((long) keysFound * (r + 1) / ranges);
+                int pieceFrom = (int) ((long) pieces * r / ranges);
+                int pieceTo = (int) ((long) pieces * (r + 1) / ranges);
+                Runnable search = () -> {
+                    try {
+                        if (from < to) {
+                            long[] found = store.getBatch(Arrays.copyOfRange(sortedKeys, from, to));
+                            System.arraycopy(found, 0, distinctFrequencies, from, found.length);
+                        }
+                        if (pieceFrom < pieceTo) {
+                            plan.setSums(pieceFrom, store.sumRanges(
+                                    Arrays.copyOfRange(plan.getLows(), pieceFrom, pieceTo),
+                                    Arrays.copyOfRange(plan.getHighs(), pieceFrom, pieceTo)));
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                };
+                if (pool != null) {
+                    workers.add(pool.submit(search));
+                } else {
+                    search.run();
+                }
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+
+        // Scatter the results back to query order
+        long[] frequencies = new long[queries.size()];
+        for (int i = 0; i < queries.size(); i++) {
+            if (ambiguous[i]) {
+                frequencies[i] = plan.sumOf(rangeFrom[i], rangeTo[i]);
+            } else {
+                frequencies[i] = distinctFrequencies[Arrays.binarySearch(sortedKeys, keys[2 * i])]
+                        + distinctFrequencies[Arrays.binarySearch(sortedKeys, keys[2 * i + 1])];
+            }
+        }
+
+        try (ResultWriter writer = openResultWriter(outputFileName, echo)) {
+            return writeBatch(queries, frequencies, debugLevel, writer);
+        }
+    }
+
+    /**
+     * Computes the frequency of each query: the count of the sequence plus the count of its complement.
+     * With mismatches allowed, every stored sequence within that many substitutions is counted.
+     * @param store The B-tree or other store.
+     * @param queries The DNA sequences to look up.
+     * @param sequenceLength The length of the DNA sequence.
+     * @param mismatches The number of substituted bases a match may have.
+     * @return The frequency of each query, in the same order.
+     * @throws IOException Throws an IOException if an error occurs while searching.
+     */
+    private static long[] countBatch(KmerStore store, QueryBatch queries, int sequenceLength, int mismatches) throws IOException {
+        long[] frequencies = new long[queries.size()];
+        for (int i = 0; i < queries.size(); i++) {
+            if (!queries.isEncoded(i) && SequenceUtils.isAmbiguous(queries.getText(i))) {
+                if (mismatches > 0) {
+                    throw new IllegalArgumentException("Queries with IUPAC codes cannot be combined with --mismatches: " + queries.getText(i));
+                }
+                frequencies[i] = ambiguousFrequencyOf(store, queries.getText(i), sequenceLength);
+                continue;
+            }
+            long dnaLong = keyOf(queries, i);
+            long complement = SequenceUtils.getComplement(dnaLong, sequenceLength);
             // Search for the DNA sequence and its complement in the B-tree
-            ph = bTree.search(dnaLong);
-            if(ph == null)
-            {
-                frequencyCount1 = 0;
-            }
-            else
-            {
-                frequencyCount1 = bTree.search(dnaLong).getFrequency();
-            }
-            ph = bTree.search(SequenceUtils.getComplement(dnaLong, sequenceLength));
-            if(ph == null)
-            {
-                frequencyCount2 = 0;
-            }
-            else
-            {
-                frequencyCount2  = bTree.search(SequenceUtils.getComplement(dnaLong, sequenceLength)).getFrequency();
-            }
-            // Compute the total frequency count
-            frequencyCount = frequencyCount1 + frequencyCount2;
-            // Write the result to the output file or increment the sequence count
-            if (debugLevel == 0) {
-                writer.write(dnaSequence.toLowerCase() + " " + frequencyCount + "\n");
-                System.out.println(dnaSequence.toLowerCase() + " " + frequencyCount);
+            if (mismatches > 0) {
+                frequencies[i] = store.countWithinDistance(dnaLong, sequenceLength, mismatches) + store.countWithinDistance(complement, sequenceLength, mismatches);
             } else {
-                sequenceCount++;
+                frequencies[i] = store.get(dnaLong) + store.get(complement);
             }
         }
-        // Close the file scanner
-        writer.close();
-        fileScanner.close();
+        return frequencies;
+    }
+
+    /**
+     * Gets the key of an unambiguous query. Plain queries were encoded as they were read; any
+     * other text is converted here, which rejects bases that are not DNA.
+     * @param queries The batch holding the query.
+     * @param i The index of the query.
+     * @return The encoded DNA sequence.
+     */
+    private static long keyOf(QueryBatch queries, int i) {
+        return queries.isEncoded(i) ? queries.getKey(i) : SequenceUtils.dnaStringToLong(queries.getText(i));
+    }
+
+    /**
+     * Computes the frequency of a query written with IUPAC codes: the total count of every sequence
+     * it stands for plus every complement of those. The query is expanded into sorted key ranges,
+     * and the ranges and their complements are merged into one sorted set of pieces, which is
+     * summed in a single batch walk of the store.
+     * @param store The B-tree or other store.
+     * @param query The query, which may use any IUPAC nucleotide code.
+     * @param sequenceLength The length of the DNA sequence.
+     * @return The total frequency of the sequences matching the query and of their complements.
+     * @throws IOException Throws an IOException if an error occurs while searching.
+     */
+    private static long ambiguousFrequencyOf(KmerStore store, String query, int sequenceLength) throws IOException {
+        long[][] ranges = SequenceUtils.expandIupac(query, MAX_IUPAC_RANGES);
+        long[][] complements = SequenceUtils.getComplementRanges(ranges, sequenceLength);
+        RangeSumPlan plan = new RangeSumPlan();
+        plan.add(ranges[0], ranges[1]);
+        plan.add(complements[0], complements[1]);
+        plan.plan();
+        plan.setSums(0, store.sumRanges(plan.getLows(), plan.getHighs()));
+        return plan.sumOf(0, plan.size());
+    }
+
+    /**
+     * Opens the writer for the results, creating the output file's directory if needed.
+     * @param outputFileName The name of the output file.
+     * @param echo Whether the results are also written to the console.
+     * @return The result writer.
+     * @throws IOException Throws an IOException if the output file cannot be created.
+     */
+    private static ResultWriter openResultWriter(String outputFileName, boolean echo) throws IOException {
+        File parent = new File(outputFileName).getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+        return new ResultWriter(new FileOutputStream(outputFileName), echo ? System.out : null);
+    }
+
+    /**
+     * Writes the results of one batch, or only counts them.
+     * @param queries The DNA sequences of the batch.
+     * @param frequencies The frequency of each sequence.
+     * @param debugLevel The debug level; results are only written at level 0.
+     * @param writer The result writer.
+     * @return The number of sequences in the batch.
+     * @throws IOException Throws an IOException if an error occurs while writing.
+     */
+    private static int writeBatch(QueryBatch queries, long[] frequencies, int debugLevel, ResultWriter writer) throws IOException {
+        if (debugLevel == 0) {
+            for (int i = 0; i < queries.size(); i++) {
+                writer.write(queries, i, frequencies[i]);
+            }
+        }
+        return queries.size();
+    }
+
+    /**
+     * Derives the default output file from the B-tree file: the results of
+     * data/files_gbk/test0.gbk.btree.data.6.20 or data/files_gbk/test0.gbk.kmers.data.6 go to
+     * data/queries/query6-test0.gbk.out.
+     * @param BTreeFileName The name of the B-tree file.
+     * @param subsequenceLength The length of the DNA sequence.
+     * @return The name of the output file.
+     */
+    private static String defaultOutputFileName(String BTreeFileName, int subsequenceLength) {
+        String baseName = new File(BTreeFileName).getName();
+        int suffix = baseName.indexOf(".btree.data");
+        if (suffix < 0) {
+            suffix = baseName.indexOf(".kmers.data");
+        }
+        if (suffix > 0) {
+            baseName = baseName.substring(0, suffix);
+        }
+        return "data/queries/query" + subsequenceLength + "-" + baseName + ".out";
     }
 
     /**
@@ -140,7 +501,7 @@ public class GeneBankSearchBTree {
      */
     private static void printUsageAndExit(String errorMessage) {
         System.out.println(errorMessage);
-        System.out.println("Usage: GeneBankSearchBTree --cache=<0|1> --degree=<btree-degree> --btreefile=<b-tree-file> --length=<sequence-length> --queryfile=<query-file> [--cachesize=<n>] [--debug=0|1]");
+        System.out.println("Usage: GeneBankSearchBTree --cache=<0|1> --degree=<btree-degree> --btreefile=<b-tree-file> --length=<sequence-length> --queryfile=<query-file> [--cachesize=<n|bytes|percent%>] [--cacheadaptive=<0|1>] [--debug=0|1] [--cachetype=<heap|offheap>] [--cachepolicy=<lru|clock|2q|arc|tinylfu>] [--readtrace=<trace-file>] [--pinlevels=<n|auto>] [--warmset=<warm-set-file>] [--threads=<n>] [--plan=<0|1>] [--topn=<n>] [--mismatches=<n>] [--outfile=<output-file>] [--echo=<0|1>] [--engine=<btree|hash|sorted>] [--cachesegments=<n>]");
         System.exit(1);
     }
 
@@ -156,8 +517,22 @@ public class GeneBankSearchBTree {
         String BTreeFileName = null;
         int subsequenceLength = 0;
         String queryFileName = null;
-        int cacheSize = 0;
+        String cacheSizeSpec = null;
+        boolean adaptiveCache = false;
+        String warmSetFileName = null;
+        int threads = 1;
+        boolean plan = false;
         int debugLevel = 0;
+        String cacheType = "heap";
+        String cachePolicy = null;
+        String readTraceFileName = null;
+        int pinLevels = 0;
+        int topN = 0;
+        int mismatches = 0;
+        String outputFileName = null;
+        boolean echo = true;
+        String engine = "btree";
+        int cacheSegments = 0; // 0 picks a count from the number of threads
 
         // Parse each argument
         for (String arg : args) {
@@ -170,26 +545,113 @@ public class GeneBankSearchBTree {
             } else if (arg.startsWith("--length=")) {
                 subsequenceLength = Integer.parseInt(arg.substring(9));
             } else if (arg.startsWith("--cachesize=")) {
-                cacheSize = Integer.parseInt(arg.substring(12));
+                cacheSizeSpec = arg.substring(12);
+            } else if (arg.startsWith("--cacheadaptive=")) {
+                adaptiveCache = Integer.parseInt(arg.substring(16)) == 1;
             } else if (arg.startsWith("--debug=")) {
                 debugLevel = Integer.parseInt(arg.substring(8));
             } else if (arg.startsWith("--queryfile=")) {
                 queryFileName = arg.substring(12);
+            } else if (arg.startsWith("--cachetype=")) {
+                cacheType = arg.substring(12);
+            } else if (arg.startsWith("--cachepolicy=")) {
+                cachePolicy = arg.substring(14).toLowerCase();
+            } else if (arg.startsWith("--readtrace=")) {
+                readTraceFileName = arg.substring(12);
+            } else if (arg.startsWith("--plan=")) {
+                plan = Integer.parseInt(arg.substring(7)) == 1;
+            } else if (arg.startsWith("--threads=")) {
+                threads = Integer.parseInt(arg.substring(10));
+            } else if (arg.startsWith("--warmset=")) {
+                warmSetFileName = arg.substring(10);
+            } else if (arg.startsWith("--mismatches=")) {
+                mismatches = Integer.parseInt(arg.substring(13));
+            } else if (arg.startsWith("--outfile=")) {
+                outputFileName = arg.substring(10);
+            } else if (arg.startsWith("--echo=")) {
+                echo = Integer.parseInt(arg.substring(7)) == 1;
+            } else if (arg.startsWith("--topn=")) {
+                topN = Integer.parseInt(arg.substring(7));
+            } else if (arg.startsWith("--pinlevels=")) {
+                String levels = arg.substring(12);
+                pinLevels = levels.equals("auto") ? -1 : Integer.parseInt(levels);
+            } else if (arg.startsWith("--engine=")) {
+                engine = arg.substring(9).toLowerCase();
+            } else if (arg.startsWith("--cachesegments=")) {
+                cacheSegments = Integer.parseInt(arg.substring(16));
             } else {
                 throw new ParseArgumentException("Invalid Argument: " + arg);
             }
         }
 
         // Validate required arguments
-        if (BTreeFileName == null || subsequenceLength == 0 || queryFileName == null) {
+        if (BTreeFileName == null || subsequenceLength == 0 || (queryFileName == null && topN == 0)) {
             throw new ParseArgumentException("Missing required arguments: btreefile, length, or queryfile");
         }
 
         // Validate optional arguments
+        if (!cacheType.equals("heap") && !cacheType.equals("offheap")) {
+            throw new ParseArgumentException("Cache type must be heap or offheap");
+        }
+        // Object caches default to LRU; page caches default to CLOCK, which keeps no per-entry objects
+        if (cachePolicy == null) {
+            cachePolicy = cacheType.equals("offheap") ? "clock" : "lru";
+        }
+        if (!cachePolicy.matches("lru|clock|2q|arc|tinylfu")) {
+            throw new ParseArgumentException("Cache policy must be lru, clock, 2q, arc or tinylfu");
+        }
+
+        // Byte and percentage sizes depend on what one node costs in the chosen cache
+        int cacheSize = 0;
+        if (cacheSizeSpec != null) {
+            boolean offHeap = cacheType.equals("offheap");
+            int nodeDegree = degree == 0 ? 85 : degree;
+            int nodeBytes = offHeap ? BTree.getNodeDiskSize(nodeDegree) : BTree.getNodeHeapSize(nodeDegree);
+            long memoryLimit = offHeap ? CacheBudget.maxDirectMemory() : CacheBudget.maxHeapMemory();
+            try {
+                cacheSize = CacheBudget.toNodeCount(cacheSizeSpec, nodeBytes, memoryLimit);
+            } catch (IllegalArgumentException e) {
+                throw new ParseArgumentException("Invalid cache size: " + cacheSizeSpec);
+            }
+        }
         if (useCache && cacheSize < 100) {
-            throw new ParseArgumentException("Cache size must be specified when using cache. Cache size should be >=100");
+            throw new ParseArgumentException("Cache size must be specified when using cache. Cache size should hold at least 100 nodes");
+        }
+        if (adaptiveCache && cacheType.equals("offheap")) {
+            throw new ParseArgumentException("Adaptive cache sizing requires --cachetype=heap");
+        }
+        if (threads < 1) {
+            throw new ParseArgumentException("Number of threads must be at least 1");
+        }
+        if (cacheSegments < 0) {
+            throw new ParseArgumentException("Number of cache segments must not be negative");
+        }
+        if (cacheSegments == 0) {
+            cacheSegments = CacheBudget.defaultSegmentCount(threads);
+        }
+        if (mismatches < 0 || mismatches > subsequenceLength) {
+            throw new ParseArgumentException("Mismatches must be between 0 and the sequence length");
+        }
+        if (mismatches > 0 && plan) {
+            throw new ParseArgumentException("--plan searches exact matches only and cannot be combined with --mismatches");
+        }
+        if (topN < 0) {
+            throw new ParseArgumentException("Top-N count must not be negative");
+        }
+        if (warmSetFileName != null && !useCache) {
+            throw new ParseArgumentException("A warm set requires --cache=1");
+        }
+        if (!engine.matches("btree|hash|sorted")) {
+            throw new ParseArgumentException("Engine must be btree, hash or sorted");
+        }
+        // The cache, pinning and mismatch search all work on B-tree nodes
+        if (!engine.equals("btree") && (useCache || adaptiveCache || pinLevels != 0 || warmSetFileName != null || readTraceFileName != null)) {
+            throw new ParseArgumentException("--cache, --cacheadaptive, --pinlevels, --warmset and --readtrace require --engine=btree");
+        }
+        if (outputFileName == null) {
+            outputFileName = defaultOutputFileName(BTreeFileName, subsequenceLength);
         }
 
-        return new GeneBankSearchBTreeArguments(useCache, degree, BTreeFileName, subsequenceLength, queryFileName, cacheSize, debugLevel);
+        return new GeneBankSearchBTreeArguments(useCache, degree, BTreeFileName, subsequenceLength, queryFileName, cacheSize, debugLevel, cacheType, cachePolicy, readTraceFileName, pinLevels, adaptiveCache, warmSetFileName, threads, plan, topN, mismatches, outputFileName, echo, engine, cacheSegments);
     }
 }
\ No newline at end of file
@@ -13,6 +13,20 @@ public class GeneBankSearchBTreeArguments {
     private final String queryFileName;
     private final int cacheSize;
     private final int debugLevel;
+    private final String cacheType;
+    private final String cachePolicy;
+    private final String readTraceFileName;
+    private final int pinLevels;
+    private final boolean adaptiveCache;
+    private final String warmSetFileName;
+    private final int threads;
+    private final boolean plan;
+    private final int topN;
+    private final int mismatches;
+    private final String outputFileName;
+    private final boolean echo;
+    private final String engine;
+    private final int cacheSegments;
 
     /**
      * Constructor for GeneBankSearchBTreeArguments class.
@@ -25,6 +39,34 @@ public class GeneBankSearchBTreeArguments {
      * @param debugLevel Debugging level.
      */
     public GeneBankSearchBTreeArguments(boolean useCache, int degree, String BTreeFileName, int subsequenceLength, String queryFileName, int cacheSize, int debugLevel) {
+        this(useCache, degree, BTreeFileName, subsequenceLength, queryFileName, cacheSize, debugLevel, "heap", "lru", null, 0, false, null, 1, false, 0, 0, null, true, "btree", 1);
+    }
+
+    /**
+     * Constructor for GeneBankSearchBTreeArguments class.
+     * @param useCache Whether to use cache or not.
+     * @param degree Degree of the B-tree.
+     * @param BTreeFileName Name of the B-tree file.
+     * @param subsequenceLength Length of the DNA subsequence.
+     * @param queryFileName Name of the query file.
+     * @param cacheSize Size of the cache.
+     * @param debugLevel Debugging level.
+     * @param cacheType Where cached nodes live: "heap" for node objects, "offheap" for serialized pages.
+     * @param cachePolicy Eviction policy of the cache: lru, clock, 2q, arc or tinylfu.
+     * @param readTraceFileName File recording every node read for CacheTraceBenchmark, or null for no trace.
+     * @param pinLevels Number of upper tree levels kept resident, 0 for none, or -1 to size from the tree height.
+     * @param adaptiveCache Whether the cache grows and shrinks with its hit ratio, using cacheSize as the ceiling.
+     * @param warmSetFileName File holding the cached node addresses between runs, or null to start with a cold cache.
+     * @param threads Number of threads evaluating query batches.
+     * @param plan Whether queries are deduplicated and searched in sorted key order before the results are written in query order.
+     * @param topN The number of most frequent sequences to print, or 0 to skip the top-N report.
+     * @param mismatches The number of substituted bases a match may have, 0 for exact matches only.
+     * @param outputFileName Name of the file the results are written to.
+     * @param echo Whether results are also written to the console.
+     * @param engine Storage engine of the index file: btree, hash or sorted.
+     * @param cacheSegments Number of lock segments the node cache is striped into.
+     */
+    public GeneBankSearchBTreeArguments(boolean useCache, int degree, String BTreeFileName, int subsequenceLength, String queryFileName, int cacheSize, int debugLevel, String cacheType, String cachePolicy, String readTraceFileName, int pinLevels, boolean adaptiveCache, String warmSetFileName, int threads, boolean plan, int topN, int mismatches, String outputFileName, boolean echo, String engine, int cacheSegments) {
         this.useCache = useCache;
         this.degree = degree;
         this.BTreeFileName = BTreeFileName;
@@ -32,6 +74,20 @@ public class GeneBankSearchBTreeArguments {
         this.queryFileName = queryFileName;
         this.cacheSize = cacheSize;
         this.debugLevel = debugLevel;
+        this.cacheType = cacheType;
+        this.cachePolicy = cachePolicy;
+        this.readTraceFileName = readTraceFileName;
+        this.pinLevels = pinLevels;
+        this.adaptiveCache = adaptiveCache;
+        this.warmSetFileName = warmSetFileName;
+        this.threads = threads;
+        this.plan = plan;
+        this.topN = topN;
+        this.mismatches = mismatches;
+        this.outputFileName = outputFileName;
+        this.echo = echo;
+        this.engine = engine;
+        this.cacheSegments = cacheSegments;
     }
     
     /**
@@ -58,6 +114,9 @@ public class GeneBankSearchBTreeArguments {
         if (debugLevel != other.debugLevel) {
             return false;
         }
+        if (pinLevels != other.pinLevels) {
+            return false;
+        }
         if (degree != other.degree) {
             return false;
         }
@@ -78,6 +137,69 @@ public class GeneBankSearchBTreeArguments {
         } else if (!queryFileName.equals(other.queryFileName)) {
             return false;
         }
+        if (cacheType == null) {
+            if (other.cacheType != null) {
+                return false;
+            }
+        } else if (!cacheType.equals(other.cacheType)) {
+            return false;
+        }
+        if (cachePolicy == null) {
+            if (other.cachePolicy != null) {
+                return false;
+            }
+        } else if (!cachePolicy.equals(other.cachePolicy)) {
+            return false;
+        }
+        if (readTraceFileName == null) {
+            if (other.readTraceFileName != null) {
+                return false;
+            }
+        } else if (!readTraceFileName.equals(other.readTraceFileName)) {
+            return false;
+        }
+        if (adaptiveCache != other.adaptiveCache) {
+            return false;
+        }
+        if (warmSetFileName == null) {
+            if (other.warmSetFileName != null) {
+                return false;
+            }
+        } else if (!warmSetFileName.equals(other.warmSetFileName)) {
+            return false;
+        }
+        if (threads != other.threads) {
+            return false;
+        }
+        if (plan != other.plan) {
+            return false;
+        }
+        if (topN != other.topN) {
+            return false;
+        }
+        if (mismatches != other.mismatches) {
+            return false;
+        }
+        if (outputFileName == null) {
+            if (other.outputFileName != null) {
+                return false;
+            }
+        } else if (!outputFileName.equals(other.outputFileName)) {
+            return false;
+        }
+        if (echo != other.echo) {
+            return false;
+        }
+        if (engine == null) {
+            if (other.engine != null) {
+                return false;
+            }
+        } else if (!engine.equals(other.engine)) {
+            return false;
+        }
+        if (cacheSegments != other.cacheSegments) {
+            return false;
+        }
         return useCache == other.useCache;
     }
 
@@ -96,6 +218,20 @@ public class GeneBankSearchBTreeArguments {
                 ", queryFileName='" + queryFileName + '\'' +
                 ", cacheSize=" + cacheSize +
                 ", debugLevel=" + debugLevel +
+                ", cacheType='" + cacheType + '\'' +
+                ", cachePolicy='" + cachePolicy + '\'' +
+                ", readTraceFileName='" + readTraceFileName + '\'' +
+                ", pinLevels=" + pinLevels +
+                ", adaptiveCache=" + adaptiveCache +
+                ", warmSetFileName='" + warmSetFileName + '\'' +
+                ", threads=" + threads +
+                ", plan=" + plan +
+                ", topN=" + topN +
+                ", mismatches=" + mismatches +
+                ", outputFileName='" + outputFileName + '\'' +
+                ", echo=" + echo +
+                ", engine='" + engine + '\'' +
+                ", cacheSegments=" + cacheSegments +
                 '}';
     }
 
@@ -154,4 +290,116 @@ public class GeneBankSearchBTreeArguments {
     public int getDebugLevel() {
         return debugLevel;
     }
+
+    /**
+     * Gets the value of the cacheType field.
+     * @return The value of the cacheType field.
+     */
+    public String getCacheType() {
+        return cacheType;
+    }
+
+    /**
+     * Gets the value of the cachePolicy field.
+     * @return The value of the cachePolicy field.
+     */
+    public String getCachePolicy() {
+        return cachePolicy;
+    }
+
+    /**
+     * Gets the value of the readTraceFileName field.
+     * @return The value of the readTraceFileName field.
+     */
+    public String getReadTraceFileName() {
+        return readTraceFileName;
+    }
+
+    /**
+     * Gets the value of the pinLevels field.
+     * @return The value of the pinLevels field.
+     */
+    public int getPinLevels() {
+        return pinLevels;
+    }
+
+    /**
+     * Gets the value of the adaptiveCache field.
+     * @return The value of the adaptiveCache field.
+     */
+    public boolean isAdaptiveCache() {
+        return adaptiveCache;
+    }
+
+    /**
+     * Gets the value of the warmSetFileName field.
+     * @return The value of the warmSetFileName field.
+     */
+    public String getWarmSetFileName() {
+        return warmSetFileName;
+    }
+
+    /**
+     * Gets the value of the threads field.
+     * @return The value of the threads field.
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Gets the value of the plan field.
+     * @return The value of the plan field.
+     */
+    public boolean isPlan() {
+        return plan;
+    }
+
+    /**
+     * Gets the value of the topN field.
+     * @return The value of the topN field.
+     */
+    public int getTopN() {
+        return topN;
+    }
+
+    /**
+     * Gets the value of the mismatches field.
+     * @return The value of the mismatches field.
+     */
+    public int getMismatches() {
+        return mismatches;
+    }
+
+    /**
+     * Gets the value of the outputFileName field.
+     * @return The value of the outputFileName field.
+     */
+    public String getOutputFileName() {
+        return outputFileName;
+    }
+
+    /**
+     * Gets the value of the echo field.
+     * @return The value of the echo field.
+     */
+    public boolean isEcho() {
+        return echo;
+    }
+
+    /**
+     * Gets the value of the engine field.
+     * @return The value of the engine field.
+     */
+    public String getEngine() {
+        return engine;
+    }
+
+    /**
+     * Gets the value of the cacheSegments field.
+     * @return The value of the cacheSegments field.
+     */
+    public int getCacheSegments() {
+        return cacheSegments;
+    }
 }
@@ -1,24 +1,43 @@
 package cs321.search;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.HashMap;
-import java.util.Map;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import cs321.common.ParseArgumentException;
+import cs321.create.BTreeDatabaseExporter;
+import cs321.create.SequenceUtils;
 
 /**
  * GeneBankSearchDatabase class performs sequence frequency search in a database based on provided query files.
+ * The database is written by GeneBankCreateBTree --database, which stores each sequence as its encoded
+ * key in an INTEGER PRIMARY KEY column, so each lookup is a single index probe.
  */
 public class GeneBankSearchDatabase {
+    private static final int QUERY_BATCH_SIZE = 4096;
+    private static final int IN_LIST_SIZE = 500; // keys bound per IN list, below SQLite's older 999-variable limit
+    private static final String SQLITE_OPEN_READONLY = "1"; // open_mode flags of the SQLite JDBC driver
+    private static final String POINT_SQL = "SELECT freq FROM " + BTreeDatabaseExporter.TABLE_NAME + " WHERE key = ?";
+    private static final String IN_LIST_SQL = "SELECT key, freq FROM " + BTreeDatabaseExporter.TABLE_NAME
+            + " WHERE key IN (?" + ", ?".repeat(IN_LIST_SIZE - 1) + ")";
     
     /**
      * Main method of the GeneBankSearchDatabase program.
@@ -28,104 +47,206 @@ public class GeneBankSearchDatabase {
         GeneBankSearchDatabaseArguments arguments = parseArgumentsAndHandleExceptions(args);
 
         try {
-            Map<String, Integer> frequencyMap = calculateSequenceFrequencies("jdbc:sqlite:" + arguments.databasePath, arguments.queryFilePath);
-            writeResultsToFile(frequencyMap);
-        } catch (SQLException | IOException e) {
+            searchDatabase("jdbc:sqlite:" + arguments.getDataBasePath(), arguments.getQueryFileName(), "results.txt", arguments.isBatch(), arguments.getThreads());
+        } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
     /**
-     * Calculates the frequency of sequences from the query file in the database.
+     * Looks up the frequency of every sequence in the query file, plus that of its complement, and
+     * writes the results in query file order. In batch mode each batch of queries is resolved with
+     * a few IN-list statements over its distinct keys instead of two lookups per query. With more
+     * than one thread, batches are handed to a fixed pool of read-only connections, each with its
+     * own prepared statement, and the results are still written in query file order.
      * @param databaseUrl URL of the database.
      * @param queryFilePath Path to the query file.
-     * @return A map containing sequence and its frequency.
-     * @throws SQLException If an SQL exception occurs.
+     * @param outputFileName Name of the file the results are written to.
+     * @param batch Whether to resolve queries in batches.
+     * @param threads The number of connections querying in parallel.
+     * @return The number of sequences searched.
+     * @throws Exception If an SQL or I/O error occurs, or a query is invalid.
+     */
+    private static int searchDatabase(String databaseUrl, String queryFilePath, String outputFileName, boolean batch, int threads)
+        throws Exception {
+        int sequenceCount = 0;
+        List<Connection> connections = new ArrayList<>();
+        BlockingQueue<PreparedStatement> lookups = new ArrayBlockingQueue<>(threads);
+        ExecutorService pool = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+        // Batches are read ahead of the writer, but only a few per thread, so memory stays bounded
+        ArrayDeque<QueryBatch> pendingQueries = new ArrayDeque<>();
+        ArrayDeque<Future<long[]>> pendingCounts = new ArrayDeque<>();
+        try (QueryReader reader = new QueryReader(queryFilePath);
+            ResultWriter writer = new ResultWriter(new FileOutputStream(outputFileName), null)) {
+            // WAL lets any number of read-only connections read at once
+            Properties readOnly = new Properties();
+            readOnly.setProperty("open_mode", SQLITE_OPEN_READONLY);
+            for (int i = 0; i < threads; i++) {
+                Connection connection = DriverManager.getConnection(databaseUrl, readOnly);
+                connections.add(connection);
+                lookups.add(connection.prepareStatement(batch ? IN_LIST_SQL : POINT_SQL));
+            }
+            int sequenceLength = getSequenceLength(connections.get(0));
+            QueryBatch queries;
+            while ((queries = reader.nextBatch(QUERY_BATCH_SIZE)) != null) {
+                final QueryBatch pending = queries;
+                pendingQueries.add(pending);
+                Callable<long[]> count = () -> {
+                    // Search the database with each sequence and its complement
+                    long[] keys = encodeBatch(pending, sequenceLength);
+                    PreparedStatement lookup = lookups.take();
+                    try {
+                        return batch ? lookupInLists(lookup, keys) : lookupEach(lookup, keys);
+                    } finally {
+                        lookups.add(lookup);
+                    }
+                };
+                if (pool != null) {
+                    pendingCounts.add(pool.submit(count));
+                } else {
+                    pendingCounts.add(CompletableFuture.completedFuture(count.call()));
+                }
+                while (pendingCounts.size() > 2 * threads) {
+                    sequenceCount += writeBatch(pendingQueries.remove(), getCounts(pendingCounts.remove()), writer);
+                }
+            }
+            while (!pendingCounts.isEmpty()) {
+                sequenceCount += writeBatch(pendingQueries.remove(), getCounts(pendingCounts.remove()), writer);
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdownNow();
+            }
+            for (Connection connection : connections) {
+                connection.close();
+            }
+        }
+        return sequenceCount;
+    }
+
+    /**
+     * Waits for the frequencies of a batch, rethrowing the error of a failed lookup as it was thrown.
+     * @param counts The pending frequencies.
+     * @return The frequencies.
+     * @throws Exception The error the lookup failed with.
+     */
+    private static long[] getCounts(Future<long[]> counts) throws Exception {
+        try {
+            return counts.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    /**
+     * Writes the results of one batch.
+     * @param queries The DNA sequences of the batch.
+     * @param frequencies Two frequencies per query: the sequence and its complement.
+     * @param writer The result writer.
+     * @return The number of sequences in the batch.
      * @throws IOException If an I/O exception occurs.
      */
-    private static Map<String, Integer> calculateSequenceFrequencies(String databaseUrl, String queryFilePath)
-        throws SQLException, IOException {
-        Map<String, Integer> frequencyMap = new HashMap<>();
-
-        try (Connection connection = DriverManager.getConnection(databaseUrl);
-            BufferedReader reader = new BufferedReader(new FileReader(queryFilePath))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                line = line.toLowerCase();
-                // Search the database with each line of the query file
-                int totalFrequency = getSequenceFrequency(connection, line.trim()) + getSequenceFrequency(connection, getComplementarySequence(line.trim()));
-                frequencyMap.put(line.trim(), totalFrequency);
+    private static int writeBatch(QueryBatch queries, long[] frequencies, ResultWriter writer) throws IOException {
+        for (int i = 0; i < queries.size(); i++) {
+            writer.write(queries, i, frequencies[2 * i] + frequencies[2 * i + 1]);
+        }
+        return queries.size();
+    }
+
+    /**
+     * Encodes a batch of queries for lookup.
+     * @param queries The batch of queries.
+     * @param sequenceLength The sequence length of the database, or 0 if it does not record one.
+     * @return Two keys per query: the sequence at 2 * i and its complement at 2 * i + 1.
+     * @throws IllegalArgumentException If a query is not DNA or not of the database's sequence length.
+     */
+    private static long[] encodeBatch(QueryBatch queries, int sequenceLength) {
+        long[] keys = new long[2 * queries.size()];
+        for (int i = 0; i < queries.size(); i++) {
+            if (sequenceLength != 0 && queries.getLength(i) != sequenceLength) {
+                throw new IllegalArgumentException("Query " + queries.getText(i) + " is not of the database's sequence length " + sequenceLength);
             }
+            keys[2 * i] = queries.isEncoded(i) ? queries.getKey(i) : SequenceUtils.dnaStringToLong(queries.getText(i));
+            keys[2 * i + 1] = SequenceUtils.getComplement(keys[2 * i], queries.getLength(i));
         }
-        return frequencyMap;
+        return keys;
     }
 
     /**
-     * Retrieves the frequency of a sequence from the database.
-     * @param connection Connection to the database.
-     * @param sequence The sequence to search for.
-     * @return The frequency of the sequence.
+     * Looks up each key with its own execution of the prepared primary key lookup.
+     * @param lookup The prepared statement for POINT_SQL.
+     * @param keys The keys to look up.
+     * @return The frequency of each key, in the same order.
      * @throws SQLException If an SQL exception occurs.
      */
-    static int getSequenceFrequency(Connection connection, String sequence) throws SQLException {
-        String sql = "SELECT SUBSTR(line, ?) AS number FROM dataset WHERE line LIKE ?";
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
-            statement.setInt(1, sequence.length() + 2); // Offset to skip the sequence and space
-            statement.setString(2, sequence + " %"); // Search pattern with wildcard
-    
-            try (ResultSet resultSet = statement.executeQuery()) {
-                if (resultSet.next()) {
-                    String numberString = resultSet.getString("number");
-                    if (numberString != null && !numberString.isEmpty()) {
-                        // Convert the retrieved number string to an integer
-                        return Integer.parseInt(numberString.trim());
-                    }
+    private static long[] lookupEach(PreparedStatement lookup, long[] keys) throws SQLException {
+        long[] frequencies = new long[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            frequencies[i] = getSequenceFrequency(lookup, keys[i]);
+        }
+        return frequencies;
+    }
+
+    /**
+     * Looks up a set of keys with IN lists. The distinct keys are sorted and bound IN_LIST_SIZE at
+     * a time to the same prepared statement, padding the last list by repeating its final key, and
+     * the rows found are scattered back to the order of the keys.
+     * @param lookup The prepared statement for IN_LIST_SQL.
+     * @param keys The keys to look up, in any order and with repeats.
+     * @return The frequency of each key, in the same order.
+     * @throws SQLException If an SQL exception occurs.
+     */
+    private static long[] lookupInLists(PreparedStatement lookup, long[] keys) throws SQLException {
+        long[] distinct = keys.clone();
+        Arrays.sort(distinct);
+        int count = 0;
+        for (int i = 0; i < distinct.length; i++) {
+            if (count == 0 || distinct[count - 1] != distinct[i]) {
+                distinct[count++] = distinct[i];
+            }
+        }
+        long[] distinctFrequencies = new long[count];
+        for (int from = 0; from < count; from += IN_LIST_SIZE) {
+            for (int i = 0; i < IN_LIST_SIZE; i++) {
+                lookup.setLong(i + 1, distinct[Math.min(from + i, count - 1)]);
+            }
+            try (ResultSet resultSet = lookup.executeQuery()) {
+                while (resultSet.next()) {
+                    distinctFrequencies[Arrays.binarySearch(distinct, 0, count, resultSet.getLong(1))] = resultSet.getLong(2);
                 }
-                return 0; // Sequence not found or number string is empty
             }
         }
+        long[] frequencies = new long[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            frequencies[i] = distinctFrequencies[Arrays.binarySearch(distinct, 0, count, keys[i])];
+        }
+        return frequencies;
     }
 
     /**
-     * Generates the complementary sequence of a given DNA sequence.
-     * @param sequence The DNA sequence.
-     * @return The complementary sequence.
+     * Reads the sequence length the exporter stored as the database's user_version.
+     * @param connection Connection to the database.
+     * @return The sequence length, or 0 if the database does not record one.
+     * @throws SQLException If an SQL exception occurs.
      */
-    private static String getComplementarySequence(String sequence) {
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < sequence.length(); i++) {
-            char c = sequence.charAt(i);
-            switch (c) {
-                case 'a':
-                    sb.append('t');
-                    break;
-                case 'c':
-                    sb.append('g');
-                    break;
-                case 'g':
-                    sb.append('c');
-                    break;
-                case 't':
-                    sb.append('a');
-                    break;
-                default:
-                    sb.append(c);
-            }
+    private static int getSequenceLength(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+            ResultSet resultSet = statement.executeQuery("PRAGMA user_version")) {
+            return resultSet.next() ? resultSet.getInt(1) : 0;
         }
-        return sb.toString();
     }
 
     /**
-     * Writes the frequency results to a file.
-     * @param frequencyMap A map containing sequence and its frequency.
-     * @throws IOException If an I/O exception occurs.
+     * Retrieves the frequency of a sequence from the database.
+     * @param lookup The prepared primary key lookup, reused for every sequence.
+     * @param key The encoded sequence to search for.
+     * @return The frequency of the sequence, or 0 if it is not in the database.
+     * @throws SQLException If an SQL exception occurs.
      */
-    private static void writeResultsToFile(Map<String, Integer> frequencyMap) throws IOException {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter("results.txt"))) {
-            for (Map.Entry<String, Integer> entry : frequencyMap.entrySet()) {
-                writer.write(entry.getKey() + " " + entry.getValue());
-                writer.newLine();
-            }
+    static long getSequenceFrequency(PreparedStatement lookup, long key) throws SQLException {
+        lookup.setLong(1, key);
+        try (ResultSet resultSet = lookup.executeQuery()) {
+            return resultSet.next() ? resultSet.getLong(1) : 0;
         }
     }
 
@@ -149,7 +270,7 @@ public class GeneBankSearchDatabase {
      * @param errorMessage The error message to display.
      */
     private static void printUsageAndExit(String errorMessage) {
-        System.out.println("Usage: GeneBankSearchDatabase --database=<database-path> --queryfile=<query-file-path>");
+        System.out.println("Usage: GeneBankSearchDatabase --database=<database-path> --queryfile=<query-file-path> [--batch=<0|1>] [--threads=<n>]");
         System.exit(1);
     }
 
@@ -162,12 +283,18 @@ public class GeneBankSearchDatabase {
     private static GeneBankSearchDatabaseArguments parseArguments(String[] args) throws ParseArgumentException {
         String databasePath = null;
         String queryFilePath = null;
+        boolean batch = true;
+        int threads = 1;
 
         for (String arg : args) {
             if (arg.startsWith("--database=")) {
                 databasePath = arg.substring(11);
             } else if (arg.startsWith("--queryfile=")) {
                 queryFilePath = arg.substring(12);
+            } else if (arg.startsWith("--batch=")) {
+                batch = Integer.parseInt(arg.substring(8)) == 1;
+            } else if (arg.startsWith("--threads=")) {
+                threads = Integer.parseInt(arg.substring(10));
             } else {
                 throw new ParseArgumentException("Invalid Argument: " + arg);
             }
@@ -177,24 +304,10 @@ public class GeneBankSearchDatabase {
             throw new ParseArgumentException("Missing required arguments: database or queryfile");
         }
 
-        return new GeneBankSearchDatabaseArguments(databasePath, queryFilePath);
-    }
-
-    /**
-     * Represents the command-line arguments for GeneBankSearchDatabase program.
-     */
-    private static class GeneBankSearchDatabaseArguments {
-        private final String databasePath;
-        private final String queryFilePath;
-
-        /**
-         * Constructor for GeneBankSearchDatabaseArguments class.
-         * @param databasePath Path to the database.
-         * @param queryFilePath Path to the query file.
-         */
-        public GeneBankSearchDatabaseArguments(String databasePath, String queryFilePath) {
-            this.databasePath = databasePath;
-            this.queryFilePath = queryFilePath;
+        if (threads < 1) {
+            throw new ParseArgumentException("Number of threads must be at least 1");
         }
+
+        return new GeneBankSearchDatabaseArguments(databasePath, queryFilePath, batch, threads);
     }
-}
\ No newline at end of file
+}
@@ -8,15 +8,21 @@ import cs321.common.ParseArgumentException;
 public class GeneBankSearchDatabaseArguments {
     private final String dataBasePath;
     private final String queryFileName;
+    private final boolean batch;
+    private final int threads;
 
     /**
      * Constructor for GeneBankSearchDatabaseArguments class.
      * @param dataBasePath Path to the database.
      * @param queryFileName Path to the query file.
+     * @param batch Whether queries are resolved in batches with IN lists rather than one lookup each.
+     * @param threads Number of read-only connections querying the database in parallel.
      */
-    public GeneBankSearchDatabaseArguments(String dataBasePath, String queryFileName) {
+    public GeneBankSearchDatabaseArguments(String dataBasePath, String queryFileName, boolean batch, int threads) {
         this.dataBasePath = dataBasePath;
         this.queryFileName = queryFileName;
+        this.batch = batch;
+        this.threads = threads;
     }
     
     /**
@@ -55,6 +61,12 @@ public class GeneBankSearchDatabaseArguments {
                 return false;
             }
         }
+        if (batch != other.batch) {
+            return false;
+        }
+        if (threads != other.threads) {
+            return false;
+        }
         return true;
     }
 
@@ -68,6 +80,8 @@ public class GeneBankSearchDatabaseArguments {
         return "GeneBankSearchDatabaseArguments{" +
                 "dataBasePath='" + dataBasePath + '\'' +
                 ", queryFileName='" + queryFileName + '\'' +
+                ", batch=" + batch +
+                ", threads=" + threads +
                 '}';
     }
 
@@ -86,4 +100,20 @@ public class GeneBankSearchDatabaseArguments {
     public String getQueryFileName() {
         return queryFileName;
     }
-}
\ No newline at end of file
+
+    /**
+     * Gets whether queries are resolved in batches.
+     * @return True if queries are resolved in batches with IN lists.
+     */
+    public boolean isBatch() {
+        return batch;
+    }
+
+    /**
+     * Gets the number of connections querying the database in parallel.
+     * @return The number of threads.
+     */
+    public int getThreads() {
+        return threads;
+    }
+}
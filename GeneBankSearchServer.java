@@ -0,0 +1,411 @@
+package cs321.search;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import cs321.btree.BTree;
+import cs321.btree.CacheBudget;
+import cs321.common.ParseArgumentException;
+import cs321.create.SequenceUtils;
+
+/**
+ * GeneBankSearchServer keeps one or more B-tree files open and answers k-mer lookups over a
+ * loopback socket, so that many small query batches share one JVM and one warm cache instead of
+ * each paying for startup and a cold cache.
+ *
+ * The protocol is line based. A client sends a batch as one DNA sequence per line, ended by an
+ * empty line; the server answers with one "sequence frequency" line per query, in order, ended by
+ * an empty line. As in GeneBankSearchBTree the frequency counts the sequence and its complement.
+ * Each query goes to the tree built for its length. A batch with an invalid query is answered
+ * with a single "ERROR message" line instead. The commands STATS (latency percentiles and cache
+ * hit ratios, ended by an empty line), QUIT (close the connection) and SHUTDOWN (stop the server)
+ * may be sent between batches.
+ */
+public class GeneBankSearchServer {
+    private static final int DEFAULT_PORT = 8321;
+    private static final int MAX_SEQUENCE_LENGTH = 31;
+    // Tree files are named <gbk-file>.btree.data.<sequence-length>.<degree> by GeneBankCreateBTree
+    private static final Pattern BTREE_FILE_NAME = Pattern.compile(".*\\.btree\\.data\\.(\\d+)\\.(\\d+)$");
+    private static final Pattern SEQUENCE = Pattern.compile("[acgtACGT]+");
+
+    private final BTree[] trees = new BTree[MAX_SEQUENCE_LENGTH + 1]; // indexed by sequence length
+    private final String[] treeFileNames = new String[MAX_SEQUENCE_LENGTH + 1];
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final LongAdder sequencesServed = new LongAdder();
+    private final ServerSocket serverSocket;
+    private final ExecutorService connections;
+
+    /**
+     * Main method of the GeneBankSearchServer program.
+     * @param args Command-line arguments.
+     * @throws Exception Throws an exception if a tree cannot be opened or the server cannot listen.
+     */
+    public static void main(String[] args) throws Exception {
+        GeneBankSearchServerArguments commandArgs = parseArgumentsAndHandleExceptions(args);
+        GeneBankSearchServer server = new GeneBankSearchServer(commandArgs);
+        System.out.println("Listening on " + server.serverSocket.getInetAddress().getHostAddress() + ":" + server.serverSocket.getLocalPort());
+        server.serve();
+        server.printSummary();
+    }
+
+    /**
+     * Opens every tree and binds the loopback socket.
+     * @param commandArgs The parsed command-line arguments.
+     * @throws IOException Throws an IOException if a tree cannot be opened or the port cannot be bound.
+     */
+    public GeneBankSearchServer(GeneBankSearchServerArguments commandArgs) throws IOException {
+        for (String fileName : commandArgs.getBTreeFileNames()) {
+            Matcher name = BTREE_FILE_NAME.matcher(fileName);
+            name.matches(); // checked by parseArguments
+            int length = Integer.parseInt(name.group(1));
+            int degree = Integer.parseInt(name.group(2));
+            BTree tree = new BTree(degree, fileName);
+            tree.setSubsequenceLength(length);
+            if (commandArgs.isUseCache()) {
+                boolean offHeap = commandArgs.getCacheType().equals("offheap");
+                int nodeBytes = offHeap ? BTree.getNodeDiskSize(tree.getDegree()) : BTree.getNodeHeapSize(tree.getDegree());
+                long memoryLimit = offHeap ? CacheBudget.maxDirectMemory() : CacheBudget.maxHeapMemory();
+                int cacheSize = CacheBudget.toNodeCount(commandArgs.getCacheSize(), nodeBytes, memoryLimit);
+                if (cacheSize < 100) {
+                    throw new IllegalArgumentException("Cache of " + fileName + " should hold at least 100 nodes, not " + cacheSize);
+                }
+                if (offHeap) {
+                    tree.setUseOffHeapCache(true, cacheSize, commandArgs.getCachePolicy(), commandArgs.getCacheSegments());
+                } else {
+                    tree.setUseCacheAndCacheSize(true, cacheSize, commandArgs.getCachePolicy(), commandArgs.getCacheSegments());
+                }
+            }
+            if (commandArgs.getPinLevels() != 0) {
+                tree.pinUpperLevels(commandArgs.getPinLevels());
+            }
+            tree.loadBloomFilter(fileName + ".bloom");
+            trees[length] = tree;
+            treeFileNames[length] = fileName;
+        }
+        serverSocket = new ServerSocket(commandArgs.getPort(), 50, InetAddress.getLoopbackAddress());
+        AtomicInteger connectionCount = new AtomicInteger();
+        connections = Executors.newCachedThreadPool(runnable -> {
+            // Daemon threads, so an idle client never keeps the JVM alive after SHUTDOWN
+            Thread thread = new Thread(runnable, "search-connection-" + connectionCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Accepts connections until SHUTDOWN is received, serving each one on its own thread, then
+     * closes the trees.
+     * @throws IOException Throws an IOException if accepting a connection fails.
+     */
+    public void serve() throws IOException {
+        try {
+            while (true) {
+                Socket socket;
+                try {
+                    socket = serverSocket.accept();
+                } catch (SocketException e) {
+                    if (serverSocket.isClosed()) {
+                        break; // SHUTDOWN closed the socket
+                    }
+                    throw e;
+                }
+                connections.execute(() -> handle(socket));
+            }
+        } finally {
+            connections.shutdownNow();
+            for (BTree tree : trees) {
+                if (tree != null) {
+                    tree.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Serves one connection until the client disconnects or sends QUIT or SHUTDOWN.
+     * @param socket The client connection.
+     */
+    private void handle(Socket socket) {
+        try (socket;
+             BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII), 1 << 16);
+             BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII), 1 << 16)) {
+            List<String> batch = new ArrayList<>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty()) {
+                    answer(batch, writer);
+                    batch.clear();
+                } else if (line.equals("STATS")) {
+                    writeStats(writer);
+                } else if (line.equals("QUIT")) {
+                    break;
+                } else if (line.equals("SHUTDOWN")) {
+                    serverSocket.close();
+                    break;
+                } else {
+                    batch.add(line);
+                }
+            }
+            // A final batch may end with the connection instead of an empty line
+            if (!batch.isEmpty() && line == null) {
+                answer(batch, writer);
+            }
+        } catch (IOException e) {
+            System.err.println("Connection failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Looks up one batch and writes the answer, recording how long the request took.
+     * @param batch The DNA sequences of the batch.
+     * @param writer The connection writer.
+     * @throws IOException Throws an IOException if the tree cannot be read or the answer cannot be sent.
+     */
+    private void answer(List<String> batch, BufferedWriter writer) throws IOException {
+        long start = System.nanoTime();
+        String[] queries = batch.toArray(new String[0]);
+        String error = validate(queries);
+        if (error != null) {
+            writer.write("ERROR " + error + "\n");
+        } else {
+            long[] frequencies = lookup(queries);
+            for (int i = 0; i < queries.length; i++) {
+                writer.write(queries[i].toLowerCase() + " " + frequencies[i] + "\n");
+            }
+            sequencesServed.add(queries.length);
+        }
+        writer.write("\n");
+        writer.flush();
+        latencies.record(System.nanoTime() - start);
+    }
+
+    /**
+     * Checks that every query is a DNA sequence with a tree for its length.
+     * @param queries The DNA sequences of the batch.
+     * @return A description of the first invalid query, or null if all are valid.
+     */
+    private String validate(String[] queries) {
+        for (String query : queries) {
+            if (!SEQUENCE.matcher(query).matches()) {
+                return "not a DNA sequence: " + query;
+            }
+            if (query.length() > MAX_SEQUENCE_LENGTH || trees[query.length()] == null) {
+                return "no tree for sequence length " + query.length() + ": " + query;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Computes the frequency of each query plus its complement. The queries of each length are
+     * searched as one sorted batch against their tree, so nodes on shared paths are read once.
+     * @param queries The valid DNA sequences of the batch.
+     * @return The frequency of each query, in the same order.
+     * @throws IOException Throws an IOException if an error occurs while searching.
+     */
+    private long[] lookup(String[] queries) throws IOException {
+        long[] frequencies = new long[queries.length];
+        int[] indexes = new int[queries.length];
+        for (int length = 1; length <= MAX_SEQUENCE_LENGTH; length++) {
+            if (trees[length] == null) {
+                continue;
+            }
+            int count = 0;
+            for (int i = 0; i < queries.length; i++) {
+                if (queries[i].length() == length) {
+                    indexes[count++] = i;
+                }
+            }
+            if (count == 0) {
+                continue;
+            }
+            long[] keys = new long[2 * count];
+            for (int j = 0; j < count; j++) {
+                keys[2 * j] = SequenceUtils.dnaStringToLong(queries[indexes[j]]);
+                keys[2 * j + 1] = SequenceUtils.getComplement(keys[2 * j], length);
+            }
+            long[] found = trees[length].searchBatch(keys);
+            for (int j = 0; j < count; j++) {
+                frequencies[indexes[j]] = found[2 * j] + found[2 * j + 1];
+            }
+        }
+        return frequencies;
+    }
+
+    /**
+     * Writes the request latency percentiles and each tree's cache hit ratio, one "name value" per line.
+     * @param writer The connection writer.
+     * @throws IOException Throws an IOException if the answer cannot be sent.
+     */
+    private void writeStats(BufferedWriter writer) throws IOException {
+        writer.write("requests " + latencies.getCount() + "\n");
+        writer.write("sequences " + sequencesServed.sum() + "\n");
+        writer.write(String.format("latency_p50_us %.1f\n", latencies.getPercentile(0.50) / 1000.0));
+        writer.write(String.format("latency_p90_us %.1f\n", latencies.getPercentile(0.90) / 1000.0));
+        writer.write(String.format("latency_p99_us %.1f\n", latencies.getPercentile(0.99) / 1000.0));
+        writer.write(String.format("latency_p999_us %.1f\n", latencies.getPercentile(0.999) / 1000.0));
+        writer.write(String.format("latency_max_us %.1f\n", latencies.getMax() / 1000.0));
+        for (int length = 1; length <= MAX_SEQUENCE_LENGTH; length++) {
+            if (trees[length] != null) {
+                writer.write(String.format("cache_hit_ratio_%d %.4f\n", length, trees[length].getStatistics().getHitRatio()));
+            }
+        }
+        writer.write("\n");
+        writer.flush();
+    }
+
+    /**
+     * Prints the request count and latency percentiles of the whole run.
+     */
+    private void printSummary() {
+        System.out.println("Requests served: " + latencies.getCount());
+        System.out.println("Sequences served: " + sequencesServed.sum());
+        System.out.printf("Latency p50: %.1f us\n", latencies.getPercentile(0.50) / 1000.0);
+        System.out.printf("Latency p90: %.1f us\n", latencies.getPercentile(0.90) / 1000.0);
+        System.out.printf("Latency p99: %.1f us\n", latencies.getPercentile(0.99) / 1000.0);
+        System.out.printf("Latency p99.9: %.1f us\n", latencies.getPercentile(0.999) / 1000.0);
+        System.out.printf("Latency max: %.1f us\n", latencies.getMax() / 1000.0);
+        for (int length = 1; length <= MAX_SEQUENCE_LENGTH; length++) {
+            if (trees[length] != null) {
+                System.out.printf("Cache Hit Ratio (%s): %.2f%%\n", treeFileNames[length], trees[length].getStatistics().getHitRatio() * 100.0);
+            }
+        }
+    }
+
+    /**
+     * Parses command line arguments and handles exceptions.
+     * @param args Command line arguments.
+     * @return Parsed command line arguments.
+     */
+    private static GeneBankSearchServerArguments parseArgumentsAndHandleExceptions(String[] args) {
+        GeneBankSearchServerArguments geneBankSearchServerArguments = null;
+        try {
+            geneBankSearchServerArguments = parseArguments(args);
+        } catch (ParseArgumentException e) {
+            printUsageAndExit(e.getMessage());
+        }
+        return geneBankSearchServerArguments;
+    }
+
+    /**
+     * Prints usage information and exits the program.
+     * @param errorMessage Error message to display.
+     */
+    private static void printUsageAndExit(String errorMessage) {
+        System.out.println(errorMessage);
+        System.out.println("Usage: GeneBankSearchServer --btreefile=<b-tree-file>[,<b-tree-file>...] [--port=<port>] [--cache=<0|1>] [--cachesize=<n|bytes|percent%>] [--cachetype=<heap|offheap>] [--cachepolicy=<lru|clock|2q|arc|tinylfu>] [--pinlevels=<n|auto>] [--cachesegments=<n>]");
+        System.exit(1);
+    }
+
+    /**
+     * Parses command line arguments.
+     * @param args Command line arguments.
+     * @return Parsed command line arguments.
+     * @throws ParseArgumentException Throws an exception if an error occurs while parsing arguments.
+     */
+    public static GeneBankSearchServerArguments parseArguments(String[] args) throws ParseArgumentException {
+        boolean useCache = false;
+        String cacheSize = null;
+        String cacheType = "heap";
+        String cachePolicy = null;
+        int pinLevels = 0;
+        String[] BTreeFileNames = null;
+        int port = DEFAULT_PORT;
+        int cacheSegments = 0; // 0 picks a count from the number of processors
+
+        // Parse each argument
+        for (String arg : args) {
+            if (arg.startsWith("--cache=")) {
+                useCache = Integer.parseInt(arg.substring(8)) == 1;
+            } else if (arg.startsWith("--cachesize=")) {
+                cacheSize = arg.substring(12);
+            } else if (arg.startsWith("--cachetype=")) {
+                cacheType = arg.substring(12);
+            } else if (arg.startsWith("--cachepolicy=")) {
+                cachePolicy = arg.substring(14).toLowerCase();
+            } else if (arg.startsWith("--pinlevels=")) {
+                String levels = arg.substring(12);
+                pinLevels = levels.equals("auto") ? -1 : Integer.parseInt(levels);
+            } else if (arg.startsWith("--btreefile=")) {
+                BTreeFileNames = arg.substring(12).split(",");
+            } else if (arg.startsWith("--port=")) {
+                port = Integer.parseInt(arg.substring(7));
+            } else if (arg.startsWith("--cachesegments=")) {
+                cacheSegments = Integer.parseInt(arg.substring(16));
+            } else {
+                throw new ParseArgumentException("Invalid Argument: " + arg);
+            }
+        }
+
+        // Validate required arguments
+        if (BTreeFileNames == null) {
+            throw new ParseArgumentException("Missing required argument: btreefile");
+        }
+        boolean[] lengthServed = new boolean[MAX_SEQUENCE_LENGTH + 1];
+        for (String fileName : BTreeFileNames) {
+            Matcher name = BTREE_FILE_NAME.matcher(fileName);
+            if (!name.matches()) {
+                throw new ParseArgumentException("B-tree file name must end in .btree.data.<length>.<degree>: " + fileName);
+            }
+            int length = Integer.parseInt(name.group(1));
+            if (length < 1 || length > MAX_SEQUENCE_LENGTH) {
+                throw new ParseArgumentException("Sequence length must be between 1 and " + MAX_SEQUENCE_LENGTH + ": " + fileName);
+            }
+            if (lengthServed[length]) {
+                throw new ParseArgumentException("Only one B-tree file per sequence length can be served: " + fileName);
+            }
+            lengthServed[length] = true;
+        }
+
+        // Validate optional arguments
+        if (port < 0 || port > 65535) {
+            throw new ParseArgumentException("Port must be between 0 and 65535");
+        }
+        if (cacheSegments < 0) {
+            throw new ParseArgumentException("Number of cache segments must not be negative");
+        }
+        // Every connection has its own thread, so stripe for at least as many connections as processors
+        if (cacheSegments == 0) {
+            cacheSegments = CacheBudget.defaultSegmentCount(Math.max(2, Runtime.getRuntime().availableProcessors()));
+        }
+        if (!cacheType.equals("heap") && !cacheType.equals("offheap")) {
+            throw new ParseArgumentException("Cache type must be heap or offheap");
+        }
+        // Object caches default to LRU; page caches default to CLOCK, which keeps no per-entry objects
+        if (cachePolicy == null) {
+            cachePolicy = cacheType.equals("offheap") ? "clock" : "lru";
+        }
+        if (!cachePolicy.matches("lru|clock|2q|arc|tinylfu")) {
+            throw new ParseArgumentException("Cache policy must be lru, clock, 2q, arc or tinylfu");
+        }
+        if (useCache) {
+            if (cacheSize == null) {
+                throw new ParseArgumentException("Cache size must be specified when using cache. Cache size should hold at least 100 nodes");
+            }
+            // Each tree resolves byte and percentage sizes for its own degree when it is opened
+            try {
+                CacheBudget.toNodeCount(cacheSize, 1, CacheBudget.maxHeapMemory());
+            } catch (IllegalArgumentException e) {
+                throw new ParseArgumentException("Invalid cache size: " + cacheSize);
+            }
+        }
+
+        return new GeneBankSearchServerArguments(useCache, cacheSize, cacheType, cachePolicy, pinLevels, BTreeFileNames, port, cacheSegments);
+    }
+}
@@ -0,0 +1,189 @@
+package cs321.search;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * GeneBankSearchServerArguments represents the command-line arguments for the GeneBankSearchServer program.
+ */
+public class GeneBankSearchServerArguments {
+    private final boolean useCache;
+    private final String cacheSize;
+    private final String cacheType;
+    private final String cachePolicy;
+    private final int pinLevels;
+    private final String[] BTreeFileNames;
+    private final int port;
+    private final int cacheSegments;
+
+    /**
+     * Constructor for GeneBankSearchServerArguments class.
+     * @param useCache Whether to use cache.
+     * @param cacheSize Size of each tree's cache: a node count, a byte size such as 64m, or a percentage such as 25%.
+     * @param cacheType Where cached nodes are kept: heap or offheap.
+     * @param cachePolicy Eviction policy of the cache: lru, clock, 2q, arc or tinylfu.
+     * @param pinLevels Number of upper tree levels kept resident in each tree, or -1 to size them automatically.
+     * @param BTreeFileNames Names of the B-tree files to serve, at most one per sequence length.
+     * @param port Loopback port to listen on, or 0 for any free port.
+     * @param cacheSegments Number of lock segments the node cache is striped into.
+     */
+    public GeneBankSearchServerArguments(boolean useCache, String cacheSize, String cacheType, String cachePolicy, int pinLevels, String[] BTreeFileNames, int port, int cacheSegments) {
+        this.useCache = useCache;
+        this.cacheSize = cacheSize;
+        this.cacheType = cacheType;
+        this.cachePolicy = cachePolicy;
+        this.pinLevels = pinLevels;
+        this.BTreeFileNames = BTreeFileNames;
+        this.port = port;
+        this.cacheSegments = cacheSegments;
+    }
+
+    /**
+     * Overrides the equals method to compare two GeneBankSearchServerArguments objects.
+     * @param obj The object to compare with.
+     * @return True if the objects are equal, false otherwise.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        // Generated method
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        GeneBankSearchServerArguments other = (GeneBankSearchServerArguments) obj;
+        if (useCache != other.useCache) {
+            return false;
+        }
+        if (cacheSize == null) {
+            if (other.cacheSize != null) {
+                return false;
+            }
+        } else if (!cacheSize.equals(other.cacheSize)) {
+            return false;
+        }
+        if (cacheType == null) {
+            if (other.cacheType != null) {
+                return false;
+            }
+        } else if (!cacheType.equals(other.cacheType)) {
+            return false;
+        }
+        if (cachePolicy == null) {
+            if (other.cachePolicy != null) {
+                return false;
+            }
+        } else if (!cachePolicy.equals(other.cachePolicy)) {
+            return false;
+        }
+        if (pinLevels != other.pinLevels) {
+            return false;
+        }
+        if (!Arrays.equals(BTreeFileNames, other.BTreeFileNames)) {
+            return false;
+        }
+        if (port != other.port) {
+            return false;
+        }
+        if (cacheSegments != other.cacheSegments) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Overrides the hashCode method to match equals.
+     * @return The hash code of the arguments.
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(useCache, cacheSize, cacheType, cachePolicy, pinLevels, Arrays.hashCode(BTreeFileNames), port, cacheSegments);
+    }
+
+    /**
+     * Overrides the toString method to generate a string representation of GeneBankSearchServerArguments object.
+     * @return A string representation of the object.
+     */
+    @Override
+    public String toString() {
+        // Generated method
+        return "GeneBankSearchServerArguments{" +
+                "useCache=" + useCache +
+                ", cacheSize='" + cacheSize + '\'' +
+                ", cacheType='" + cacheType + '\'' +
+                ", cachePolicy='" + cachePolicy + '\'' +
+                ", pinLevels=" + pinLevels +
+                ", BTreeFileNames=" + Arrays.toString(BTreeFileNames) +
+                ", port=" + port +
+                ", cacheSegments=" + cacheSegments +
+                '}';
+    }
+
+    /**
+     * Gets the value of the useCache field.
+     * @return The value of the useCache field.
+     */
+    public boolean isUseCache() {
+        return useCache;
+    }
+
+    /**
+     * Gets the value of the cacheSize field.
+     * @return The value of the cacheSize field.
+     */
+    public String getCacheSize() {
+        return cacheSize;
+    }
+
+    /**
+     * Gets the value of the cacheType field.
+     * @return The value of the cacheType field.
+     */
+    public String getCacheType() {
+        return cacheType;
+    }
+
+    /**
+     * Gets the value of the cachePolicy field.
+     * @return The value of the cachePolicy field.
+     */
+    public String getCachePolicy() {
+        return cachePolicy;
+    }
+
+    /**
+     * Gets the value of the pinLevels field.
+     * @return The value of the pinLevels field.
+     */
+    public int getPinLevels() {
+        return pinLevels;
+    }
+
+    /**
+     * Gets the value of the BTreeFileNames field.
+     * @return The value of the BTreeFileNames field.
+     */
+    public String[] getBTreeFileNames() {
+        return BTreeFileNames;
+    }
+
+    /**
+     * Gets the value of the port field.
+     * @return The value of the port field.
+     */
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * Gets the value of the cacheSegments field.
+     * @return The value of the cacheSegments field.
+     */
+    public int getCacheSegments() {
+        return cacheSegments;
+    }
+}
@@ -0,0 +1,113 @@
+package cs321.search;
+
+import java.io.FileWriter;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import cs321.btree.BTree;
+import cs321.btree.KmerStatistics;
+import cs321.common.ParseArgumentException;
+
+/**
+ * GeneBankStatsBTree class reports quality-control statistics of the sequences stored in a B-tree:
+ * total and distinct counts, the frequency histogram, GC content and entropy.
+ */
+public class GeneBankStatsBTree {
+
+    /**
+     * Main method to compute the statistics of a B-tree and write the report.
+     * @param args Command line arguments.
+     * @throws Exception Throws an exception if an error occurs while reading the B-tree or writing the report.
+     */
+    public static void main(String[] args) throws Exception {
+        long startTime = System.nanoTime();
+        GeneBankStatsBTreeArguments commandArgs = parseArgumentsAndHandleExceptions(args);
+        BTree dnaBTree = new BTree(commandArgs.getDegree(), commandArgs.getBTreeFileName());
+        // Every statistic comes from one sequential pass over the file, split across the threads
+        KmerStatistics statistics;
+        try {
+            statistics = dnaBTree.computeKmerStatistics(commandArgs.getSubsequenceLength(), commandArgs.getThreads());
+        } finally {
+            dnaBTree.close();
+        }
+        if (commandArgs.getReportFileName() != null) {
+            try (PrintWriter report = new PrintWriter(new FileWriter(commandArgs.getReportFileName()))) {
+                statistics.writeReport(report);
+            }
+        } else {
+            statistics.writeReport(new PrintWriter(new OutputStreamWriter(System.out)));
+        }
+        long elapsedTimeInMillis = (System.nanoTime() - startTime) / 1000000;
+        System.err.println("Time elapsed: " + elapsedTimeInMillis);
+    }
+
+    /**
+     * Parses command line arguments and handles exceptions.
+     * @param args Command line arguments.
+     * @return Parsed command line arguments.
+     */
+    private static GeneBankStatsBTreeArguments parseArgumentsAndHandleExceptions(String[] args) {
+        GeneBankStatsBTreeArguments geneBankStatsBTreeArguments = null;
+        try {
+            geneBankStatsBTreeArguments = parseArguments(args);
+        } catch (ParseArgumentException e) {
+            printUsageAndExit(e.getMessage());
+        }
+        return geneBankStatsBTreeArguments;
+    }
+
+    /**
+     * Prints usage information and exits the program.
+     * @param errorMessage Error message to display.
+     */
+    private static void printUsageAndExit(String errorMessage) {
+        System.out.println(errorMessage);
+        System.out.println("Usage: GeneBankStatsBTree --degree=<btree-degree> --btreefile=<b-tree-file> --length=<sequence-length> [--threads=<n>] [--report=<report-file>]");
+        System.exit(1);
+    }
+
+    /**
+     * Parses command line arguments.
+     * @param args Command line arguments.
+     * @return Parsed command line arguments.
+     * @throws ParseArgumentException Throws an exception if an error occurs while parsing arguments.
+     */
+    public static GeneBankStatsBTreeArguments parseArguments(String[] args) throws ParseArgumentException {
+        int degree = 0;
+        String BTreeFileName = null;
+        int subsequenceLength = 0;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String reportFileName = null;
+
+        // Parse each argument
+        for (String arg : args) {
+            if (arg.startsWith("--degree=")) {
+                degree = Integer.parseInt(arg.substring(9));
+            } else if (arg.startsWith("--btreefile=")) {
+                BTreeFileName = arg.substring(12);
+            } else if (arg.startsWith("--length=")) {
+                subsequenceLength = Integer.parseInt(arg.substring(9));
+            } else if (arg.startsWith("--threads=")) {
+                threads = Integer.parseInt(arg.substring(10));
+            } else if (arg.startsWith("--report=")) {
+                reportFileName = arg.substring(9);
+            } else {
+                throw new ParseArgumentException("Invalid Argument: " + arg);
+            }
+        }
+
+        // Validate required arguments
+        if (BTreeFileName == null || subsequenceLength == 0) {
+            throw new ParseArgumentException("Missing required arguments: btreefile or length");
+        }
+
+        // Validate optional arguments
+        if (subsequenceLength < 1 || subsequenceLength > 31) {
+            throw new ParseArgumentException("Sequence length must be between 1 and 31");
+        }
+        if (threads < 1) {
+            throw new ParseArgumentException("Number of threads must be at least 1");
+        }
+
+        return new GeneBankStatsBTreeArguments(degree, BTreeFileName, subsequenceLength, threads, reportFileName);
+    }
+}
@@ -0,0 +1,139 @@
+package cs321.search;
+
+import java.util.Objects;
+
+/**
+ * GeneBankStatsBTreeArguments represents the command-line arguments for the GeneBankStatsBTree program.
+ */
+public class GeneBankStatsBTreeArguments {
+    private final int degree;
+    private final String BTreeFileName;
+    private final int subsequenceLength;
+    private final int threads;
+    private final String reportFileName;
+
+    /**
+     * Constructor for GeneBankStatsBTreeArguments class.
+     * @param degree Degree of the B-tree.
+     * @param BTreeFileName Name of the B-tree file.
+     * @param subsequenceLength Length of the subsequences stored in the B-tree.
+     * @param threads Number of threads scanning the B-tree file.
+     * @param reportFileName Name of the file the report is written to, or null for the console.
+     */
+    public GeneBankStatsBTreeArguments(int degree, String BTreeFileName, int subsequenceLength, int threads, String reportFileName) {
+        this.degree = degree;
+        this.BTreeFileName = BTreeFileName;
+        this.subsequenceLength = subsequenceLength;
+        this.threads = threads;
+        this.reportFileName = reportFileName;
+    }
+
+    /**
+     * Overrides the equals method to compare two GeneBankStatsBTreeArguments objects.
+     * @param obj The object to compare with.
+     * @return True if the objects are equal, false otherwise.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        // Generated method
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        GeneBankStatsBTreeArguments other = (GeneBankStatsBTreeArguments) obj;
+        if (degree != other.degree) {
+            return false;
+        }
+        if (BTreeFileName == null) {
+            if (other.BTreeFileName != null) {
+                return false;
+            }
+        } else if (!BTreeFileName.equals(other.BTreeFileName)) {
+            return false;
+        }
+        if (subsequenceLength != other.subsequenceLength) {
+            return false;
+        }
+        if (threads != other.threads) {
+            return false;
+        }
+        if (reportFileName == null) {
+            if (other.reportFileName != null) {
+                return false;
+            }
+        } else if (!reportFileName.equals(other.reportFileName)) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Overrides the hashCode method to match equals.
+     * @return The hash code of the arguments.
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(degree, BTreeFileName, subsequenceLength, threads, reportFileName);
+    }
+
+    /**
+     * Overrides the toString method to generate a string representation of GeneBankStatsBTreeArguments object.
+     * @return A string representation of the object.
+     */
+    @Override
+    public String toString() {
+        // Generated method
+        return "GeneBankStatsBTreeArguments{" +
+                "degree=" + degree +
+                ", BTreeFileName='" + BTreeFileName + '\'' +
+                ", subsequenceLength=" + subsequenceLength +
+                ", threads=" + threads +
+                ", reportFileName='" + reportFileName + '\'' +
+                '}';
+    }
+
+    /**
+     * Gets the value of the degree field.
+     * @return The value of the degree field.
+     */
+    public int getDegree() {
+        return degree;
+    }
+
+    /**
+     * Gets the value of the BTreeFileName field.
+     * @return The value of the BTreeFileName field.
+     */
+    public String getBTreeFileName() {
+        return BTreeFileName;
+    }
+
+    /**
+     * Gets the value of the subsequenceLength field.
+     * @return The value of the subsequenceLength field.
+     */
+    public int getSubsequenceLength() {
+        return subsequenceLength;
+    }
+
+    /**
+     * Gets the value of the threads field.
+     * @return The value of the threads field.
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Gets the value of the reportFileName field.
+     * @return The value of the reportFileName field.
+     */
+    public String getReportFileName() {
+        return reportFileName;
+    }
+}
@@ -0,0 +1,293 @@
+package cs321.btree;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import cs321.create.SequenceUtils;
+
+/**
+ * The HashKmerStore class is an in-memory KmerStore: an open-addressing hash table with linear
+ * probing over two primitive arrays, so a lookup or an upsert is one hash and usually one probe,
+ * with no node reads and no boxing. It suits datasets whose distinct sequences fit in the heap.
+ * The table is loaded from, and saved to, a file in the SortedArrayKmerStore format, so a file
+ * built by either engine can be searched with the other.
+ */
+public class HashKmerStore implements KmerStore {
+    private static final long EMPTY = -1; // keys use at most 62 bits, so they are never negative
+    private static final int MIN_CAPACITY = 1024;
+
+    private final String fileName;
+    private long[] keys;
+    private long[] frequencies;
+    private int size;
+    private boolean modified;
+
+    /**
+     * Opens a store, loading the file if it exists.
+     *
+     * @param fileName the sorted k-mer file to load from and save to on close
+     * @throws IOException if the file exists but cannot be read
+     */
+    public HashKmerStore(String fileName) throws IOException {
+        this.fileName = fileName;
+        allocate(MIN_CAPACITY);
+        if (new File(fileName).exists()) {
+            try (SortedArrayKmerStore file = new SortedArrayKmerStore(fileName)) {
+                if (file.getSize() > Integer.MAX_VALUE / 4) {
+                    throw new IOException("Too many sequences in " + fileName + " to load into memory: " + file.getSize());
+                }
+                allocate(capacityFor((int) file.getSize()));
+                file.scan(this::add);
+            }
+        }
+    }
+
+    /**
+     * Gets the number of keys in the store.
+     *
+     * @return the number of distinct keys
+     */
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public long get(long key) {
+        int slot = find(key);
+        return keys[slot] == key ? frequencies[slot] : 0;
+    }
+
+    @Override
+    public void upsert(long key, long count) {
+        if (key < 0) {
+            throw new IllegalArgumentException("Keys must not be negative: " + key);
+        }
+        add(key, count);
+        modified = true;
+    }
+
+    @Override
+    public long[] getBatch(long[] keys) {
+        long[] found = new long[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            found[i] = get(keys[i]);
+        }
+        return found;
+    }
+
+    /**
+     * Sums many key ranges. When the ranges span fewer keys than the table has slots, each key in
+     * them is looked up; otherwise the table is scanned once and each stored key is placed in its
+     * range by a binary search.
+     */
+    @Override
+    public long[] sumRanges(long[] lows, long[] highs) {
+        long[] sums = new long[lows.length];
+        long width = 0;
+        for (int i = 0; i < lows.length && width <= keys.length; i++) {
+            width += highs[i] - lows[i] + 1;
+        }
+        if (width <= keys.length) {
+            for (int i = 0; i < lows.length; i++) {
+                for (long key = lows[i]; key <= highs[i]; key++) {
+                    sums[i] += get(key);
+                }
+            }
+            return sums;
+        }
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != EMPTY) {
+                int range = Arrays.binarySearch(lows, keys[slot]);
+                if (range < 0) {
+                    range = -range - 2; // the last range starting below the key
+                }
+                if (range >= 0 && keys[slot] <= highs[range]) {
+                    sums[range] += frequencies[slot];
+                }
+            }
+        }
+        return sums;
+    }
+
+    /**
+     * Sums the keys within a Hamming distance of a query. When the query has fewer such neighbours
+     * than the table has slots, each neighbour is looked up; otherwise the table is scanned once.
+     */
+    @Override
+    public long countWithinDistance(long key, int sequenceLength, int maxDistance) {
+        // Count the neighbours, the sum over d of C(length, d) * 3^d, until they outnumber the slots
+        long neighbours = 1;
+        long term = 1;
+        for (int d = 1; d <= Math.min(maxDistance, sequenceLength) && neighbours <= keys.length; d++) {
+            term = term * (sequenceLength - d + 1) * 3 / d;
+            neighbours += term;
+        }
+        if (neighbours <= keys.length) {
+            return sumNeighbours(key, sequenceLength, maxDistance);
+        }
+        long total = 0;
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != EMPTY && SequenceUtils.hammingDistance(keys[slot], key, sequenceLength) <= maxDistance) {
+                total += frequencies[slot];
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Sums a key and every key reached from it by substituting at most distance of its lowest
+     * bases. Each substitution is made at a lower base than the previous one, so every neighbour
+     * is looked up exactly once.
+     *
+     * @param key      the key
+     * @param bases    the number of lowest bases that may still be substituted
+     * @param distance the number of substitutions left
+     * @return the total frequency of the keys reached
+     */
+    private long sumNeighbours(long key, int bases, int distance) {
+        long total = get(key);
+        if (distance > 0) {
+            for (int base = 0; base < bases; base++) {
+                for (long change = 1; change < 4; change++) {
+                    total += sumNeighbours(key ^ (change << (2 * base)), base, distance - 1);
+                }
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Visits every key in ascending order. The keys are copied out of the table and sorted first.
+     */
+    @Override
+    public void scan(BTree.EntryVisitor visitor) {
+        long[] sorted = sortedKeys();
+        for (long key : sorted) {
+            visitor.visit(key, get(key));
+        }
+    }
+
+    /**
+     * Saves the table to its file, sorted by key, if anything was added since it was loaded.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (modified) {
+            long[] sorted = sortedKeys();
+            long[] sortedFrequencies = new long[sorted.length];
+            for (int i = 0; i < sorted.length; i++) {
+                sortedFrequencies[i] = get(sorted[i]);
+            }
+            SortedArrayKmerStore.write(fileName, sorted, sortedFrequencies, sorted.length);
+            modified = false;
+        }
+    }
+
+    /**
+     * Adds occurrences of a key, growing the table when it becomes half full.
+     *
+     * @param key   the key
+     * @param count the number of occurrences
+     */
+    private void add(long key, long count) {
+        int slot = find(key);
+        if (keys[slot] == key) {
+            frequencies[slot] += count;
+            return;
+        }
+        keys[slot] = key;
+        frequencies[slot] = count;
+        if (++size > keys.length / 2) {
+            rehash(keys.length * 2);
+        }
+    }
+
+    /**
+     * Finds the slot holding a key, or the empty slot where it would go.
+     *
+     * @param key the key
+     * @return the slot index
+     */
+    private int find(long key) {
+        int mask = keys.length - 1;
+        int slot = (int) mix(key) & mask;
+        while (keys[slot] != key && keys[slot] != EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Moves every entry into a table of a new capacity.
+     *
+     * @param capacity the new capacity, a power of two
+     */
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        long[] oldFrequencies = frequencies;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = find(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                frequencies[slot] = oldFrequencies[i];
+                size++;
+            }
+        }
+    }
+
+    /**
+     * Replaces the table with an empty one.
+     *
+     * @param capacity the capacity, a power of two
+     */
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        frequencies = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+    }
+
+    /**
+     * Copies the keys out of the table in ascending order.
+     *
+     * @return the sorted keys
+     */
+    private long[] sortedKeys() {
+        long[] sorted = new long[size];
+        int count = 0;
+        for (long key : keys) {
+            if (key != EMPTY) {
+                sorted[count++] = key;
+            }
+        }
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * Gets the smallest table capacity that holds a number of keys at most half full.
+     *
+     * @param expectedSize the number of keys
+     * @return a power of two
+     */
+    private static int capacityFor(int expectedSize) {
+        return Math.max(MIN_CAPACITY, Integer.highestOneBit(Math.max(1, expectedSize) * 2 + 1) << 1);
+    }
+
+    /**
+     * Scrambles a key so that keys differing only in their high bits spread over the table
+     * (the SplitMix64 finalizer).
+     *
+     * @param key the key
+     * @return the scrambled key
+     */
+    private static long mix(long key) {
+        key = (key ^ (key >>> 30)) * 0xBF58_476D_1CE4_E5B9L;
+        key = (key ^ (key >>> 27)) * 0x94D0_49BB_1331_11EBL;
+        return key ^ (key >>> 31);
+    }
+}
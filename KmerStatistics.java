@@ -0,0 +1,169 @@
+package cs321.btree;
+
+import java.io.PrintWriter;
+import java.util.Arrays;
+
+/**
+ * The KmerStatistics class accumulates quality-control statistics over the (key, frequency) pairs
+ * of a B-Tree in primitive fields: the total and distinct k-mer counts, a histogram of how many
+ * k-mers occur each number of times, GC content weighted by frequency, and the Shannon entropy of
+ * the k-mer distribution. One instance is fed per partition of the tree and the partial results
+ * are combined with merge, so the pairs can be visited in any order and on any number of threads.
+ */
+public class KmerStatistics implements BTree.EntryVisitor {
+    /** Frequencies at or above this are counted together in the last histogram bucket. */
+    public static final int HISTOGRAM_LIMIT = 1 << 16;
+    private static final long LOW_BITS = 0x5555_5555_5555_5555L; // the low bit of every 2-bit base
+
+    private final int sequenceLength;
+    private long total; // sum of frequencies
+    private long distinct; // number of keys
+    private long maxFrequency;
+    private long gcBases; // G and C bases over all occurrences
+    private double frequencyLogSum; // sum of f * log2(f), for the entropy
+    private long[] histogram = new long[16]; // histogram[f] = number of keys occurring f times
+
+    /**
+     * Constructs empty statistics.
+     *
+     * @param sequenceLength the number of bases in each key
+     */
+    public KmerStatistics(int sequenceLength) {
+        if (sequenceLength < 1 || sequenceLength > 31) {
+            throw new IllegalArgumentException("Sequence length must be between 1 and 31: " + sequenceLength);
+        }
+        this.sequenceLength = sequenceLength;
+    }
+
+    /**
+     * Adds one stored k-mer.
+     *
+     * @param key       the encoded k-mer
+     * @param frequency the number of times it occurs
+     */
+    @Override
+    public void visit(long key, long frequency) {
+        total += frequency;
+        distinct++;
+        maxFrequency = Math.max(maxFrequency, frequency);
+        // C is 01 and G is 10, so a base is G or C exactly when its two bits differ
+        long mask = LOW_BITS >>> (64 - 2 * sequenceLength);
+        gcBases += Long.bitCount((key ^ (key >>> 1)) & mask) * frequency;
+        frequencyLogSum += frequency * log2(frequency);
+        int bucket = (int) Math.min(frequency, HISTOGRAM_LIMIT);
+        if (bucket >= histogram.length) {
+            histogram = Arrays.copyOf(histogram, Math.min(Integer.highestOneBit(bucket) << 1, HISTOGRAM_LIMIT + 1));
+        }
+        histogram[bucket]++;
+    }
+
+    /**
+     * Adds the statistics of another partition to these.
+     *
+     * @param other statistics over keys disjoint from these, of the same sequence length
+     */
+    public void merge(KmerStatistics other) {
+        if (other.sequenceLength != sequenceLength) {
+            throw new IllegalArgumentException("Cannot merge statistics of length " + other.sequenceLength + " into length " + sequenceLength);
+        }
+        total += other.total;
+        distinct += other.distinct;
+        maxFrequency = Math.max(maxFrequency, other.maxFrequency);
+        gcBases += other.gcBases;
+        frequencyLogSum += other.frequencyLogSum;
+        if (other.histogram.length > histogram.length) {
+            histogram = Arrays.copyOf(histogram, other.histogram.length);
+        }
+        for (int f = 0; f < other.histogram.length; f++) {
+            histogram[f] += other.histogram[f];
+        }
+    }
+
+    /**
+     * Gets the total number of k-mers, counting every occurrence.
+     *
+     * @return the sum of all frequencies
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Gets the number of distinct k-mers.
+     *
+     * @return the number of keys
+     */
+    public long getDistinct() {
+        return distinct;
+    }
+
+    /**
+     * Gets the highest frequency of any k-mer.
+     *
+     * @return the highest frequency, or 0 if there are no k-mers
+     */
+    public long getMaxFrequency() {
+        return maxFrequency;
+    }
+
+    /**
+     * Gets the number of distinct k-mers that occur a given number of times.
+     *
+     * @param frequency the number of occurrences, at least 1; HISTOGRAM_LIMIT counts every higher frequency too
+     * @return the number of k-mers with that frequency
+     */
+    public long getHistogramCount(int frequency) {
+        return frequency < histogram.length ? histogram[frequency] : 0;
+    }
+
+    /**
+     * Gets the GC content over every occurrence of every k-mer.
+     *
+     * @return the fraction of bases that are G or C, or 0 if there are no k-mers
+     */
+    public double getGcContent() {
+        return total == 0 ? 0.0 : (double) gcBases / ((double) total * sequenceLength);
+    }
+
+    /**
+     * Gets the Shannon entropy of the k-mer distribution, each k-mer weighted by its frequency:
+     * log2(N) - sum(f * log2(f)) / N over all frequencies f with total N.
+     *
+     * @return the entropy in bits, between 0 and 2 * sequenceLength
+     */
+    public double getEntropy() {
+        return total == 0 ? 0.0 : Math.max(0.0, log2(total) - frequencyLogSum / total);
+    }
+
+    /**
+     * Writes a compact report: one "name value" line per statistic, then one "histogram
+     * frequency count" line per non-empty bucket, the last bucket written as "&gt;=limit".
+     *
+     * @param out the writer to write to
+     */
+    public void writeReport(PrintWriter out) {
+        out.println("length " + sequenceLength);
+        out.println("total " + total);
+        out.println("distinct " + distinct);
+        out.println("max_frequency " + maxFrequency);
+        out.printf("gc_content %.6f%n", getGcContent());
+        out.printf("entropy_bits %.6f%n", getEntropy());
+        out.printf("entropy_normalized %.6f%n", getEntropy() / (2.0 * sequenceLength));
+        for (int f = 1; f < histogram.length; f++) {
+            if (histogram[f] != 0) {
+                out.println("histogram " + (f == HISTOGRAM_LIMIT ? ">=" + f : f) + " " + histogram[f]);
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Computes a base-2 logarithm.
+     *
+     * @param x a positive number
+     * @return log2(x)
+     */
+    private static double log2(double x) {
+        return Math.log(x) / Math.log(2);
+    }
+}
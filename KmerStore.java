@@ -0,0 +1,70 @@
+package cs321.btree;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * The KmerStore interface is the storage engine behind the create and search programs: a map from
+ * encoded DNA sequences to their frequencies, independent of how the map is laid out. The disk
+ * B-Tree, the in-memory HashKmerStore and the memory-mapped SortedArrayKmerStore implement it, so
+ * each dataset can use the engine that suits its size.
+ */
+public interface KmerStore extends Closeable {
+
+    /**
+     * Looks up the frequency of one key.
+     *
+     * @param key the encoded sequence
+     * @return the frequency of the key, or 0 if it is not stored
+     * @throws IOException if the store cannot be read
+     */
+    long get(long key) throws IOException;
+
+    /**
+     * Adds occurrences of a key, storing it first if it is new.
+     *
+     * @param key   the encoded sequence
+     * @param count the number of occurrences to add, at least 1
+     * @throws IOException if the store cannot be written
+     * @throws UnsupportedOperationException if the store is read-only
+     */
+    void upsert(long key, long count) throws IOException;
+
+    /**
+     * Looks up many keys at once, letting the engine order the lookups to suit its layout.
+     *
+     * @param keys the encoded sequences, in any order and possibly repeated
+     * @return the frequency of each key, in the same order, with 0 for keys not stored
+     * @throws IOException if the store cannot be read
+     */
+    long[] getBatch(long[] keys) throws IOException;
+
+    /**
+     * Sums the frequencies of the keys in each of many key ranges.
+     *
+     * @param lows  the first key of each range, in ascending order
+     * @param highs the last key of each range; ranges must not overlap
+     * @return the total frequency of the keys in each range, in the same order
+     * @throws IOException if the store cannot be read
+     */
+    long[] sumRanges(long[] lows, long[] highs) throws IOException;
+
+    /**
+     * Sums the frequencies of the keys within a Hamming distance of a query.
+     *
+     * @param key            the encoded query
+     * @param sequenceLength the number of bases in each key
+     * @param maxDistance    the largest number of mismatched bases allowed
+     * @return the total frequency of every key within maxDistance of the query
+     * @throws IOException if the store cannot be read
+     */
+    long countWithinDistance(long key, int sequenceLength, int maxDistance) throws IOException;
+
+    /**
+     * Visits every stored key once, in ascending key order.
+     *
+     * @param visitor the visitor to call for each key
+     * @throws IOException if the store cannot be read
+     */
+    void scan(BTree.EntryVisitor visitor) throws IOException;
+}
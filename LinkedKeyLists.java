@@ -0,0 +1,199 @@
+package cs321.btree;
+
+import java.util.Arrays;
+
+/**
+ * The LinkedKeyLists class keeps keys in a fixed number of ordered lists, each key in at most one
+ * list at a time. Every list is an intrusive doubly linked list threaded through two int arrays of
+ * slots, and a LongIntHashMap finds the slot of a key, the same layout Cache uses for its LRU list.
+ * Moving a key to the end of a list, which the eviction policies do on every hit, only relinks
+ * slots, so it neither boxes the key nor allocates. Slots are allocated only when a key is added
+ * and every slot is in use; the policies size the lists for the most keys they ever track.
+ * Keys are disk addresses and are never 0.
+ */
+class LinkedKeyLists {
+    private static final int NONE = -1; // ends the free list
+
+    private final LongIntHashMap index; // key -> slot
+    private final int[] sizes;
+    private long[] keys;
+    private int[] lists; // the list a slot is on
+    private int[] prev;
+    private int[] next;
+    private int freeSlot;
+
+    /**
+     * Constructs empty lists. Slot i, for i below the number of lists, is the head of list i: its
+     * next slot is the first key of the list and its previous slot is the last.
+     *
+     * @param listCount    the number of lists
+     * @param expectedKeys the number of keys the lists hold together without growing
+     */
+    LinkedKeyLists(int listCount, int expectedKeys) {
+        this.sizes = new int[listCount];
+        this.index = new LongIntHashMap(expectedKeys);
+        int length = listCount + Math.max(1, expectedKeys);
+        keys = new long[length];
+        lists = new int[length];
+        prev = new int[length];
+        next = new int[length];
+        clear();
+    }
+
+    /**
+     * Returns the list holding a key.
+     *
+     * @param key the key
+     * @return the list, or -1 if the key is on none
+     */
+    int listOf(long key) {
+        int slot = index.get(key);
+        return slot < 0 ? -1 : lists[slot];
+    }
+
+    /**
+     * Returns the number of keys on a list.
+     *
+     * @param list the list
+     * @return the number of keys
+     */
+    int size(int list) {
+        return sizes[list];
+    }
+
+    /**
+     * Checks whether a list holds no keys.
+     *
+     * @param list the list
+     * @return true if the list is empty
+     */
+    boolean isEmpty(int list) {
+        return sizes[list] == 0;
+    }
+
+    /**
+     * Returns the first key of a list without removing it.
+     *
+     * @param list the list, which must not be empty
+     * @return the first key
+     */
+    long first(int list) {
+        return keys[next[list]];
+    }
+
+    /**
+     * Appends a key to a list, taking it off the list it was on, if any.
+     *
+     * @param list the list
+     * @param key  the key
+     */
+    void addLast(int list, long key) {
+        if (moveToLast(list, key)) {
+            return;
+        }
+        if (freeSlot == NONE) {
+            grow();
+        }
+        int slot = freeSlot;
+        freeSlot = next[slot];
+        keys[slot] = key;
+        index.put(key, slot);
+        link(list, slot);
+    }
+
+    /**
+     * Moves a key that is on some list to the end of the given list, which may be its own.
+     *
+     * @param list the list
+     * @param key  the key
+     * @return true if the key was moved, false if it is on no list
+     */
+    boolean moveToLast(int list, long key) {
+        int slot = index.get(key);
+        if (slot < 0) {
+            return false;
+        }
+        unlink(slot);
+        link(list, slot);
+        return true;
+    }
+
+    /**
+     * Removes a key from whichever list holds it.
+     *
+     * @param key the key
+     * @return the list the key was on, or -1 if it was on none
+     */
+    int remove(long key) {
+        int slot = index.remove(key);
+        if (slot < 0) {
+            return -1;
+        }
+        int list = lists[slot];
+        unlink(slot);
+        next[slot] = freeSlot;
+        freeSlot = slot;
+        return list;
+    }
+
+    /**
+     * Removes and returns the first key of a list.
+     *
+     * @param list the list, which must not be empty
+     * @return the key that was first
+     */
+    long removeFirst(int list) {
+        long key = first(list);
+        remove(key);
+        return key;
+    }
+
+    /**
+     * Removes every key from every list.
+     */
+    void clear() {
+        index.clear();
+        Arrays.fill(sizes, 0);
+        for (int list = 0; list < sizes.length; list++) {
+            prev[list] = list;
+            next[list] = list;
+        }
+        freeSlot = NONE;
+        for (int slot = keys.length - 1; slot >= sizes.length; slot--) {
+            next[slot] = freeSlot;
+            freeSlot = slot;
+        }
+    }
+
+    private void link(int list, int slot) {
+        int last = prev[list];
+        prev[slot] = last;
+        next[slot] = list;
+        next[last] = slot;
+        prev[list] = slot;
+        lists[slot] = list;
+        sizes[list]++;
+    }
+
+    private void unlink(int slot) {
+        next[prev[slot]] = next[slot];
+        prev[next[slot]] = prev[slot];
+        sizes[lists[slot]]--;
+    }
+
+    /**
+     * Doubles the number of slots, chaining the new ones onto the free list.
+     */
+    private void grow() {
+        int oldLength = keys.length;
+        int length = oldLength * 2;
+        keys = Arrays.copyOf(keys, length);
+        lists = Arrays.copyOf(lists, length);
+        prev = Arrays.copyOf(prev, length);
+        next = Arrays.copyOf(next, length);
+        for (int slot = length - 1; slot >= oldLength; slot--) {
+            next[slot] = freeSlot;
+            freeSlot = slot;
+        }
+    }
+}
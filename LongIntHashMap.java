@@ -0,0 +1,174 @@
+package cs321.btree;
+
+/**
+ * The LongIntHashMap class maps primitive long keys to primitive int values with open addressing
+ * and linear probing, so lookups never box the key or allocate. It is used to index cache slots by
+ * disk address. Key 0 marks an empty bucket and cannot be stored; disk addresses are never 0
+ * because the metadata lives there.
+ */
+public class LongIntHashMap {
+    private static final long EMPTY = 0L;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+
+    /**
+     * Constructs a new LongIntHashMap sized for the expected number of entries.
+     *
+     * @param expectedSize the number of entries the map should hold without resizing
+     */
+    public LongIntHashMap(int expectedSize) {
+        int buckets = Integer.highestOneBit(Math.max(4, expectedSize * 2 - 1)) << 1; // keep the load factor at or below 0.5
+        keys = new long[buckets];
+        values = new int[buckets];
+        mask = buckets - 1;
+    }
+
+    /**
+     * Returns the value mapped to the key.
+     *
+     * @param key the key to look up
+     * @return the mapped value, or -1 if the key is not present
+     */
+    public int get(long key) {
+        int i = bucket(key);
+        while (true) {
+            long current = keys[i];
+            if (current == key) {
+                return values[i];
+            }
+            if (current == EMPTY) {
+                return -1;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    /**
+     * Maps the key to the value, replacing any previous value.
+     *
+     * @param key   the key, which must not be 0
+     * @param value the value
+     */
+    public void put(long key, int value) {
+        if (key == EMPTY) {
+            throw new IllegalArgumentException("Key 0 is reserved for empty buckets");
+        }
+        int i = bucket(key);
+        while (keys[i] != EMPTY) {
+            if (keys[i] == key) {
+                values[i] = value;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        size++;
+        if (size * 2 > keys.length) {
+            resize(keys.length * 2);
+        }
+    }
+
+    /**
+     * Removes the key from the map.
+     *
+     * @param key the key to remove
+     * @return the value that was mapped to the key, or -1 if the key was not present
+     */
+    public int remove(long key) {
+        int i = bucket(key);
+        while (keys[i] != key) {
+            if (keys[i] == EMPTY) {
+                return -1;
+            }
+            i = (i + 1) & mask;
+        }
+        int removed = values[i];
+        size--;
+
+        // Shift later entries of the probe run back, so no tombstones are needed
+        int hole = i;
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            if (keys[j] == EMPTY) {
+                break;
+            }
+            int home = bucket(keys[j]);
+            boolean stays = hole <= j ? (hole < home && home <= j) : (hole < home || home <= j);
+            if (!stays) {
+                keys[hole] = keys[j];
+                values[hole] = values[j];
+                hole = j;
+            }
+        }
+        keys[hole] = EMPTY;
+        return removed;
+    }
+
+    /**
+     * Returns the number of entries in the map.
+     *
+     * @return the number of entries
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns every key in the map, in no particular order.
+     *
+     * @return the keys
+     */
+    public long[] keys() {
+        long[] result = new long[size];
+        int count = 0;
+        for (long key : keys) {
+            if (key != EMPTY) {
+                result[count++] = key;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Removes every entry from the map.
+     */
+    public void clear() {
+        java.util.Arrays.fill(keys, EMPTY);
+        size = 0;
+    }
+
+    /**
+     * Returns the home bucket of a key.
+     *
+     * @param key the key
+     * @return the bucket the key hashes to
+     */
+    private int bucket(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L; // Fibonacci hashing spreads the evenly spaced disk addresses
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    /**
+     * Rehashes every entry into a table with the given number of buckets.
+     *
+     * @param buckets the new number of buckets, a power of two
+     */
+    private void resize(int buckets) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[buckets];
+        values = new int[buckets];
+        mask = buckets - 1;
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+}
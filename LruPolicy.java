@@ -0,0 +1,51 @@
+package cs321.btree;
+
+/**
+ * The LruPolicy class evicts the least recently used key. Keys are kept on one LinkedKeyLists list
+ * from least to most recently used, and a hit relinks its key at the end without allocating.
+ */
+public class LruPolicy implements EvictionPolicy {
+    private final LinkedKeyLists recency;
+
+    /**
+     * Constructs a new LruPolicy whose list grows as keys are added.
+     */
+    public LruPolicy() {
+        this(16);
+    }
+
+    /**
+     * Constructs a new LruPolicy for a cache of the given capacity.
+     *
+     * @param capacity the number of keys the cache holds
+     */
+    public LruPolicy(int capacity) {
+        // One extra key is tracked while the newcomer waits for the victim to go
+        this.recency = new LinkedKeyLists(1, capacity + 1);
+    }
+
+    @Override
+    public void recordAccess(long key) {
+        recency.moveToLast(0, key);
+    }
+
+    @Override
+    public void recordInsertion(long key) {
+        recency.addLast(0, key);
+    }
+
+    @Override
+    public void recordRemoval(long key) {
+        recency.remove(key);
+    }
+
+    @Override
+    public long selectVictim() {
+        return recency.removeFirst(0);
+    }
+
+    @Override
+    public void clear() {
+        recency.clear();
+    }
+}
@@ -0,0 +1,82 @@
+package cs321.btree;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import cs321.btree.BTree.BTreeNode;
+
+/**
+ * The NodePrefetcher class reads B-Tree nodes ahead of a traversal on a small pool of I/O threads.
+ * A traversal asks for the children it is about to visit, keeps working on the current subtree,
+ * and then takes the finished reads instead of stalling on disk for every node.
+ * Nodes read by the pool also land in the tree's cache when caching is enabled.
+ */
+class NodePrefetcher {
+    private final BTree tree;
+    private final ExecutorService pool;
+    private final ConcurrentHashMap<Long, Future<BTreeNode>> pending;
+
+    /**
+     * Constructs a new NodePrefetcher reading from the given tree.
+     *
+     * @param tree    the B-Tree whose nodes are prefetched
+     * @param threads the number of I/O threads
+     */
+    NodePrefetcher(BTree tree, int threads) {
+        this.tree = tree;
+        this.pending = new ConcurrentHashMap<>();
+        this.pool = Executors.newFixedThreadPool(threads, runnable -> {
+            // Daemon threads, so an unclosed tree never keeps the JVM alive
+            Thread thread = new Thread(runnable, "btree-prefetch");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts reading the node at the given disk address unless a read is already pending.
+     *
+     * @param diskAddress the disk address of the node to read
+     * @param level       the depth of the node, 0 for the root
+     */
+    void prefetch(long diskAddress, int level) {
+        if (diskAddress == 0) {
+            return;
+        }
+        pending.computeIfAbsent(diskAddress, address -> pool.submit(() -> tree.diskRead(address, level)));
+    }
+
+    /**
+     * Takes the node at the given disk address, waiting for its read if it is still in flight.
+     *
+     * @param diskAddress the disk address of the node
+     * @return the prefetched node, or null if no read was issued for that address
+     * @throws IOException if the prefetch read failed
+     */
+    BTreeNode take(long diskAddress) throws IOException {
+        Future<BTreeNode> read = pending.remove(diskAddress);
+        if (read == null) {
+            return null;
+        }
+        try {
+            return read.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for node " + diskAddress, e);
+        } catch (ExecutionException e) {
+            throw new IOException("Prefetch of node " + diskAddress + " failed", e.getCause());
+        }
+    }
+
+    /**
+     * Stops the I/O threads and drops any reads that were never taken.
+     */
+    void close() {
+        pool.shutdownNow();
+        pending.clear();
+    }
+}
@@ -0,0 +1,320 @@
+package cs321.btree;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The PageCache class caches serialized B-Tree nodes in off-heap memory. It carves large direct
+ * buffers (arenas) into fixed-size page slots and keys each slot by the node's disk address.
+ * The heap only holds a few primitive arrays, so capacity can grow to gigabytes without adding
+ * garbage collection work. When every slot is in use, an EvictionPolicy (CLOCK by default) picks
+ * the page whose slot is reused.
+ * <p>
+ * Like Cache, the page cache is split into one or more segments by disk address, each with its own
+ * lock, slot index, policy and arenas (lock striping), so readers of different segments never wait
+ * on each other. A hit is decoded straight from the slot through a read-only view of its arena
+ * while the segment is locked, so the page is never copied out first.
+ */
+public class PageCache {
+    private static final int MAX_ARENA_BYTES = 1 << 30;
+
+    /**
+     * Decodes a cached page in place.
+     *
+     * @param <R> the type of the decoded page
+     */
+    public interface PageReader<R> {
+        /**
+         * Decodes a page. The buffer is only valid during the call and must not be kept.
+         *
+         * @param page        a read-only buffer positioned at the page, limited to its length
+         * @param diskAddress the disk address of the page
+         * @return the decoded page, never null
+         */
+        R read(ByteBuffer page, long diskAddress);
+    }
+
+    private final Segment[] segments;
+    private final int segmentMask;
+    private final int capacity;
+    private final int pageSize;
+
+    /**
+     * Constructs a new single-segment PageCache with the given number of slots, evicting with CLOCK.
+     *
+     * @param capacity the maximum number of pages the cache can store
+     * @param pageSize the size of one page (one serialized node) in bytes
+     */
+    public PageCache(int capacity, int pageSize) {
+        this(capacity, pageSize, new ClockPolicy(capacity));
+    }
+
+    /**
+     * Constructs a new single-segment PageCache with the given number of slots and eviction policy.
+     *
+     * @param capacity the maximum number of pages the cache can store
+     * @param pageSize the size of one page (one serialized node) in bytes
+     * @param policy   the policy choosing which page to give up when every slot is in use
+     */
+    public PageCache(int capacity, int pageSize, EvictionPolicy policy) {
+        this.capacity = capacity;
+        this.pageSize = pageSize;
+        this.segments = new Segment[] {new Segment(capacity, pageSize, policy)};
+        this.segmentMask = 0;
+    }
+
+    /**
+     * Constructs a new lock-striped PageCache. The slots are divided evenly between the segments,
+     * and each segment gets its own instance of the named policy.
+     *
+     * @param capacity     the maximum number of pages the cache can store
+     * @param pageSize     the size of one page (one serialized node) in bytes
+     * @param cachePolicy  the eviction policy: lru, clock, 2q, arc or tinylfu
+     * @param segmentCount the number of segments, rounded down to a power of two no larger than the capacity
+     */
+    public PageCache(int capacity, int pageSize, String cachePolicy, int segmentCount) {
+        this.capacity = capacity;
+        this.pageSize = pageSize;
+        int count = Integer.highestOneBit(Math.max(1, Math.min(segmentCount, capacity)));
+        this.segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            int segmentSize = capacity / count + (i < capacity % count ? 1 : 0);
+            segments[i] = new Segment(segmentSize, pageSize, EvictionPolicy.forName(cachePolicy, segmentSize));
+        }
+        this.segmentMask = count - 1;
+    }
+
+    /**
+     * Decodes the page stored for the disk address, if any, without copying it out of the cache.
+     *
+     * @param diskAddress the disk address of the node
+     * @param reader      decodes the page while its segment is locked
+     * @param <R>         the type of the decoded page
+     * @return the decoded page, or null if the page is not cached
+     */
+    public <R> R read(long diskAddress, PageReader<R> reader) {
+        return segmentFor(diskAddress).read(diskAddress, reader);
+    }
+
+    /**
+     * Stores the remaining bytes of the source buffer as the page for the disk address. Bytes
+     * beyond the page size are not stored. The source buffer's position is not changed.
+     * The policy may decline to admit a new page, in which case nothing is stored.
+     *
+     * @param diskAddress the disk address of the node
+     * @param src         the serialized node
+     */
+    public void write(long diskAddress, ByteBuffer src) {
+        segmentFor(diskAddress).write(diskAddress, src);
+    }
+
+    /**
+     * Reports insertions and evictions to the given statistics from now on.
+     *
+     * @param statistics the statistics to update, or null to stop reporting
+     */
+    public void setStatistics(BTreeStatistics statistics) {
+        for (Segment segment : segments) {
+            segment.setStatistics(statistics);
+        }
+    }
+
+    /**
+     * Checks if a page is stored for the disk address.
+     *
+     * @param diskAddress the disk address of the node
+     * @return true if the page is cached, false otherwise
+     */
+    public boolean contains(long diskAddress) {
+        return segmentFor(diskAddress).contains(diskAddress);
+    }
+
+    /**
+     * Returns the disk addresses of every cached page.
+     *
+     * @return the addresses, in no particular order
+     */
+    public long[] getResidentAddresses() {
+        long[][] perSegment = new long[segments.length][];
+        int total = 0;
+        for (int i = 0; i < segments.length; i++) {
+            perSegment[i] = segments[i].addresses();
+            total += perSegment[i].length;
+        }
+        long[] addresses = new long[total];
+        int count = 0;
+        for (long[] segmentAddresses : perSegment) {
+            System.arraycopy(segmentAddresses, 0, addresses, count, segmentAddresses.length);
+            count += segmentAddresses.length;
+        }
+        return addresses;
+    }
+
+    /**
+     * Clears all pages from the cache. The off-heap arenas stay allocated.
+     */
+    public void clearCache() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * Returns the current number of cached pages.
+     *
+     * @return the number of pages currently stored in the cache
+     */
+    public int getSize() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * Returns the maximum number of pages the cache can store.
+     *
+     * @return the capacity of the cache in pages
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the size of one page slot.
+     *
+     * @return the page size in bytes
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Returns the number of lock segments in the cache.
+     *
+     * @return the number of segments
+     */
+    public int getSegmentCount() {
+        return segments.length;
+    }
+
+    /**
+     * Returns the segment responsible for a disk address.
+     *
+     * @param diskAddress the disk address
+     * @return the segment holding that address
+     */
+    private Segment segmentFor(long diskAddress) {
+        // Node addresses are evenly spaced, so mix the bits before picking a segment
+        long hash = diskAddress * 0x9E3779B97F4A7C15L;
+        return segments[(int) (hash >>> 40) & segmentMask];
+    }
+
+    /**
+     * One lock stripe of the page cache: its own arenas, slot index and policy, guarded by the
+     * segment's monitor. Each arena has a read-only view that hits are decoded through; views are
+     * only positioned while the monitor is held, so one view per arena serves every reader.
+     */
+    private static class Segment {
+        private final int pageSize;
+        private final int capacity;
+        private final int slotsPerArena;
+        private final ByteBuffer[] arenas;
+        private final ByteBuffer[] views; // read-only duplicates of the arenas
+        private final LongIntHashMap slotIndex; // disk address -> slot
+        private final int[] slotLength;
+        private final EvictionPolicy policy;
+        private int usedSlots;
+        private BTreeStatistics statistics; // null unless insertions and evictions are reported
+
+        Segment(int capacity, int pageSize, EvictionPolicy policy) {
+            this.policy = policy;
+            this.capacity = capacity;
+            this.pageSize = pageSize;
+            this.slotsPerArena = MAX_ARENA_BYTES / pageSize;
+            int arenaCount = (capacity + slotsPerArena - 1) / slotsPerArena;
+            this.arenas = new ByteBuffer[arenaCount];
+            this.views = new ByteBuffer[arenaCount];
+            for (int i = 0; i < arenaCount; i++) {
+                int slots = Math.min(slotsPerArena, capacity - i * slotsPerArena);
+                arenas[i] = ByteBuffer.allocateDirect(slots * pageSize);
+                views[i] = arenas[i].asReadOnlyBuffer();
+            }
+            this.slotIndex = new LongIntHashMap(capacity);
+            this.slotLength = new int[capacity];
+        }
+
+        synchronized <R> R read(long diskAddress, PageReader<R> reader) {
+            int slot = slotIndex.get(diskAddress);
+            if (slot < 0) {
+                return null;
+            }
+            policy.recordAccess(diskAddress);
+            ByteBuffer page = views[slot / slotsPerArena];
+            int offset = offset(slot);
+            page.limit(offset + slotLength[slot]);
+            page.position(offset);
+            return reader.read(page, diskAddress);
+        }
+
+        synchronized void write(long diskAddress, ByteBuffer src) {
+            int slot = slotIndex.get(diskAddress);
+            if (slot >= 0) {
+                policy.recordAccess(diskAddress);
+            } else {
+                policy.recordInsertion(diskAddress);
+                if (usedSlots < capacity) {
+                    slot = usedSlots++;
+                } else {
+                    long victim = policy.selectVictim();
+                    if (victim == diskAddress) {
+                        return;
+                    }
+                    slot = slotIndex.remove(victim);
+                    if (statistics != null) {
+                        statistics.recordEviction();
+                    }
+                }
+                if (statistics != null) {
+                    statistics.recordInsertion();
+                }
+                slotIndex.put(diskAddress, slot);
+            }
+            int length = Math.min(src.remaining(), pageSize);
+            arenas[slot / slotsPerArena].put(offset(slot), src, src.position(), length);
+            slotLength[slot] = length;
+        }
+
+        synchronized void setStatistics(BTreeStatistics statistics) {
+            this.statistics = statistics;
+        }
+
+        synchronized boolean contains(long diskAddress) {
+            return slotIndex.get(diskAddress) >= 0;
+        }
+
+        synchronized long[] addresses() {
+            return slotIndex.keys();
+        }
+
+        synchronized void clear() {
+            slotIndex.clear();
+            policy.clear();
+            usedSlots = 0;
+        }
+
+        synchronized int size() {
+            return slotIndex.size();
+        }
+
+        /**
+         * Returns the byte offset of a slot within its arena.
+         *
+         * @param slot the slot
+         * @return the offset of the slot's first byte
+         */
+        private int offset(int slot) {
+            return (slot % slotsPerArena) * pageSize;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package cs321.search;
+
+import java.util.Arrays;
+
+import cs321.create.SequenceUtils;
+
+/**
+ * QueryBatch holds a run of queries read by QueryReader. Queries made only of A, C, G and T are
+ * kept as their encoded keys, so the search never builds a string for them; any other query
+ * (ambiguous, malformed or too long to encode) keeps its text for the caller to resolve.
+ */
+public class QueryBatch {
+    private long[] keys;
+    private int[] lengths;
+    private String[] texts; // null for encoded queries
+    private int size;
+
+    /**
+     * Constructs an empty batch.
+     * @param capacity The number of queries the batch holds before growing.
+     */
+    public QueryBatch(int capacity) {
+        keys = new long[Math.max(1, capacity)];
+        lengths = new int[keys.length];
+        texts = new String[keys.length];
+    }
+
+    /**
+     * Adds a query encoded as a key.
+     * @param key The encoded query.
+     * @param length The number of bases in the query.
+     */
+    void addEncoded(long key, int length) {
+        add(key, length, null);
+    }
+
+    /**
+     * Adds a query that could not be encoded.
+     * @param text The query as read, without surrounding whitespace.
+     */
+    void addText(String text) {
+        add(0, text.length(), text);
+    }
+
+    /**
+     * Appends one query, growing the arrays when full.
+     * @param key The encoded query, or 0 if it has text.
+     * @param length The number of characters in the query.
+     * @param text The query text, or null if it is encoded.
+     */
+    private void add(long key, int length, String text) {
+        if (size == keys.length) {
+            int capacity = keys.length * 2;
+            keys = Arrays.copyOf(keys, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            texts = Arrays.copyOf(texts, capacity);
+        }
+        keys[size] = key;
+        lengths[size] = length;
+        texts[size] = text;
+        size++;
+    }
+
+    /**
+     * Gets the number of queries in the batch.
+     * @return The number of queries.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Tells whether a query was encoded as a key when it was read.
+     * @param i The index of the query.
+     * @return True if getKey holds the query, false if only getText does.
+     */
+    public boolean isEncoded(int i) {
+        return texts[i] == null;
+    }
+
+    /**
+     * Gets the encoded key of a query.
+     * @param i The index of the query.
+     * @return The key, or 0 if the query was not encoded.
+     */
+    public long getKey(int i) {
+        return keys[i];
+    }
+
+    /**
+     * Gets the length of a query.
+     * @param i The index of the query.
+     * @return The number of characters in the query.
+     */
+    public int getLength(int i) {
+        return lengths[i];
+    }
+
+    /**
+     * Gets the text of a query, decoding it from its key if it was encoded.
+     * @param i The index of the query.
+     * @return The query; encoded queries come back in lower case.
+     */
+    public String getText(int i) {
+        return texts[i] != null ? texts[i] : SequenceUtils.longToDnaString(keys[i], lengths[i]);
+    }
+}
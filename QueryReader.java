@@ -0,0 +1,154 @@
+package cs321.search;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import cs321.common.DNA;
+
+/**
+ * QueryReader parses a query file, one DNA sequence per line, straight from its bytes into encoded
+ * keys. The file is read through a large buffer and each base is encoded as it is scanned, so no
+ * line or string is built for a plain A, C, G and T query. Blank lines are skipped, and
+ * surrounding whitespace is ignored.
+ */
+public class QueryReader implements Closeable {
+    private static final int READ_BYTES = 1 << 20;
+    private static final int MAX_ENCODED_LENGTH = 31; // bases that fit in a long
+    private static final byte[] BASE_CODES = new byte[256]; // byte -> 2-bit base, or -1
+
+    static {
+        Arrays.fill(BASE_CODES, (byte) -1);
+        BASE_CODES['a'] = BASE_CODES['A'] = DNA.A;
+        BASE_CODES['c'] = BASE_CODES['C'] = DNA.C;
+        BASE_CODES['g'] = BASE_CODES['G'] = DNA.G;
+        BASE_CODES['t'] = BASE_CODES['T'] = DNA.T;
+    }
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private byte[] line = new byte[64]; // the current line, carried across buffer refills
+    private int lineLength;
+    private boolean endOfFile;
+
+    /**
+     * Opens a query file.
+     * @param fileName The query file.
+     * @throws IOException Throws an IOException if the file cannot be opened.
+     */
+    public QueryReader(String fileName) throws IOException {
+        channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+        buffer = ByteBuffer.allocate(READ_BYTES);
+        buffer.flip(); // start empty
+    }
+
+    /**
+     * Reads the next queries.
+     * @param maxQueries The most queries to return.
+     * @return The next batch of up to maxQueries queries, or null at the end of the file.
+     * @throws IOException Throws an IOException if the file cannot be read.
+     */
+    public QueryBatch nextBatch(int maxQueries) throws IOException {
+        QueryBatch batch = new QueryBatch(Math.min(maxQueries, 4096));
+        while (batch.size() < maxQueries) {
+            if (!buffer.hasRemaining()) {
+                if (endOfFile || !fill()) {
+                    // The last line may end without a newline
+                    addLine(batch);
+                    break;
+                }
+            }
+            byte[] bytes = buffer.array();
+            int position = buffer.position();
+            int limit = buffer.limit();
+            while (position < limit && batch.size() < maxQueries) {
+                byte next = bytes[position++];
+                if (next == '\n') {
+                    addLine(batch);
+                } else {
+                    if (lineLength == line.length) {
+                        line = Arrays.copyOf(line, line.length * 2);
+                    }
+                    line[lineLength++] = next;
+                }
+            }
+            buffer.position(position);
+        }
+        return batch.size() == 0 ? null : batch;
+    }
+
+    /**
+     * Refills the buffer from the file.
+     * @return False if the file has no more bytes.
+     * @throws IOException Throws an IOException if the file cannot be read.
+     */
+    private boolean fill() throws IOException {
+        buffer.clear();
+        int read = channel.read(buffer);
+        buffer.flip();
+        if (read < 0) {
+            endOfFile = true;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Adds the current line to the batch, as a key if it is a plain DNA sequence, and starts a new line.
+     * @param batch The batch to add to.
+     */
+    private void addLine(QueryBatch batch) {
+        int start = 0;
+        int end = lineLength;
+        lineLength = 0;
+        while (start < end && isWhitespace(line[start])) {
+            start++;
+        }
+        while (end > start && isWhitespace(line[end - 1])) {
+            end--;
+        }
+        if (start == end) {
+            return;
+        }
+        if (end - start <= MAX_ENCODED_LENGTH) {
+            long key = 0;
+            int i = start;
+            while (i < end) {
+                int code = BASE_CODES[line[i] & 0xFF];
+                if (code < 0) {
+                    break;
+                }
+                key = (key << 2) | code;
+                i++;
+            }
+            if (i == end) {
+                batch.addEncoded(key, end - start);
+                return;
+            }
+        }
+        batch.addText(new String(line, start, end - start, StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Tells whether a byte is whitespace around a query.
+     * @param b The byte.
+     * @return True for spaces, tabs and carriage returns.
+     */
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+
+    /**
+     * Closes the query file.
+     * @throws IOException Throws an IOException if the file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,151 @@
+package cs321.search;
+
+import java.util.Arrays;
+
+/**
+ * RangeSumPlan answers the total frequency of many key ranges with one batch walk of the store.
+ * The ranges may overlap, as the ranges of a query and of its complement can, or as the ranges of
+ * different queries do; a batch walk needs sorted, disjoint ranges instead. The plan cuts the
+ * ranges at every bound into disjoint pieces, the pieces covered by some range are summed in key
+ * order, and each range is then answered from prefix sums over the pieces. A key in two ranges is
+ * counted once for each.
+ */
+public class RangeSumPlan {
+    private long[] lows = new long[16];
+    private long[] highs = new long[16];
+    private int size;
+
+    private int[] rangeStart; // range -> index of its first piece
+    private int[] rangeEnd;   // range -> index of the piece after its last
+    private long[] pieceLows;
+    private long[] pieceHighs;
+    private long[] pieceSums;
+    private long[] prefix; // prefix[p] = total of the pieces before p, built once the sums are in
+
+    /**
+     * Adds key ranges to the plan.
+     * @param lows The first key of each range.
+     * @param highs The last key of each range.
+     * @return The index of the first added range; the others follow it.
+     */
+    public int add(long[] lows, long[] highs) {
+        int first = size;
+        if (size + lows.length > this.lows.length) {
+            int capacity = Math.max(2 * this.lows.length, size + lows.length);
+            this.lows = Arrays.copyOf(this.lows, capacity);
+            this.highs = Arrays.copyOf(this.highs, capacity);
+        }
+        System.arraycopy(lows, 0, this.lows, size, lows.length);
+        System.arraycopy(highs, 0, this.highs, size, highs.length);
+        size += lows.length;
+        return first;
+    }
+
+    /**
+     * Returns the number of ranges added.
+     * @return The number of ranges.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Cuts the added ranges into sorted, disjoint pieces. Call once, after every range is added.
+     */
+    public void plan() {
+        // Every range starts at a bound and ends just before another
+        long[] bounds = new long[2 * size];
+        for (int i = 0; i < size; i++) {
+            bounds[2 * i] = lows[i];
+            bounds[2 * i + 1] = highs[i] + 1;
+        }
+        Arrays.sort(bounds);
+        int boundCount = 0;
+        for (int i = 0; i < bounds.length; i++) {
+            if (boundCount == 0 || bounds[boundCount - 1] != bounds[i]) {
+                bounds[boundCount++] = bounds[i];
+            }
+        }
+
+        // Count the ranges covering the gap after each bound, like a sweep over the key space
+        int[] coverage = new int[boundCount + 1];
+        int[] startBound = new int[size];
+        int[] endBound = new int[size];
+        for (int i = 0; i < size; i++) {
+            startBound[i] = Arrays.binarySearch(bounds, 0, boundCount, lows[i]);
+            endBound[i] = Arrays.binarySearch(bounds, 0, boundCount, highs[i] + 1);
+            coverage[startBound[i]]++;
+            coverage[endBound[i]]--;
+        }
+        int[] pieceAt = new int[boundCount]; // bound -> index of the first piece at or after it
+        pieceLows = new long[boundCount];
+        pieceHighs = new long[boundCount];
+        int pieces = 0;
+        int covering = 0;
+        for (int k = 0; k < boundCount; k++) {
+            pieceAt[k] = pieces;
+            covering += coverage[k];
+            if (covering > 0) {
+                pieceLows[pieces] = bounds[k];
+                pieceHighs[pieces] = bounds[k + 1] - 1;
+                pieces++;
+            }
+        }
+        pieceLows = Arrays.copyOf(pieceLows, pieces);
+        pieceHighs = Arrays.copyOf(pieceHighs, pieces);
+        pieceSums = new long[pieces];
+
+        // Every gap inside a range is covered, so a range is a contiguous run of pieces
+        rangeStart = new int[size];
+        rangeEnd = new int[size];
+        for (int i = 0; i < size; i++) {
+            rangeStart[i] = pieceAt[startBound[i]];
+            rangeEnd[i] = pieceAt[endBound[i]];
+        }
+    }
+
+    /**
+     * Returns the first key of every piece, in ascending order.
+     * @return The first keys; the array is the plan's own.
+     */
+    public long[] getLows() {
+        return pieceLows;
+    }
+
+    /**
+     * Returns the last key of every piece.
+     * @return The last keys; the array is the plan's own.
+     */
+    public long[] getHighs() {
+        return pieceHighs;
+    }
+
+    /**
+     * Records the totals of a run of pieces. Threads may record disjoint runs concurrently.
+     * @param from The index of the first piece of the run.
+     * @param sums The total frequency of the keys in each piece of the run.
+     */
+    public void setSums(int from, long[] sums) {
+        System.arraycopy(sums, 0, pieceSums, from, sums.length);
+    }
+
+    /**
+     * Returns the total frequency of a run of ranges, once every piece's total is recorded.
+     * @param from The first range (inclusive).
+     * @param to The last range (exclusive).
+     * @return The total of the ranges, counting a key once for every range holding it.
+     */
+    public long sumOf(int from, int to) {
+        if (prefix == null) {
+            prefix = new long[pieceSums.length + 1];
+            for (int p = 0; p < pieceSums.length; p++) {
+                prefix[p + 1] = prefix[p] + pieceSums[p];
+            }
+        }
+        long total = 0;
+        for (int i = from; i < to; i++) {
+            total += prefix[rangeEnd[i]] - prefix[rangeStart[i]];
+        }
+        return total;
+    }
+}
@@ -0,0 +1,123 @@
+package cs321.search;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * ResultWriter writes "sequence frequency" result lines as bytes into one large buffer, formatting
+ * encoded queries and frequencies directly without building strings, and hands the buffer to the
+ * output file, and optionally the console, only when it is full.
+ */
+public class ResultWriter implements Closeable {
+    private static final int BUFFER_BYTES = 1 << 20;
+    private static final byte[] BASES = { 'a', 'c', 'g', 't' }; // indexed by the 2-bit codes in DNA
+
+    private final OutputStream out;
+    private final OutputStream echo;
+    private final byte[] buffer = new byte[BUFFER_BYTES];
+    private int position;
+
+    /**
+     * Constructs a writer.
+     * @param out The stream the results are written to; closed with this writer.
+     * @param echo A second stream that receives a copy of the results, such as System.out, or null.
+     */
+    public ResultWriter(OutputStream out, OutputStream echo) {
+        this.out = out;
+        this.echo = echo;
+    }
+
+    /**
+     * Writes the result of one query: the query in lower case, a space, and its frequency.
+     * @param batch The batch holding the query.
+     * @param i The index of the query in the batch.
+     * @param frequency The frequency found.
+     * @throws IOException Throws an IOException if the buffer cannot be flushed.
+     */
+    public void write(QueryBatch batch, int i, long frequency) throws IOException {
+        int length = batch.getLength(i);
+        ensureCapacity(length + 22); // query, space, up to 20 digits and newline
+        if (batch.isEncoded(i)) {
+            long key = batch.getKey(i);
+            for (int base = length - 1; base >= 0; base--) {
+                buffer[position++] = BASES[(int) (key >>> (2 * base)) & 0b11];
+            }
+        } else {
+            String text = batch.getText(i);
+            for (int c = 0; c < length; c++) {
+                buffer[position++] = (byte) Character.toLowerCase(text.charAt(c));
+            }
+        }
+        buffer[position++] = ' ';
+        writeLong(frequency);
+        buffer[position++] = '\n';
+    }
+
+    /**
+     * Formats a non-negative number into the buffer.
+     * @param value The number.
+     */
+    private void writeLong(long value) {
+        int digits = 1;
+        for (long rest = value / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        for (int i = position + digits - 1; i >= position; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        position += digits;
+    }
+
+    /**
+     * Flushes the buffer if fewer than the given number of bytes are free.
+     * @param bytes The bytes about to be written.
+     * @throws IOException Throws an IOException if the buffer cannot be flushed.
+     */
+    private void ensureCapacity(int bytes) throws IOException {
+        if (position + bytes > buffer.length) {
+            drain();
+            if (bytes > buffer.length) {
+                throw new IOException("Result line of " + bytes + " bytes does not fit the output buffer");
+            }
+        }
+    }
+
+    /**
+     * Hands the buffered bytes to the output streams.
+     * @throws IOException Throws an IOException if a stream cannot be written.
+     */
+    private void drain() throws IOException {
+        out.write(buffer, 0, position);
+        if (echo != null) {
+            echo.write(buffer, 0, position);
+        }
+        position = 0;
+    }
+
+    /**
+     * Writes out everything buffered.
+     * @throws IOException Throws an IOException if a stream cannot be written.
+     */
+    public void flush() throws IOException {
+        drain();
+        out.flush();
+        if (echo != null) {
+            echo.flush();
+        }
+    }
+
+    /**
+     * Flushes and closes the output stream; the echo stream is flushed but left open.
+     * @throws IOException Throws an IOException if a stream cannot be written or closed.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            out.close();
+        }
+    }
+}
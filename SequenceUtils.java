@@ -24,6 +24,7 @@ public class SequenceUtils
      * 
      * @param dna The DNA sequence of bases A, C, T, and G
      * @return
+     * @throws IllegalArgumentException if the string is longer than 31 or contains anything but A, C, G and T
      */
     public static long dnaStringToLong(String dna) {
         if (dna.length() > 31) {
@@ -48,7 +49,8 @@ public class SequenceUtils
                     encoding = encoding | DNA.T;
                     break;
                 default:
-                    break;
+                    // Skipping the base would shift the rest into the wrong key
+                    throw new IllegalArgumentException("Not a DNA base: '" + next + "' in " + dna);
             }
             if (i == dna.length() - 1) break;
             encoding = encoding << 2;
@@ -112,6 +114,165 @@ public class SequenceUtils
     }
 
 
+    /**
+     * Returns the bases an IUPAC nucleotide code stands for, as a bit mask with bit DNA.A set
+     * for A and so on. U is read as T. It is case insensitive.
+     * 
+     * @param code The IUPAC code.
+     * @return The bit mask of bases, or 0 if the character is not an IUPAC nucleotide code.
+     */
+    public static int iupacBases(char code)
+    {
+        int a = 1 << DNA.A;
+        int c = 1 << DNA.C;
+        int g = 1 << DNA.G;
+        int t = 1 << DNA.T;
+        switch (Character.toLowerCase(code)) {
+            case 'a':
+                return a;
+            case 'c':
+                return c;
+            case 'g':
+                return g;
+            case 't':
+            case 'u':
+                return t;
+            case 'r':
+                return a | g;
+            case 'y':
+                return c | t;
+            case 's':
+                return c | g;
+            case 'w':
+                return a | t;
+            case 'k':
+                return g | t;
+            case 'm':
+                return a | c;
+            case 'b':
+                return c | g | t;
+            case 'd':
+                return a | g | t;
+            case 'h':
+                return a | c | t;
+            case 'v':
+                return a | c | g;
+            case 'n':
+                return a | c | g | t;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Tells whether a query uses IUPAC codes other than A, C, G and T, so it stands for more than
+     * one sequence.
+     * 
+     * @param dna The query.
+     * @return True if some position allows more than one base.
+     */
+    public static boolean isAmbiguous(String dna)
+    {
+        for (int i = 0; i < dna.length(); i++) {
+            if (Integer.bitCount(iupacBases(dna.charAt(i))) != 1) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Expands a query written with IUPAC codes into the sequences it stands for, as sorted,
+     * disjoint key ranges. A trailing run of N matches every sequence with the same prefix, which
+     * is one contiguous range of keys; every other ambiguous position is expanded into its bases.
+     * A query with no ambiguity expands to the single range [key, key].
+     * 
+     * @param dna The query, of up to 31 IUPAC codes.
+     * @param maxRanges The most ranges the expansion may produce.
+     * @return Two arrays: the first key of each range and the last key of each range, in ascending order.
+     * @throws IllegalArgumentException if the query is too long, has a character that is not an
+     *                                  IUPAC code, or expands to more than maxRanges ranges
+     */
+    public static long[][] expandIupac(String dna, int maxRanges)
+    {
+        if (dna.length() > 31) {
+            throw new IllegalArgumentException("DNA string longer than 31");
+        }
+        int anyBase = iupacBases('n');
+        int prefixLength = dna.length();
+        while (prefixLength > 0 && iupacBases(dna.charAt(prefixLength - 1)) == anyBase) {
+            prefixLength--;
+        }
+
+        // Expanding positions from the left and bases in ascending order keeps the prefixes sorted
+        long[] prefixes = { 0 };
+        for (int i = 0; i < prefixLength; i++) {
+            int bases = iupacBases(dna.charAt(i));
+            if (bases == 0) {
+                throw new IllegalArgumentException("Not an IUPAC nucleotide code: '" + dna.charAt(i) + "' in " + dna);
+            }
+            if ((long) prefixes.length * Integer.bitCount(bases) > maxRanges) {
+                throw new IllegalArgumentException(dna + " stands for more than " + maxRanges + " key ranges");
+            }
+            long[] expanded = new long[prefixes.length * Integer.bitCount(bases)];
+            int count = 0;
+            for (long prefix : prefixes) {
+                for (int base = 0; base < 4; base++) {
+                    if ((bases & (1 << base)) != 0) {
+                        expanded[count++] = (prefix << 2) | base;
+                    }
+                }
+            }
+            prefixes = expanded;
+        }
+
+        int suffixBits = 2 * (dna.length() - prefixLength);
+        long[] lows = new long[prefixes.length];
+        long[] highs = new long[prefixes.length];
+        for (int i = 0; i < prefixes.length; i++) {
+            lows[i] = prefixes[i] << suffixBits;
+            highs[i] = lows[i] | ((1L << suffixBits) - 1);
+        }
+        return new long[][] { lows, highs };
+    }
+
+    /**
+     * Returns the complements of sorted, disjoint key ranges produced by expandIupac, again sorted
+     * and disjoint. Complementing reverses the order of keys, so each range's bounds swap and the
+     * ranges come out in the opposite order.
+     * 
+     * @param ranges The first and last keys of each range.
+     * @param seqLength The length of the sequences.
+     * @return The first and last keys of each complemented range, in ascending order.
+     */
+    public static long[][] getComplementRanges(long[][] ranges, int seqLength)
+    {
+        int count = ranges[0].length;
+        long[] lows = new long[count];
+        long[] highs = new long[count];
+        for (int i = 0; i < count; i++) {
+            lows[count - 1 - i] = getComplement(ranges[1][i], seqLength);
+            highs[count - 1 - i] = getComplement(ranges[0][i], seqLength);
+        }
+        return new long[][] { lows, highs };
+    }
+
+    /**
+     * Returns the number of bases at which two DNA strings encoded as longs differ. Each base is
+     * two bits, so a base differs when either of its bits does.
+     * 
+     * @param first The first DNA sequence (encoded as a long value).
+     * @param second The second DNA sequence (encoded as a long value).
+     * @param seqLength The length of the sequences.
+     * @return The Hamming distance between the sequences, in bases.
+     */
+    public static int hammingDistance(long first, long second, int seqLength)
+    {
+        long diff = first ^ second;
+        long lowBits = 0x5555555555555555L & ((1L << (2 * seqLength)) - 1); // the low bit of every base
+        return Long.bitCount((diff | (diff >>> 1)) & lowBits);
+    }
+
 
     /**
      * The driver for demonstrating the usage of the methods in the class.
@@ -0,0 +1,300 @@
+package cs321.btree;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * The SortedArrayKmerStore class is a read-only KmerStore over a file of (key, frequency) pairs
+ * sorted by key. The file is memory-mapped rather than read, so opening it costs nothing however
+ * large it is, and a lookup is a binary search that touches about log2(n) pages, all left to the
+ * operating system's page cache. The file holds a magic number and the entry count, then 16 bytes
+ * per entry; it is written by write or writeSorted, and HashKmerStore saves itself in the same format.
+ */
+public class SortedArrayKmerStore implements KmerStore {
+    static final long MAGIC = 0x4B4D_4552_534F_5254L; // "KMERSORT", first long of the file
+    static final int HEADER_SIZE = 2 * Long.BYTES; // magic, entry count
+    private static final int ENTRY_SIZE = 2 * Long.BYTES; // key, frequency
+    private static final int SEGMENT_SHIFT = 26; // entries per mapping, 2^26 entries or 1 GiB, below the 2 GiB mapping limit
+    private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+    private final FileChannel file;
+    private final MappedByteBuffer[] segments;
+    private final long size;
+
+    /**
+     * Opens and maps a sorted k-mer file.
+     *
+     * @param fileName the file, as written by write or writeSorted
+     * @throws IOException if the file cannot be read or is not a sorted k-mer file
+     */
+    public SortedArrayKmerStore(String fileName) throws IOException {
+        file = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+        try {
+            MappedByteBuffer header = file.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(HEADER_SIZE, file.size()));
+            if (header.limit() < HEADER_SIZE || header.getLong(0) != MAGIC) {
+                throw new IOException("Not a sorted k-mer file: " + fileName);
+            }
+            size = header.getLong(Long.BYTES);
+            if (file.size() != HEADER_SIZE + size * ENTRY_SIZE) {
+                throw new IOException("Sorted k-mer file " + fileName + " should hold " + size + " entries but is " + file.size() + " bytes");
+            }
+            segments = new MappedByteBuffer[(int) ((size + SEGMENT_MASK) >>> SEGMENT_SHIFT)];
+            for (int s = 0; s < segments.length; s++) {
+                long first = (long) s << SEGMENT_SHIFT;
+                long entries = Math.min(SEGMENT_MASK + 1, size - first);
+                segments[s] = file.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + first * ENTRY_SIZE, entries * ENTRY_SIZE);
+            }
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Gets the number of keys in the file.
+     *
+     * @return the number of entries
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Reads the key of an entry.
+     *
+     * @param index the index of the entry
+     * @return its key
+     */
+    private long keyAt(long index) {
+        return segments[(int) (index >>> SEGMENT_SHIFT)].getLong((int) (index & SEGMENT_MASK) * ENTRY_SIZE);
+    }
+
+    /**
+     * Reads the frequency of an entry.
+     *
+     * @param index the index of the entry
+     * @return its frequency
+     */
+    private long frequencyAt(long index) {
+        return segments[(int) (index >>> SEGMENT_SHIFT)].getLong((int) (index & SEGMENT_MASK) * ENTRY_SIZE + Long.BYTES);
+    }
+
+    /**
+     * Finds the first entry whose key is not less than the given key.
+     *
+     * @param key  the key to look for
+     * @param from the first index to consider
+     * @return the index of that entry, or size if every key from there on is smaller
+     */
+    private long lowerBound(long key, long from) {
+        return lowerBound(key, from, size);
+    }
+
+    /**
+     * Finds the first entry in a run of entries whose key is not less than the given key.
+     *
+     * @param key  the key to look for
+     * @param from the first index to consider
+     * @param to   the index after the last one to consider
+     * @return the index of that entry, or to if every key in the run is smaller
+     */
+    private long lowerBound(long key, long from, long to) {
+        long low = from;
+        long high = to;
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            if (keyAt(middle) < key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    @Override
+    public long get(long key) {
+        long index = lowerBound(key, 0);
+        return index < size && keyAt(index) == key ? frequencyAt(index) : 0;
+    }
+
+    /**
+     * Always fails: the file is mapped read-only. Build a new file with write or writeSorted instead.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public void upsert(long key, long count) {
+        throw new UnsupportedOperationException("The sorted array engine is read-only");
+    }
+
+    /**
+     * Looks up many keys at once. The distinct keys are sorted, so each binary search starts where
+     * the previous one ended and the pages are touched in file order.
+     */
+    @Override
+    public long[] getBatch(long[] keys) {
+        long[] distinct = keys.clone();
+        Arrays.sort(distinct);
+        int count = 0;
+        for (int i = 0; i < distinct.length; i++) {
+            if (count == 0 || distinct[count - 1] != distinct[i]) {
+                distinct[count++] = distinct[i];
+            }
+        }
+        long[] distinctFrequencies = new long[count];
+        long from = 0;
+        for (int i = 0; i < count; i++) {
+            from = lowerBound(distinct[i], from);
+            if (from < size && keyAt(from) == distinct[i]) {
+                distinctFrequencies[i] = frequencyAt(from);
+            }
+        }
+        long[] frequencies = new long[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            frequencies[i] = distinctFrequencies[Arrays.binarySearch(distinct, 0, count, keys[i])];
+        }
+        return frequencies;
+    }
+
+    /**
+     * Sums many key ranges. The ranges are sorted, so each one's first entry is found by a binary
+     * search starting where the previous range ended, and its entries are then scanned.
+     */
+    @Override
+    public long[] sumRanges(long[] lows, long[] highs) {
+        long[] sums = new long[lows.length];
+        long index = 0;
+        for (int i = 0; i < lows.length; i++) {
+            index = lowerBound(lows[i], index);
+            for (; index < size && keyAt(index) <= highs[i]; index++) {
+                sums[i] += frequencyAt(index);
+            }
+        }
+        return sums;
+    }
+
+    /**
+     * Sums the keys within a Hamming distance of a query. Keys sharing their leading bases are
+     * contiguous, so the entries are split by their next base with binary searches, and a run is
+     * skipped as soon as its leading bases differ from the query at more than maxDistance places.
+     */
+    @Override
+    public long countWithinDistance(long key, int sequenceLength, int maxDistance) {
+        return countWithinDistance(key, 0, sequenceLength, maxDistance, 0, size);
+    }
+
+    /**
+     * Sums the keys within the remaining distance of a query in a run of entries that share
+     * their leading bases.
+     *
+     * @param key      the encoded query
+     * @param prefix   the leading bases of every entry in the run, with the other bases 0
+     * @param bases    the number of trailing bases the entries may still differ in
+     * @param distance the number of mismatches the trailing bases may still have
+     * @param from     the first entry of the run
+     * @param to       the entry after the run
+     * @return the total frequency of the matching entries
+     */
+    private long countWithinDistance(long key, long prefix, int bases, int distance, long from, long to) {
+        if (from >= to) {
+            return 0;
+        }
+        if (bases == 0) {
+            return frequencyAt(from); // The whole key is fixed, so the run is one entry
+        }
+        if (distance == 0) {
+            // The trailing bases must match the query exactly
+            long target = prefix | (key & ((1L << (2 * bases)) - 1));
+            long index = lowerBound(target, from, to);
+            return index < to && keyAt(index) == target ? frequencyAt(index) : 0;
+        }
+        int shift = 2 * (bases - 1);
+        int queryBase = (int) (key >>> shift) & 0b11;
+        long total = 0;
+        long start = from;
+        for (int base = 0; base < 4; base++) {
+            long next = prefix | ((long) base << shift);
+            long end = base == 3 ? to : lowerBound(prefix | ((long) (base + 1) << shift), start, to);
+            total += countWithinDistance(key, next, bases - 1, base == queryBase ? distance : distance - 1, start, end);
+            start = end;
+        }
+        return total;
+    }
+
+    @Override
+    public void scan(BTree.EntryVisitor visitor) {
+        for (long i = 0; i < size; i++) {
+            visitor.visit(keyAt(i), frequencyAt(i));
+        }
+    }
+
+    /**
+     * Closes the file. The mappings stay valid until they are garbage collected.
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    /**
+     * Writes a sorted k-mer file.
+     *
+     * @param fileName    the file to write, replaced if it exists
+     * @param keys        the keys, in strictly ascending order
+     * @param frequencies the frequency of each key
+     * @param count       the number of entries to write from the arrays
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(String fileName, long[] keys, long[] frequencies, int count) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName), 1 << 16))) {
+            out.writeLong(MAGIC);
+            out.writeLong(count);
+            for (int i = 0; i < count; i++) {
+                out.writeLong(keys[i]);
+                out.writeLong(frequencies[i]);
+            }
+        }
+    }
+
+    /**
+     * Builds a sorted k-mer file straight from a list of occurrences: the list is sorted in place
+     * and each run of equal keys is written as one entry, so no map of counts is ever built.
+     *
+     * @param fileName  the file to write, replaced if it exists
+     * @param sequences one encoded sequence per occurrence; sorted by this method
+     * @return the number of distinct keys written
+     * @throws IOException if the file cannot be written
+     */
+    public static long writeSorted(String fileName, long[] sequences) throws IOException {
+        Arrays.parallelSort(sequences);
+        long distinct = 0;
+        for (int i = 0; i < sequences.length; i++) {
+            if (i == 0 || sequences[i] != sequences[i - 1]) {
+                distinct++;
+            }
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName), 1 << 16))) {
+            out.writeLong(MAGIC);
+            out.writeLong(distinct);
+            int run = 0;
+            for (int i = 1; i <= sequences.length; i++) {
+                if (i == sequences.length || sequences[i] != sequences[run]) {
+                    out.writeLong(sequences[run]);
+                    out.writeLong(i - run);
+                    run = i;
+                }
+            }
+        }
+        return distinct;
+    }
+}
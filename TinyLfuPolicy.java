@@ -0,0 +1,172 @@
+package cs321.btree;
+
+/**
+ * The TinyLfuPolicy class implements W-TinyLFU. New keys enter a small LRU window (1% of the
+ * capacity). A key pushed out of the window only enters the main segmented LRU if a compact
+ * frequency sketch says it has been requested more often than the key main would evict for it.
+ * Main is split into a probation segment and a protected segment (80% of main) that keys reach
+ * by being hit while on probation. One-time keys therefore pass through the window and leave
+ * without disturbing the keys that are used repeatedly. The three segments are lists of one
+ * LinkedKeyLists, so a hit relinks its key without boxing it or allocating.
+ */
+public class TinyLfuPolicy implements EvictionPolicy {
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+
+    private final int windowCapacity;
+    private final int mainCapacity;
+    private final int protectedCapacity;
+    private final LinkedKeyLists segments;
+    private final FrequencySketch sketch;
+
+    /**
+     * Constructs a new TinyLfuPolicy for a cache of the given capacity.
+     *
+     * @param capacity the number of keys the cache holds
+     */
+    public TinyLfuPolicy(int capacity) {
+        this.windowCapacity = Math.max(1, capacity / 100);
+        this.mainCapacity = capacity - windowCapacity;
+        this.protectedCapacity = (int) (mainCapacity * 0.8);
+        this.sketch = new FrequencySketch(capacity);
+        this.segments = new LinkedKeyLists(3, capacity + 1);
+    }
+
+    @Override
+    public void recordAccess(long key) {
+        sketch.increment(key);
+        switch (segments.listOf(key)) {
+            case WINDOW:
+                segments.moveToLast(WINDOW, key);
+                break;
+            case PROBATION:
+                // A second hit earns the key a place in the protected segment
+                segments.moveToLast(PROTECTED, key);
+                if (segments.size(PROTECTED) > protectedCapacity) {
+                    segments.moveToLast(PROBATION, segments.first(PROTECTED));
+                }
+                break;
+            case PROTECTED:
+                segments.moveToLast(PROTECTED, key);
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public void recordInsertion(long key) {
+        sketch.increment(key);
+        segments.addLast(WINDOW, key);
+
+        // While main still has room, keys leaving the window are admitted without a contest
+        while (segments.size(WINDOW) > windowCapacity && segments.size(PROBATION) + segments.size(PROTECTED) < mainCapacity) {
+            segments.moveToLast(PROBATION, segments.first(WINDOW));
+        }
+    }
+
+    @Override
+    public void recordRemoval(long key) {
+        segments.remove(key);
+    }
+
+    @Override
+    public long selectVictim() {
+        if (segments.size(WINDOW) <= windowCapacity || (segments.isEmpty(PROBATION) && segments.isEmpty(PROTECTED))) {
+            // Nothing is waiting to be admitted, so evict from main, or from the window if main is empty
+            if (!segments.isEmpty(PROBATION)) {
+                return segments.removeFirst(PROBATION);
+            }
+            if (!segments.isEmpty(PROTECTED)) {
+                return segments.removeFirst(PROTECTED);
+            }
+            return segments.removeFirst(WINDOW);
+        }
+
+        // The key leaving the window competes with main's victim for a place in main
+        long candidate = segments.first(WINDOW);
+        long victim = segments.first(segments.isEmpty(PROBATION) ? PROTECTED : PROBATION);
+        if (sketch.frequency(candidate) > sketch.frequency(victim)) {
+            segments.remove(victim);
+            segments.moveToLast(PROBATION, candidate);
+            return victim;
+        }
+        segments.remove(candidate);
+        return candidate;
+    }
+
+    @Override
+    public void clear() {
+        segments.clear();
+        sketch.clear();
+    }
+
+    /**
+     * A count-min sketch of 4-bit counters packed sixteen to a long. Once the number of recorded
+     * accesses reaches ten times the cache capacity, every counter is halved, so the sketch keeps
+     * following the recent workload instead of its whole history.
+     */
+    private static class FrequencySketch {
+        private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+        };
+
+        private final long[] table;
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int capacity) {
+            int size = Integer.highestOneBit(Math.max(8, capacity - 1)) << 1;
+            this.table = new long[size];
+            this.mask = size - 1;
+            this.sampleSize = Math.max(10, 10 * capacity);
+        }
+
+        void increment(long key) {
+            boolean added = false;
+            for (int i = 0; i < SEEDS.length; i++) {
+                long hash = hash(key, i);
+                int index = (int) (hash >>> 32) & mask;
+                int shift = (int) (hash & 15) << 2;
+                if (((table[index] >>> shift) & 15L) < 15L) {
+                    table[index] += 1L << shift;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                reset();
+            }
+        }
+
+        int frequency(long key) {
+            int frequency = 15;
+            for (int i = 0; i < SEEDS.length; i++) {
+                long hash = hash(key, i);
+                int index = (int) (hash >>> 32) & mask;
+                int shift = (int) (hash & 15) << 2;
+                frequency = Math.min(frequency, (int) ((table[index] >>> shift) & 15L));
+            }
+            return frequency;
+        }
+
+        void clear() {
+            java.util.Arrays.fill(table, 0L);
+            additions = 0;
+        }
+
+        private void reset() {
+            // Halve every counter at once: shift each nibble right and drop the bit that crossed over
+            for (int i = 0; i < table.length; i++) {
+                table[i] = (table[i] >>> 1) & 0x7777777777777777L;
+            }
+            additions /= 2;
+        }
+
+        private static long hash(long key, int row) {
+            long hash = (key + SEEDS[row]) * 0x9E3779B97F4A7C15L;
+            return hash ^ (hash >>> 29);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package cs321.btree;
+
+/**
+ * The TopFrequencyHeap class keeps the n most frequent of a stream of (key, frequency) pairs in a
+ * bounded binary min-heap held in two primitive arrays, so offering a pair never allocates. The
+ * least frequent entry sits at the root: a new pair either loses to it, which costs one comparison,
+ * or replaces it and sifts down. Ties in frequency are broken by key, smaller keys ranking higher,
+ * so the result does not depend on the order the pairs arrive in.
+ */
+public class TopFrequencyHeap {
+    private final long[] keys;
+    private final long[] frequencies;
+    private int size;
+
+    /**
+     * Constructs an empty heap that keeps the given number of entries.
+     *
+     * @param capacity the number of entries to keep
+     */
+    public TopFrequencyHeap(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Capacity must not be negative: " + capacity);
+        }
+        keys = new long[capacity];
+        frequencies = new long[capacity];
+    }
+
+    /**
+     * Offers a pair to the heap, which keeps it if it ranks among the top entries seen so far.
+     *
+     * @param key       the key
+     * @param frequency the frequency of the key
+     */
+    public void offer(long key, long frequency) {
+        if (size < keys.length) {
+            keys[size] = key;
+            frequencies[size] = frequency;
+            siftUp(size++);
+        } else if (size > 0 && ranksBelow(keys[0], frequencies[0], key, frequency)) {
+            keys[0] = key;
+            frequencies[0] = frequency;
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Returns the number of entries kept.
+     *
+     * @return the number of entries
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Empties the heap into TreeObjects ordered from most to least frequent.
+     *
+     * @return the entries kept, most frequent first
+     */
+    public TreeObject[] drainDescending() {
+        TreeObject[] result = new TreeObject[size];
+        // Popping the minimum repeatedly yields the entries from last to first
+        for (int i = size - 1; i >= 0; i--) {
+            result[i] = new TreeObject(keys[0], frequencies[0]);
+            size--;
+            keys[0] = keys[size];
+            frequencies[0] = frequencies[size];
+            siftDown(0);
+        }
+        return result;
+    }
+
+    /**
+     * Tells whether entry a ranks below entry b: it is less frequent, or as frequent with a larger key.
+     *
+     * @param keyA       the key of entry a
+     * @param frequencyA the frequency of entry a
+     * @param keyB       the key of entry b
+     * @param frequencyB the frequency of entry b
+     * @return true if a ranks below b
+     */
+    private static boolean ranksBelow(long keyA, long frequencyA, long keyB, long frequencyB) {
+        return frequencyA < frequencyB || (frequencyA == frequencyB && keyA > keyB);
+    }
+
+    /**
+     * Moves the entry at the given index up until its parent ranks below it.
+     *
+     * @param i the index of the entry
+     */
+    private void siftUp(int i) {
+        long key = keys[i];
+        long frequency = frequencies[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!ranksBelow(key, frequency, keys[parent], frequencies[parent])) {
+                break;
+            }
+            keys[i] = keys[parent];
+            frequencies[i] = frequencies[parent];
+            i = parent;
+        }
+        keys[i] = key;
+        frequencies[i] = frequency;
+    }
+
+    /**
+     * Moves the entry at the given index down until both children rank above it.
+     *
+     * @param i the index of the entry
+     */
+    private void siftDown(int i) {
+        long key = keys[i];
+        long frequency = frequencies[i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && ranksBelow(keys[child + 1], frequencies[child + 1], keys[child], frequencies[child])) {
+                child++;
+            }
+            if (!ranksBelow(keys[child], frequencies[child], key, frequency)) {
+                break;
+            }
+            keys[i] = keys[child];
+            frequencies[i] = frequencies[child];
+            i = child;
+        }
+        keys[i] = key;
+        frequencies[i] = frequency;
+    }
+}
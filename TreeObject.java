@@ -99,4 +99,13 @@ public class TreeObject implements Comparable<TreeObject> {
    public void incrementFrequency() {
        this.frequency++;
    }
+
+   /**
+    * Adds occurrences to the frequency.
+    *
+    * @param count The number of occurrences to add.
+    */
+   public void addFrequency(long count) {
+       this.frequency += count;
+   }
 }
\ No newline at end of file
@@ -0,0 +1,73 @@
+package cs321.btree;
+
+/**
+ * The TwoQueuePolicy class implements the full 2Q algorithm. New keys enter a FIFO queue (A1in);
+ * keys evicted from it are remembered in a ghost queue (A1out). Only a key that is requested again
+ * while still remembered is promoted to the main LRU queue (Am), so a one-time scan such as an
+ * insertion pass cannot flush the keys that are used over and over. The three queues are lists of
+ * one LinkedKeyLists, so a hit or a promotion relinks a key without boxing it or allocating.
+ */
+public class TwoQueuePolicy implements EvictionPolicy {
+    private static final int IN = 0;     // A1in, FIFO
+    private static final int GHOSTS = 1; // A1out, FIFO of evicted keys that are no longer cached
+    private static final int MAIN = 2;   // Am, LRU
+
+    private final int inCapacity;    // Kin, the target size of A1in
+    private final int ghostCapacity; // Kout, the number of evicted keys remembered
+    private final LinkedKeyLists queues;
+
+    /**
+     * Constructs a new TwoQueuePolicy for a cache of the given capacity, using the usual
+     * sizing of a quarter of the capacity for A1in and half of it for A1out.
+     *
+     * @param capacity the number of keys the cache holds
+     */
+    public TwoQueuePolicy(int capacity) {
+        this.inCapacity = Math.max(1, capacity / 4);
+        this.ghostCapacity = Math.max(1, capacity / 2);
+        this.queues = new LinkedKeyLists(3, capacity + 1 + ghostCapacity + 1);
+    }
+
+    @Override
+    public void recordAccess(long key) {
+        // Hits in A1in are left alone; only the main queue is kept in LRU order
+        if (queues.listOf(key) == MAIN) {
+            queues.moveToLast(MAIN, key);
+        }
+    }
+
+    @Override
+    public void recordInsertion(long key) {
+        if (queues.listOf(key) == GHOSTS) {
+            queues.moveToLast(MAIN, key);
+        } else {
+            queues.addLast(IN, key);
+        }
+    }
+
+    @Override
+    public void recordRemoval(long key) {
+        // A ghost is not cached, so it stays remembered
+        if (queues.listOf(key) != GHOSTS) {
+            queues.remove(key);
+        }
+    }
+
+    @Override
+    public long selectVictim() {
+        if (queues.size(IN) > inCapacity || queues.isEmpty(MAIN)) {
+            long victim = queues.first(IN);
+            queues.moveToLast(GHOSTS, victim);
+            if (queues.size(GHOSTS) > ghostCapacity) {
+                queues.removeFirst(GHOSTS);
+            }
+            return victim;
+        }
+        return queues.removeFirst(MAIN);
+    }
+
+    @Override
+    public void clear() {
+        queues.clear();
+    }
+}